@@ -0,0 +1,24 @@
+#!/usr/bin/env bash
+# Runs the sign-in benchmark against platform threads and then virtual threads
+# on the same machine and database. Requires a built jar, a running MySQL
+# (docker-compose.dev.yml) and k6 on the PATH.
+set -euo pipefail
+
+cd "$(dirname "$0")"
+JAR=$(ls ../../target/*.jar | head -n 1)
+BASE_URL=http://localhost:8080/api/v1/chatApp
+mkdir -p results
+
+run_mode() {
+    local mode=$1 profiles=$2
+    java -jar "$JAR" --spring.profiles.active="$profiles" --spring.jpa.show-sql=false > "results/$mode-app.log" 2>&1 &
+    local pid=$!
+    trap 'kill $pid 2>/dev/null' RETURN
+
+    until curl -s -o /dev/null "$BASE_URL/websocket/stats"; do sleep 1; done
+
+    k6 run -e BASE_URL="$BASE_URL" --summary-export "results/$mode.json" signin.js | tee "results/$mode.txt"
+}
+
+run_mode platform default
+run_mode virtual virtual-threads
@@ -0,0 +1,49 @@
+// k6 load script for the sign-in path: BCrypt verify + one MySQL lookup per request.
+//
+//   k6 run -e BASE_URL=http://localhost:8080/api/v1/chatApp -e USERS=200 signin.js
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080/api/v1/chatApp';
+const USERS = parseInt(__ENV.USERS || '200', 10);
+const PASSWORD = 'benchmark-password';
+
+export const options = {
+    scenarios: {
+        signin_burst: {
+            executor: 'ramping-arrival-rate',
+            startRate: 50,
+            timeUnit: '1s',
+            preAllocatedVUs: 500,
+            maxVUs: 2000,
+            stages: [
+                { target: 200, duration: '30s' },
+                { target: 400, duration: '60s' },
+                { target: 400, duration: '60s' },
+            ],
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+const params = { headers: { 'Content-Type': 'application/json' } };
+
+export function setup() {
+    for (let i = 0; i < USERS; i++) {
+        // 200 on first run, error on reruns because the user already exists; both are fine
+        http.post(`${BASE_URL}/auth/signup`, JSON.stringify({
+            username: `bench${i}`,
+            email: `bench${i}@example.com`,
+            password: PASSWORD,
+        }), params);
+    }
+}
+
+export default function () {
+    const i = Math.floor(Math.random() * USERS);
+    const res = http.post(`${BASE_URL}/auth/signin`, JSON.stringify({
+        usernameOrEmail: `bench${i}`,
+        password: PASSWORD,
+    }), params);
+    check(res, { 'signed in': (r) => r.status === 200 });
+}
@@ -1,23 +1,163 @@
 package wbos.starterchatapp.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.WebSocketExtension;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+import wbos.starterchatapp.config.converters.ChatMessageBinaryConverter;
+import wbos.starterchatapp.config.interceptors.OutboundBatchingInterceptor;
+import wbos.starterchatapp.config.interceptors.PresenceHeartbeatInterceptor;
+import wbos.starterchatapp.config.interceptors.StompAuthChannelInterceptor;
+import wbos.starterchatapp.config.interceptors.WireFormatInterceptor;
+import wbos.starterchatapp.config.listeners.SlowConsumerMonitor;
+import wbos.starterchatapp.config.listeners.WebSocketTransportMonitor;
+import wbos.starterchatapp.config.metrics.ChannelTaskTimer;
+import wbos.starterchatapp.config.metrics.OutboundFanOutCounter;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final StompAuthChannelInterceptor stompAuthChannelInterceptor;
+    private final SlowConsumerMonitor slowConsumerMonitor;
+    private final WebSocketTransportMonitor webSocketTransportMonitor;
+    private final PresenceHeartbeatInterceptor presenceHeartbeatInterceptor;
+    private final OutboundBatchingInterceptor outboundBatchingInterceptor;
+    private final WireFormatInterceptor wireFormatInterceptor;
+    private final OutboundFanOutCounter outboundFanOutCounter;
+    private final MeterRegistry meterRegistry;
+    private final WebSocketProperties webSocketProperties;
+
+    @Value("${chat.websocket.endpoints.native.path:/ws-native}")
+    private String nativeEndpointPath;
+
+    @Value("${chat.websocket.endpoints.native.permessage-deflate:true}")
+    private boolean nativePermessageDeflate;
+
+    @Value("${chat.websocket.endpoints.sockjs.permessage-deflate:true}")
+    private boolean sockJsPermessageDeflate;
+
+    @Value("${chat.presence.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
-       registry.addEndpoint("/ws").withSockJS();
+        // Plain WebSocket for clients that support it: no SockJS framing or session overhead
+        registry.addEndpoint(nativeEndpointPath)
+                .setHandshakeHandler(handshakeHandler(nativePermessageDeflate));
+        // Fallback for clients that cannot open a WebSocket
+        registry.addEndpoint("/ws")
+                .setHandshakeHandler(handshakeHandler(sockJsPermessageDeflate))
+                .withSockJS();
     }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         registry.setApplicationDestinationPrefixes("/app");
-        registry.enableSimpleBroker("/topic");
+        // /topic for conversation-scoped topics, /queue for per-user queues reached through /user
+        // Heartbeats both ways let presence expire sessions whose disconnect never arrives
+        registry.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(new long[]{heartbeatMs, heartbeatMs})
+                .setTaskScheduler(brokerHeartbeatScheduler());
+        registry.setUserDestinationPrefix("/user");
+    }
+
+    @Bean
+    public ThreadPoolTaskScheduler brokerHeartbeatScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("ws-heartbeat-");
+        return scheduler;
+    }
+
+    /**
+     * Adds the binary ChatMessage format next to the default converters. It
+     * only applies to frames whose content-type names it.
+     */
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        messageConverters.add(new ChatMessageBinaryConverter());
+        return true;
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Only one outbound thread writes to a session at a time and the rest buffer, so a stalled
+        // client holds at most one thread for sendTimeLimit before it is closed as a slow consumer
+        registration.setSendTimeLimit(webSocketProperties.getSendTimeLimitMs())
+                .setSendBufferSizeLimit(webSocketProperties.getSendBufferSizeLimit())
+                .setMessageSizeLimit(webSocketProperties.getMessageSizeLimit())
+                .addDecoratorFactory(slowConsumerMonitor)
+                .addDecoratorFactory(webSocketTransportMonitor);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthChannelInterceptor, presenceHeartbeatInterceptor, wireFormatInterceptor,
+                new ChannelTaskTimer(meterRegistry, "inbound"));
+        configureExecutor(registration, "ws-inbound-", webSocketProperties.getChannels().getInbound());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Counted before batching so each subscriber's copy is one message however it is framed
+        registration.interceptors(outboundFanOutCounter, new ChannelTaskTimer(meterRegistry, "outbound"));
+        // Before batching: binary frames are not JSON, so they are sent on their own
+        registration.interceptors(wireFormatInterceptor);
+        if (outboundBatchingInterceptor.isEnabled()) {
+            registration.interceptors(outboundBatchingInterceptor);
+        }
+        configureExecutor(registration, "ws-outbound-", webSocketProperties.getChannels().getOutbound());
+    }
+
+    /**
+     * Tomcat accepts permessage-deflate whenever the client offers it; when
+     * disabled for an endpoint the offer is dropped before negotiation.
+     */
+    private static DefaultHandshakeHandler handshakeHandler(boolean permessageDeflate) {
+        return new DefaultHandshakeHandler() {
+            @Override
+            protected List<WebSocketExtension> filterRequestedExtensions(ServerHttpRequest request,
+                                                                         List<WebSocketExtension> requestedExtensions,
+                                                                         List<WebSocketExtension> supportedExtensions) {
+                List<WebSocketExtension> extensions =
+                        super.filterRequestedExtensions(request, requestedExtensions, supportedExtensions);
+                if (permessageDeflate) {
+                    return extensions;
+                }
+                return extensions.stream()
+                        .filter(extension -> !WebSocketTransportMonitor.PERMESSAGE_DEFLATE.equalsIgnoreCase(extension.getName()))
+                        .toList();
+            }
+        };
+    }
+
+    private void configureExecutor(ChannelRegistration registration, String threadNamePrefix,
+                                   WebSocketProperties.Pool pool) {
+        if (webSocketProperties.getChannels().isVirtualThreads()) {
+            registration.executor(new VirtualThreadTaskExecutor(threadNamePrefix));
+            return;
+        }
+
+        registration.taskExecutor()
+                .corePoolSize(pool.getCorePoolSize())
+                .maxPoolSize(pool.getMaxPoolSize())
+                .queueCapacity(pool.getQueueCapacity());
     }
 }
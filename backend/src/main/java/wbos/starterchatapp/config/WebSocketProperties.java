@@ -0,0 +1,52 @@
+package wbos.starterchatapp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * STOMP transport limits and channel executors, bound from chat.websocket.
+ * WebSocketConfig applies them.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.websocket")
+public class WebSocketProperties {
+
+    /**
+     * A session that cannot take a frame within this time is closed as a slow consumer.
+     */
+    private int sendTimeLimitMs = 5000;
+
+    /**
+     * Bytes a session may have waiting to be sent before it is closed as a slow consumer.
+     */
+    private int sendBufferSizeLimit = 262144;
+
+    private int messageSizeLimit = 65536;
+
+    private Channels channels = new Channels();
+
+    @Data
+    public static class Channels {
+
+        /**
+         * Runs channel handlers on virtual threads instead of the pools below.
+         */
+        private boolean virtualThreads;
+
+        private Pool inbound = new Pool();
+
+        private Pool outbound = new Pool();
+    }
+
+    @Data
+    public static class Pool {
+
+        private int corePoolSize = 16;
+
+        private int maxPoolSize = 32;
+
+        private int queueCapacity = 10000;
+    }
+}
@@ -0,0 +1,45 @@
+package wbos.starterchatapp.config.converters;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.util.MimeType;
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.utils.ChatMessageCodec;
+
+/**
+ * Reads and writes {@link ChatMessage} in the {@link ChatMessageCodec} format.
+ * Only used when a frame's content-type asks for it, so JSON stays the default.
+ */
+public class ChatMessageBinaryConverter extends AbstractMessageConverter {
+
+    public static final MimeType CHAT_BINARY = MimeType.valueOf("application/x-chat-message");
+
+    public ChatMessageBinaryConverter() {
+        super(CHAT_BINARY);
+        setStrictContentTypeMatch(true);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return ChatMessage.class.equals(clazz);
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        if (!(message.getPayload() instanceof byte[] bytes)) {
+            return null;
+        }
+        try {
+            return ChatMessageCodec.decode(bytes);
+        } catch (IllegalArgumentException e) {
+            throw new MessageConversionException(message, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+        return ChatMessageCodec.encode((ChatMessage) payload);
+    }
+}
@@ -0,0 +1,192 @@
+package wbos.starterchatapp.config.interceptors;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in aggregation of outbound MESSAGE frames. JSON messages for the same
+ * session and subscription that arrive within the batching window are sent
+ * as one frame whose body is a JSON array of the original bodies, marked
+ * with the {@link #BATCH_SIZE_HEADER} header. A busy subscription then costs
+ * one WebSocket write per window instead of one per message.
+ *
+ * <p>A batch is flushed when the window after its first message elapses or
+ * when it reaches the maximum size, whichever comes first. A batch of one
+ * goes out unchanged. Whoever flushes a batch, the timer or the sender that
+ * filled it, does so holding the batch's lock, and the batch leaves the map
+ * only after it has been sent; the next batch for that session and
+ * subscription cannot start before then, so frames keep their order.
+ */
+@Component
+public class OutboundBatchingInterceptor implements ChannelInterceptor {
+
+    public static final String BATCH_SIZE_HEADER = "x-batch-size";
+    // Marks frames this interceptor sent itself so they pass straight through
+    public static final String FLUSHED_HEADER = "chatBatchFlushed";
+
+    private static final class Batch {
+
+        private final List<Message<?>> messages = new ArrayList<>();
+        // Set once sent; a sender that still got hold of it must start a new batch
+        private boolean sent;
+    }
+
+    private final MessageChannel clientOutboundChannel;
+    private final boolean enabled;
+    private final long windowMicros;
+    private final int maxBatchSize;
+
+    private final ConcurrentMap<String, Batch> batches = new ConcurrentHashMap<>();
+    private final LongAdder batchedFrames = new LongAdder();
+    private final LongAdder batchedMessages = new LongAdder();
+
+    private ScheduledThreadPoolExecutor flusher;
+
+    // Lazy because the channel is created by the broker configuration that registers this interceptor
+    public OutboundBatchingInterceptor(
+            @Lazy @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+            @Value("${chat.websocket.batching.enabled:false}") boolean enabled,
+            @Value("${chat.websocket.batching.window-micros:5000}") long windowMicros,
+            @Value("${chat.websocket.batching.max-batch-size:64}") int maxBatchSize) {
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.enabled = enabled;
+        this.windowMicros = windowMicros;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = new ScheduledThreadPoolExecutor(1,
+                Thread.ofPlatform().name("ws-outbound-batcher").daemon(true).factory());
+        flusher.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getBatchedFrames() {
+        return batchedFrames.sum();
+    }
+
+    public long getBatchedMessages() {
+        return batchedMessages.sum();
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!enabled || message.getHeaders().containsKey(FLUSHED_HEADER) || !isBatchable(message)) {
+            return message;
+        }
+
+        String key = SimpMessageHeaderAccessor.getSessionId(message.getHeaders()) + '\n'
+                + SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+        while (true) {
+            Batch batch = batches.computeIfAbsent(key, k -> new Batch());
+            synchronized (batch) {
+                if (batch.sent) {
+                    continue;
+                }
+                batch.messages.add(message);
+                if (batch.messages.size() >= maxBatchSize) {
+                    flush(key, batch);
+                } else if (batch.messages.size() == 1) {
+                    flusher.schedule(() -> flushOnTimer(key, batch), windowMicros, TimeUnit.MICROSECONDS);
+                }
+            }
+            // Swallowed for now; it goes out with its batch
+            return null;
+        }
+    }
+
+    private void flushOnTimer(String key, Batch batch) {
+        synchronized (batch) {
+            // The batch may already have gone out for being full
+            if (!batch.sent) {
+                flush(key, batch);
+            }
+        }
+    }
+
+    // Called holding the batch's lock
+    private void flush(String key, Batch batch) {
+        batch.sent = true;
+        try {
+            send(batch);
+        } finally {
+            batches.remove(key, batch);
+        }
+    }
+
+    private void send(Batch batch) {
+        List<Message<?>> messages = batch.messages;
+        if (messages.size() == 1) {
+            clientOutboundChannel.send(MessageBuilder.fromMessage(messages.getFirst())
+                    .setHeader(FLUSHED_HEADER, true)
+                    .build());
+            return;
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write('[');
+        for (int i = 0; i < messages.size(); i++) {
+            if (i > 0) {
+                body.write(',');
+            }
+            body.writeBytes((byte[]) messages.get(i).getPayload());
+        }
+        body.write(']');
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(messages.getFirst());
+        accessor.setNativeHeader(BATCH_SIZE_HEADER, Integer.toString(messages.size()));
+        accessor.setHeader(FLUSHED_HEADER, true);
+        clientOutboundChannel.send(MessageBuilder.createMessage(body.toByteArray(), accessor.getMessageHeaders()));
+
+        batchedFrames.increment();
+        batchedMessages.add(messages.size());
+    }
+
+    private static boolean isBatchable(Message<?> message) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                || SimpMessageHeaderAccessor.getSessionId(message.getHeaders()) == null
+                || SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders()) == null
+                || !(message.getPayload() instanceof byte[])) {
+            return false;
+        }
+        Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        MimeType mimeType = contentType instanceof String value ? MimeTypeUtils.parseMimeType(value) : (MimeType) contentType;
+        return mimeType != null && MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(mimeType);
+    }
+}
@@ -0,0 +1,32 @@
+package wbos.starterchatapp.config.interceptors;
+
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import wbos.starterchatapp.services.presence.PresenceService;
+
+/**
+ * Marks a session as alive on every inbound frame, STOMP heartbeats included.
+ */
+@Component
+public class PresenceHeartbeatInterceptor implements ChannelInterceptor {
+
+    private final PresenceService presenceService;
+
+    // Lazy because PresenceService sends through the broker that WebSocketConfig is still configuring
+    public PresenceHeartbeatInterceptor(@Lazy PresenceService presenceService) {
+        this.presenceService = presenceService;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId != null) {
+            presenceService.touch(sessionId);
+        }
+        return message;
+    }
+}
@@ -0,0 +1,57 @@
+package wbos.starterchatapp.config.interceptors;
+
+import io.jsonwebtoken.JwtException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.stereotype.Component;
+import wbos.starterchatapp.dtos.VerifiedToken;
+import wbos.starterchatapp.utils.JwtUtil;
+
+import java.util.List;
+
+/**
+ * Resolves the user behind a STOMP CONNECT from its Authorization header so
+ * /user destinations can be routed. The principal name is the user id. A
+ * CONNECT without a valid Bearer token is refused, so every session has one.
+ */
+@Component
+@RequiredArgsConstructor
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    private final JwtUtil jwtUtil;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.CONNECT) {
+            return message;
+        }
+
+        String authHeader = accessor.getFirstNativeHeader("Authorization");
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            throw new MessageDeliveryException("Missing or invalid authorization header");
+        }
+
+        String token = authHeader.substring(7);
+        VerifiedToken verified;
+        try {
+            verified = jwtUtil.verify(token);
+        } catch (JwtException e) {
+            throw new MessageDeliveryException("Invalid or expired token");
+        }
+
+        accessor.setUser(new UsernamePasswordAuthenticationToken(verified.userId().toString(), null, List.of()));
+        if (accessor.getSessionAttributes() != null) {
+            accessor.getSessionAttributes().put("userId", verified.userId());
+            accessor.getSessionAttributes().put("username", verified.username());
+        }
+        return message;
+    }
+}
@@ -0,0 +1,140 @@
+package wbos.starterchatapp.config.interceptors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import wbos.starterchatapp.config.converters.ChatMessageBinaryConverter;
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.services.messages.MessageRouter;
+import wbos.starterchatapp.utils.ChatMessageCodec;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-session wire format negotiation. A client that sends
+ * {@code wire-format: binary} on CONNECT receives chat messages in the
+ * {@link ChatMessageCodec} format instead of JSON; everything else it
+ * receives, and everything other clients receive, stays JSON.
+ *
+ * <p>The broker hands every subscriber of a destination the same payload
+ * array, so the binary form is cached by payload identity: a broadcast is
+ * encoded once and the bytes are shared by all binary subscribers. Messages
+ * sent by {@link MessageRouter} carry the ChatMessage in
+ * {@link MessageRouter#CHAT_MESSAGE_HEADER} and are encoded from it; only a
+ * payload without one is parsed back from JSON.
+ */
+@Component
+@Slf4j
+public class WireFormatInterceptor implements ChannelInterceptor {
+
+    public static final String WIRE_FORMAT_HEADER = "wire-format";
+    public static final String BINARY = "binary";
+
+    private static final int CACHE_SLOTS = 256;
+
+    private record Encoded(byte[] json, byte[] binary) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Set<String> binarySessions = ConcurrentHashMap.newKeySet();
+    // Direct-mapped by identity hash; a collision only costs a re-encode
+    private final AtomicReferenceArray<Encoded> encoded = new AtomicReferenceArray<>(CACHE_SLOTS);
+    private final LongAdder encodes = new LongAdder();
+    private final LongAdder binaryFrames = new LongAdder();
+
+    public WireFormatInterceptor(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor stomp = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (stomp != null && stomp.getCommand() == StompCommand.CONNECT) {
+            if (BINARY.equalsIgnoreCase(stomp.getFirstNativeHeader(WIRE_FORMAT_HEADER)) && stomp.getSessionId() != null) {
+                binarySessions.add(stomp.getSessionId());
+            }
+            return message;
+        }
+
+        if (binarySessions.isEmpty()
+                || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                || !binarySessions.contains(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()))
+                || !isChatDestination(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))
+                || !(message.getPayload() instanceof byte[] json)) {
+            return message;
+        }
+
+        byte[] binary = toBinary(json, message.getHeaders().get(MessageRouter.CHAT_MESSAGE_HEADER, ChatMessage.class));
+        if (binary == null) {
+            return message;
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setContentType(ChatMessageBinaryConverter.CHAT_BINARY);
+        binaryFrames.increment();
+        return MessageBuilder.createMessage(binary, accessor.getMessageHeaders());
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        binarySessions.remove(event.getSessionId());
+    }
+
+    public int getBinarySessions() {
+        return binarySessions.size();
+    }
+
+    public long getBinaryEncodes() {
+        return encodes.sum();
+    }
+
+    public long getBinaryFrames() {
+        return binaryFrames.sum();
+    }
+
+    private byte[] toBinary(byte[] json, ChatMessage chatMessage) {
+        int slot = System.identityHashCode(json) & (CACHE_SLOTS - 1);
+        Encoded cached = encoded.get(slot);
+        if (cached != null && cached.json() == json) {
+            return cached.binary();
+        }
+
+        byte[] binary;
+        try {
+            binary = ChatMessageCodec.encode(chatMessage != null ? chatMessage : objectMapper.readValue(json, ChatMessage.class));
+        } catch (IOException e) {
+            // Not a chat message after all; the client gets it as JSON
+            log.debug("Sending JSON payload unchanged to binary session: {}", e.getMessage());
+            return null;
+        }
+        encodes.increment();
+        encoded.set(slot, new Encoded(json, binary));
+        return binary;
+    }
+
+    /**
+     * Destinations that carry {@link ChatMessage}. User queues reach the
+     * broker as /queue/messages-user{session}.
+     */
+    private static boolean isChatDestination(String destination) {
+        return destination != null
+                && (destination.startsWith(MessageRouter.USER_MESSAGES_QUEUE)
+                || destination.startsWith(MessageRouter.CONVERSATION_TOPIC_PREFIX)
+                && !destination.endsWith(MessageRouter.TYPING_TOPIC_SUFFIX));
+    }
+}
@@ -0,0 +1,55 @@
+package wbos.starterchatapp.config.listeners;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts sessions closed for exceeding the send-time or send-buffer limits
+ * configured in WebSocketConfig. Spring closes such sessions with
+ * SESSION_NOT_RELIABLE so a stalled client cannot hold outbound threads or
+ * grow its buffer without bound.
+ */
+@Component
+@Slf4j
+public class SlowConsumerMonitor implements WebSocketHandlerDecoratorFactory {
+
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final LongAdder evictions = new LongAdder();
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                activeSessions.incrementAndGet();
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                activeSessions.decrementAndGet();
+                if (CloseStatus.SESSION_NOT_RELIABLE.equalsCode(closeStatus)) {
+                    evictions.increment();
+                    log.warn("Evicted slow consumer session {} ({})", session.getId(), closeStatus.getReason());
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+}
@@ -0,0 +1,74 @@
+package wbos.starterchatapp.config.listeners;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts open sessions per transport, and how many negotiated
+ * permessage-deflate, so the native and SockJS endpoints can be compared.
+ */
+@Component
+public class WebSocketTransportMonitor implements WebSocketHandlerDecoratorFactory {
+
+    public static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    private final AtomicInteger nativeSessions = new AtomicInteger();
+    private final AtomicInteger sockJsSessions = new AtomicInteger();
+    private final AtomicInteger deflateSessions = new AtomicInteger();
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                counter(session).incrementAndGet();
+                if (isDeflate(session)) {
+                    deflateSessions.incrementAndGet();
+                }
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                counter(session).decrementAndGet();
+                if (isDeflate(session)) {
+                    deflateSessions.decrementAndGet();
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    public int getNativeSessions() {
+        return nativeSessions.get();
+    }
+
+    public int getSockJsSessions() {
+        return sockJsSessions.get();
+    }
+
+    public int getDeflateSessions() {
+        return deflateSessions.get();
+    }
+
+    private AtomicInteger counter(WebSocketSession session) {
+        return session instanceof SockJsSession ? sockJsSessions : nativeSessions;
+    }
+
+    private static boolean isDeflate(WebSocketSession session) {
+        for (WebSocketExtension extension : session.getExtensions()) {
+            if (PERMESSAGE_DEFLATE.equalsIgnoreCase(extension.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -3,34 +3,39 @@ package wbos.starterchatapp.config.listeners;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
-import org.springframework.messaging.simp.SimpMessageSendingOperations;
-import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
-import wbos.starterchatapp.dtos.ChatMessage;
-import wbos.starterchatapp.enums.MessageType;
+import wbos.starterchatapp.services.presence.PresenceService;
 
+import java.security.Principal;
+
+/**
+ * Feeds session lifecycle into presence. Joins and leaves reach clients as
+ * batched presence diffs rather than one broadcast per session.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class WebsocketEventListener {
 
-    private final SimpMessageSendingOperations messageSender;
+    private final PresenceService presenceService;
 
     @EventListener
-    public void handleWebsocketDisconnectListener(SessionDisconnectEvent disconnectEvent){
-        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(disconnectEvent.getMessage());
-        String username = (String) headerAccessor.getSessionAttributes().get("username");
-
-        if(username != null){
-            log.info("User disconnected: {}", username);
-            var chatMessage = ChatMessage.builder()
-                    .type(MessageType.LEAVE)
-                    .sender(username)
-                    .build();
-
-            messageSender.convertAndSend("/topic/public",chatMessage);
+    public void handleWebsocketConnectedListener(SessionConnectedEvent connectedEvent) {
+        Principal user = connectedEvent.getUser();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(connectedEvent.getMessage().getHeaders());
+        // Anonymous sessions have no user id to report presence for
+        if (user != null && sessionId != null) {
+            presenceService.connected(sessionId, Long.parseLong(user.getName()));
         }
     }
 
+    @EventListener
+    public void handleWebsocketDisconnectListener(SessionDisconnectEvent disconnectEvent){
+        log.debug("Session disconnected: {}", disconnectEvent.getSessionId());
+        presenceService.disconnected(disconnectEvent.getSessionId());
+    }
+
 }
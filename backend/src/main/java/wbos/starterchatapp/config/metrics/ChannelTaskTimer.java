@@ -0,0 +1,39 @@
+package wbos.starterchatapp.config.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times each handler run on a STOMP channel's executor thread. The start time
+ * is kept in a per-thread slot, so timing a message allocates nothing.
+ */
+public class ChannelTaskTimer implements ExecutorChannelInterceptor {
+
+    private final Timer timer;
+    private final ThreadLocal<long[]> startedAt = ThreadLocal.withInitial(() -> new long[1]);
+
+    public ChannelTaskTimer(MeterRegistry meterRegistry, String channel) {
+        this.timer = Timer.builder("chat.websocket.channel.task")
+                .description("Time a STOMP channel handler spends on one message")
+                .tag("channel", channel)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        startedAt.get()[0] = System.nanoTime();
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        timer.record(System.nanoTime() - startedAt.get()[0], TimeUnit.NANOSECONDS);
+    }
+}
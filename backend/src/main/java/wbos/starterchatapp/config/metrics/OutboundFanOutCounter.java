@@ -0,0 +1,80 @@
+package wbos.starterchatapp.config.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import wbos.starterchatapp.config.interceptors.OutboundBatchingInterceptor;
+import wbos.starterchatapp.services.messages.MessageRouter;
+import wbos.starterchatapp.services.presence.PresenceService;
+
+/**
+ * Counts the frames the broker hands to sessions, one per subscriber, grouped
+ * by kind of destination. Counters are registered up front so the per-frame
+ * path is a prefix check and an increment.
+ */
+@Component
+public class OutboundFanOutCounter implements ChannelInterceptor {
+
+    private final Counter conversation;
+    private final Counter conversationTyping;
+    private final Counter userMessages;
+    private final Counter userTyping;
+    private final Counter presence;
+    private final Counter other;
+
+    public OutboundFanOutCounter(MeterRegistry meterRegistry) {
+        this.conversation = counter(meterRegistry, "conversation");
+        this.conversationTyping = counter(meterRegistry, "conversation-typing");
+        this.userMessages = counter(meterRegistry, "user-messages");
+        this.userTyping = counter(meterRegistry, "user-typing");
+        this.presence = counter(meterRegistry, "presence");
+        this.other = counter(meterRegistry, "other");
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        // Batches re-enter the channel once flushed; their messages were counted on the way in
+        if (SimpMessageHeaderAccessor.getMessageType(headers) == SimpMessageType.MESSAGE
+                && !headers.containsKey(OutboundBatchingInterceptor.FLUSHED_HEADER)) {
+            counterFor(SimpMessageHeaderAccessor.getDestination(headers)).increment();
+        }
+        return message;
+    }
+
+    /**
+     * User destinations arrive resolved to the session's own queue, e.g.
+     * /queue/messages-user{sessionId}, so they are matched by prefix.
+     */
+    Counter counterFor(String destination) {
+        if (destination == null) {
+            return other;
+        }
+        if (destination.startsWith(MessageRouter.CONVERSATION_TOPIC_PREFIX)) {
+            return destination.endsWith(MessageRouter.TYPING_TOPIC_SUFFIX) ? conversationTyping : conversation;
+        }
+        if (destination.startsWith(MessageRouter.USER_MESSAGES_QUEUE)) {
+            return userMessages;
+        }
+        if (destination.startsWith(MessageRouter.USER_TYPING_QUEUE)) {
+            return userTyping;
+        }
+        if (destination.startsWith(PresenceService.PRESENCE_QUEUE)) {
+            return presence;
+        }
+        return other;
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String destination) {
+        return Counter.builder("chat.websocket.outbound.messages")
+                .description("Frames sent to subscribed sessions")
+                .tag("destination", destination)
+                .register(meterRegistry);
+    }
+}
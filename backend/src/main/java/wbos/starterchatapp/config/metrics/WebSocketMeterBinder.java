@@ -0,0 +1,107 @@
+package wbos.starterchatapp.config.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import wbos.starterchatapp.config.interceptors.OutboundBatchingInterceptor;
+import wbos.starterchatapp.config.interceptors.WireFormatInterceptor;
+import wbos.starterchatapp.config.listeners.SlowConsumerMonitor;
+import wbos.starterchatapp.config.listeners.WebSocketTransportMonitor;
+import wbos.starterchatapp.services.presence.PresenceService;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Publishes the counters the WebSocket and presence components keep as
+ * gauges and counters. They are read when the registry is scraped, never on
+ * the messaging path.
+ */
+@Component
+public class WebSocketMeterBinder implements MeterBinder {
+
+    private final SlowConsumerMonitor slowConsumerMonitor;
+    private final WebSocketTransportMonitor webSocketTransportMonitor;
+    private final OutboundBatchingInterceptor outboundBatchingInterceptor;
+    private final WireFormatInterceptor wireFormatInterceptor;
+    private final PresenceService presenceService;
+    private final Executor inboundExecutor;
+    private final Executor outboundExecutor;
+
+    public WebSocketMeterBinder(SlowConsumerMonitor slowConsumerMonitor,
+                                WebSocketTransportMonitor webSocketTransportMonitor,
+                                OutboundBatchingInterceptor outboundBatchingInterceptor,
+                                WireFormatInterceptor wireFormatInterceptor,
+                                PresenceService presenceService,
+                                @Qualifier("clientInboundChannelExecutor") Executor inboundExecutor,
+                                @Qualifier("clientOutboundChannelExecutor") Executor outboundExecutor) {
+        this.slowConsumerMonitor = slowConsumerMonitor;
+        this.webSocketTransportMonitor = webSocketTransportMonitor;
+        this.outboundBatchingInterceptor = outboundBatchingInterceptor;
+        this.wireFormatInterceptor = wireFormatInterceptor;
+        this.presenceService = presenceService;
+        this.inboundExecutor = inboundExecutor;
+        this.outboundExecutor = outboundExecutor;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("chat.websocket.sessions", slowConsumerMonitor, SlowConsumerMonitor::getActiveSessions)
+                .description("Open WebSocket sessions")
+                .register(registry);
+        Gauge.builder("chat.websocket.sessions.transport", webSocketTransportMonitor, WebSocketTransportMonitor::getNativeSessions)
+                .tag("transport", "native")
+                .register(registry);
+        Gauge.builder("chat.websocket.sessions.transport", webSocketTransportMonitor, WebSocketTransportMonitor::getSockJsSessions)
+                .tag("transport", "sockjs")
+                .register(registry);
+        Gauge.builder("chat.websocket.sessions.deflate", webSocketTransportMonitor, WebSocketTransportMonitor::getDeflateSessions)
+                .description("Sessions that negotiated permessage-deflate")
+                .register(registry);
+        Gauge.builder("chat.websocket.sessions.binary", wireFormatInterceptor, WireFormatInterceptor::getBinarySessions)
+                .description("Sessions that negotiated the binary ChatMessage format")
+                .register(registry);
+        FunctionCounter.builder("chat.websocket.slow.consumer.evictions", slowConsumerMonitor, SlowConsumerMonitor::getEvictions)
+                .register(registry);
+        FunctionCounter.builder("chat.websocket.batched.frames", outboundBatchingInterceptor, OutboundBatchingInterceptor::getBatchedFrames)
+                .register(registry);
+        FunctionCounter.builder("chat.websocket.batched.messages", outboundBatchingInterceptor, OutboundBatchingInterceptor::getBatchedMessages)
+                .register(registry);
+        FunctionCounter.builder("chat.websocket.binary.encodes", wireFormatInterceptor, WireFormatInterceptor::getBinaryEncodes)
+                .description("Outbound messages encoded once in the binary format")
+                .register(registry);
+        FunctionCounter.builder("chat.websocket.binary.frames", wireFormatInterceptor, WireFormatInterceptor::getBinaryFrames)
+                .register(registry);
+        Gauge.builder("chat.presence.online.users", presenceService, PresenceService::getOnlineUsers)
+                .register(registry);
+        Gauge.builder("chat.presence.sessions", presenceService, PresenceService::getSessions)
+                .register(registry);
+        FunctionCounter.builder("chat.presence.diffs.published", presenceService, PresenceService::getDiffsPublished)
+                .register(registry);
+        FunctionCounter.builder("chat.presence.changes.published", presenceService, PresenceService::getChangesPublished)
+                .register(registry);
+        FunctionCounter.builder("chat.presence.expired.sessions", presenceService, PresenceService::getExpiredSessions)
+                .description("Sessions dropped after missing their heartbeats")
+                .register(registry);
+
+        bindExecutor(registry, "inbound", inboundExecutor);
+        bindExecutor(registry, "outbound", outboundExecutor);
+    }
+
+    // Virtual-thread executors have no queue to report
+    private static void bindExecutor(MeterRegistry registry, String channel, Executor executor) {
+        if (!(executor instanceof ThreadPoolTaskExecutor pool)) {
+            return;
+        }
+        Gauge.builder("chat.websocket.channel.queue", pool, ThreadPoolTaskExecutor::getQueueSize)
+                .description("Messages waiting for a STOMP channel thread")
+                .tag("channel", channel)
+                .register(registry);
+        Gauge.builder("chat.websocket.channel.active", pool, ThreadPoolTaskExecutor::getActiveCount)
+                .tag("channel", channel)
+                .register(registry);
+    }
+}
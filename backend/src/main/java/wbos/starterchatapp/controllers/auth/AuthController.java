@@ -3,12 +3,15 @@ package wbos.starterchatapp.controllers.auth;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import wbos.starterchatapp.dtos.requests.CreateUserRequest;
 import wbos.starterchatapp.dtos.requests.SignInRequest;
+import wbos.starterchatapp.dtos.response.AvailabilityResponse;
 import wbos.starterchatapp.dtos.response.SignInResponse;
 import wbos.starterchatapp.dtos.response.SignUpResponse;
 import wbos.starterchatapp.services.UserService;
@@ -29,4 +32,13 @@ public class AuthController {
     public ResponseEntity<SignInResponse> signIn(@Valid @RequestBody SignInRequest request) {
         return ResponseEntity.ok().body(userService.signIn(request));
     }
+
+    /**
+     * Live check for the sign-up form; either parameter may be omitted.
+     */
+    @GetMapping("/availability")
+    public ResponseEntity<AvailabilityResponse> checkAvailability(@RequestParam(required = false) String username,
+                                                                  @RequestParam(required = false) String email) {
+        return ResponseEntity.ok().body(userService.checkAvailability(username, email));
+    }
 }
@@ -1,28 +1,104 @@
 package wbos.starterchatapp.controllers.chat;
 
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.stereotype.Controller;
 import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.dtos.response.ReplayResponse;
+import wbos.starterchatapp.enums.MessageType;
+import wbos.starterchatapp.services.messages.ConversationReplayBuffer;
+import wbos.starterchatapp.services.messages.MessageQueueFullException;
+import wbos.starterchatapp.services.messages.MessageRouter;
+import wbos.starterchatapp.services.messages.MessageService;
+import wbos.starterchatapp.services.messages.TypingIndicatorService;
+import wbos.starterchatapp.utils.ConversationIds;
+
+import java.security.Principal;
+import java.util.Map;
 
 @Controller
+@RequiredArgsConstructor
 public class ChatController {
 
+    private final MessageService messageService;
+    private final MessageRouter messageRouter;
+    private final TypingIndicatorService typingIndicatorService;
+    private final ConversationReplayBuffer replayBuffer;
+
     @MessageMapping("/chat.sendMessage")
-    @SendTo("/topic/public")
-    public ChatMessage sendMessage(@Payload ChatMessage message){
-        return message;
+    public void sendMessage(@Payload ChatMessage message, Principal principal,
+                            SimpMessageHeaderAccessor headerAccessor){
+        // A session always speaks for the user it authenticated as, whatever the payload claims
+        message.setSenderId(senderId(principal));
+        message.setSender(senderName(headerAccessor));
+        // Ephemeral events never take the one-for-one chat path
+        if (message.getType() == MessageType.TYPING || message.getType() == MessageType.STOP_TYPING) {
+            typing(message, principal, headerAccessor);
+            return;
+        }
+        messageRouter.route(messageService.send(message));
+    }
+
+    /**
+     * TYPING on keystrokes, STOP_TYPING when the draft is sent or cleared.
+     */
+    @MessageMapping("/chat.typing")
+    public void typing(@Payload ChatMessage message, Principal principal,
+                       SimpMessageHeaderAccessor headerAccessor) {
+        Long senderId = senderId(principal);
+
+        if (message.getType() == MessageType.STOP_TYPING) {
+            typingIndicatorService.stoppedTyping(senderId, message.getRecipientId());
+        } else {
+            typingIndicatorService.typing(senderId, senderName(headerAccessor), message.getRecipientId());
+        }
     }
 
-    @MessageMapping("/chat.addUser")
-    @SendTo("/topic/public")
-    public ChatMessage addUser(@Payload ChatMessage message,
-                               SimpMessageHeaderAccessor headerAccessor){
+    /**
+     * Subscribe to /app/conversations/{id}/replay with a {@code last-seq} header after
+     * (re)subscribing to the live destination. The reply carries the messages missed
+     * since then, or complete=false when history has to be reloaded instead.
+     */
+    @SubscribeMapping("/conversations/{conversationId}/replay")
+    public ReplayResponse replay(@DestinationVariable String conversationId,
+                                 @Header(name = "last-seq", required = false) Long lastSequence,
+                                 Principal principal) {
+        Long userId = principal != null ? Long.valueOf(principal.getName()) : null;
+        if (!ConversationIds.canRead(conversationId, userId)) {
+            throw new MessageDeliveryException("Not a participant of " + conversationId);
+        }
+        return replayBuffer.replay(conversationId, lastSequence);
+    }
+
+    /**
+     * The message was not stored or delivered; tell only the session that sent it.
+     */
+    @MessageExceptionHandler(MessageQueueFullException.class)
+    @SendToUser(destinations = MessageRouter.USER_ERRORS_QUEUE, broadcast = false)
+    public ProblemDetail messageQueueFull(MessageQueueFullException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+    }
+
+    private static Long senderId(Principal principal) {
+        if (principal == null) {
+            throw new MessageDeliveryException("Not authenticated");
+        }
+        return Long.valueOf(principal.getName());
+    }
 
-        //Adds username to Websocket Session
-        headerAccessor.getSessionAttributes().put("username",message.getSender());
-        return message;
+    // Stored from the verified token at CONNECT
+    private static String senderName(SimpMessageHeaderAccessor headerAccessor) {
+        Map<String, Object> attributes = headerAccessor.getSessionAttributes();
+        return attributes != null ? (String) attributes.get("username") : null;
     }
 }
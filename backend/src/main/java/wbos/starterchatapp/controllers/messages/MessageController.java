@@ -0,0 +1,102 @@
+package wbos.starterchatapp.controllers.messages;
+
+import io.jsonwebtoken.JwtException;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.dtos.VerifiedToken;
+import wbos.starterchatapp.dtos.requests.SendMessageRequest;
+import wbos.starterchatapp.dtos.response.MessageHistoryResponse;
+import wbos.starterchatapp.enums.MessageType;
+import wbos.starterchatapp.services.messages.MessageQueueFullException;
+import wbos.starterchatapp.services.messages.MessageRouter;
+import wbos.starterchatapp.services.messages.MessageService;
+import wbos.starterchatapp.services.messages.MessageWriteBehindService;
+import wbos.starterchatapp.utils.JwtUtil;
+
+@RestController
+@RequestMapping("/messages")
+@RequiredArgsConstructor
+public class MessageController {
+
+    /**
+     * Lets the gateway drop cached history for the conversation without parsing the body.
+     */
+    public static final String CONVERSATION_ID_HEADER = "X-Conversation-Id";
+
+    private final MessageService messageService;
+    private final MessageWriteBehindService writeBehindService;
+    private final MessageRouter messageRouter;
+    private final JwtUtil jwtUtil;
+
+    /**
+     * Called through the gateway, which relays the caller's Authorization
+     * header. The sender is always taken from the verified token, never from
+     * a header a client could set itself.
+     */
+    @PostMapping
+    public ResponseEntity<ChatMessage> sendMessage(@RequestHeader(value = "Authorization", required = false) String authHeader,
+                                                   @Valid @RequestBody SendMessageRequest request) {
+        VerifiedToken caller = authenticate(authHeader);
+        Long userId = caller.userId();
+        ChatMessage message = messageService.send(ChatMessage.builder()
+                .type(MessageType.CHAT)
+                .senderId(userId)
+                .sender(caller.username())
+                .recipientId(request.getRecipientId())
+                .content(request.getContent())
+                .build());
+
+        messageRouter.route(message);
+        return ResponseEntity.accepted()
+                .header(CONVERSATION_ID_HEADER, MessageService.conversationId(userId, request.getRecipientId()))
+                .body(message);
+    }
+
+    /**
+     * Pages backwards through a conversation: pass the returned "before" cursor
+     * to get the next older page. Responses carry an ETag, so a matching
+     * If-None-Match gets a 304 without a body. While the conversation has
+     * messages waiting in the write-behind queue the page may be missing them,
+     * so it is marked no-store and caches in front of us do not keep it.
+     */
+    @GetMapping
+    public ResponseEntity<MessageHistoryResponse> getMessages(@RequestHeader(value = "Authorization", required = false) String authHeader,
+                                                              @RequestParam(required = false) Long recipientId,
+                                                              @RequestParam(required = false) String before,
+                                                              @RequestParam(required = false) Integer limit) {
+        Long userId = authenticate(authHeader).userId();
+        // Checked before reading, so a page marked storable has every message accepted until then
+        boolean writesPending = writeBehindService.hasPendingWrites(MessageService.conversationId(userId, recipientId));
+        MessageHistoryResponse page = messageService.history(userId, recipientId, before, limit);
+        return ResponseEntity.ok()
+                .eTag(MessageService.etag(page))
+                .cacheControl(writesPending ? CacheControl.noStore() : CacheControl.empty())
+                .body(page);
+    }
+
+    private VerifiedToken authenticate(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Missing or invalid authorization header");
+        }
+        try {
+            return jwtUtil.verify(authHeader.substring(7));
+        } catch (JwtException e) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid or expired token");
+        }
+    }
+
+    @ExceptionHandler(MessageQueueFullException.class)
+    public ResponseEntity<ProblemDetail> messageQueueFull(MessageQueueFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ProblemDetail.forStatusAndDetail(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage()));
+    }
+}
@@ -0,0 +1,31 @@
+package wbos.starterchatapp.controllers.presence;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import wbos.starterchatapp.dtos.response.PresenceResponse;
+import wbos.starterchatapp.services.presence.PresenceService;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/presence")
+@RequiredArgsConstructor
+public class PresenceController {
+
+    private final PresenceService presenceService;
+
+    /**
+     * Which of the given users are online, for a client to seed its view
+     * before applying diffs from /user/queue/presence.
+     */
+    @GetMapping
+    public ResponseEntity<PresenceResponse> online(@RequestParam List<Long> userIds) {
+        return ResponseEntity.ok().body(PresenceResponse.builder()
+                .online(presenceService.online(userIds))
+                .build());
+    }
+}
@@ -1,15 +1,29 @@
 package wbos.starterchatapp.dtos;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import wbos.starterchatapp.enums.MessageType;
 
+import java.time.LocalDateTime;
+
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 @Builder
 public class ChatMessage {
 
     private String content;
     private String sender;
     private MessageType type;
+    private Long senderId;
+    private Long recipientId;
+    private LocalDateTime timestamp;
+
+    /**
+     * Position in the conversation, stamped by the backend for CHAT messages.
+     */
+    private Long sequence;
 }
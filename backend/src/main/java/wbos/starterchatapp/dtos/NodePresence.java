@@ -0,0 +1,29 @@
+package wbos.starterchatapp.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One node's own presence as relayed to the other nodes: either the users
+ * that came online or went offline on it, or, for a snapshot, every user
+ * with a session on it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NodePresence {
+
+    private List<Long> online;
+
+    private List<Long> offline;
+
+    /**
+     * True when {@link #online} is the node's complete set and replaces what was known of it.
+     */
+    private boolean snapshot;
+}
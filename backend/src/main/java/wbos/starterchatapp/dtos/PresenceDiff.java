@@ -0,0 +1,25 @@
+package wbos.starterchatapp.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Users that came online or went offline since the previous diff.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PresenceDiff {
+
+    private List<Long> online;
+
+    private List<Long> offline;
+
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,28 @@
+package wbos.starterchatapp.dtos;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RelayEnvelope {
+
+    /**
+     * Node that published the envelope, used to drop our own echoes.
+     */
+    private String origin;
+
+    /**
+     * Target user for /user destinations, null for topics.
+     */
+    private String user;
+
+    private String destination;
+
+    private JsonNode payload;
+}
@@ -0,0 +1,28 @@
+package wbos.starterchatapp.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Everyone currently typing in a conversation. Sent only when that set
+ * changes; an empty list means nobody is typing any more.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TypingUpdate {
+
+    private String conversationId;
+
+    private List<TypingUser> typing;
+
+    /**
+     * Participants of a direct conversation, null for the public one.
+     */
+    private List<Long> participants;
+}
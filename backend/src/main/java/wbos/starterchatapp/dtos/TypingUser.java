@@ -0,0 +1,17 @@
+package wbos.starterchatapp.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TypingUser {
+
+    private Long userId;
+
+    private String username;
+}
@@ -0,0 +1,9 @@
+package wbos.starterchatapp.dtos;
+
+import java.time.Instant;
+
+/**
+ * Claims of a token whose signature and expiry have been checked.
+ */
+public record VerifiedToken(String username, Long userId, Instant expiresAt) {
+}
@@ -0,0 +1,21 @@
+package wbos.starterchatapp.dtos.requests;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SendMessageRequest {
+
+    @NotNull(message = "Recipient is required")
+    private Long recipientId;
+
+    @NotBlank(message = "Message content is required")
+    @Size(max = 4000, message = "Message must be at most 4000 characters")
+    private String content;
+}
@@ -0,0 +1,23 @@
+package wbos.starterchatapp.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AvailabilityResponse {
+
+    /**
+     * Null when no username was asked about.
+     */
+    private Boolean usernameAvailable;
+
+    /**
+     * Null when no email was asked about.
+     */
+    private Boolean emailAvailable;
+}
@@ -0,0 +1,27 @@
+package wbos.starterchatapp.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MessageHistoryResponse {
+
+    /**
+     * Oldest first, ready to be prepended to what the client already shows.
+     */
+    private List<MessageResponse> messages;
+
+    /**
+     * Opaque cursor for the next (older) page, null when there is nothing older.
+     */
+    private String before;
+
+    private boolean hasMore;
+}
@@ -0,0 +1,27 @@
+package wbos.starterchatapp.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MessageResponse {
+
+    private Long id;
+
+    private Long senderId;
+
+    private Long recipientId;
+
+    private String senderUsername;
+
+    private String content;
+
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,20 @@
+package wbos.starterchatapp.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PresenceResponse {
+
+    /**
+     * The requested users that currently have at least one live session.
+     */
+    private List<Long> online;
+}
@@ -0,0 +1,31 @@
+package wbos.starterchatapp.dtos.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import wbos.starterchatapp.dtos.ChatMessage;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReplayResponse {
+
+    private String conversationId;
+
+    /**
+     * Messages after the requested sequence, oldest first.
+     */
+    private List<ChatMessage> messages;
+
+    /**
+     * False when the gap could not be served from memory and the client has
+     * to reload history instead.
+     */
+    private boolean complete;
+
+    private Long lastSequence;
+}
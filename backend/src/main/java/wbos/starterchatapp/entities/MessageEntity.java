@@ -0,0 +1,44 @@
+package wbos.starterchatapp.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import wbos.starterchatapp.enums.MessageType;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "messages", indexes = {
+        // Keyset pagination over a conversation walks this index backwards from the cursor
+        @Index(name = "idx_messages_conversation_id_id", columnList = "conversation_id, id"),
+        // Covering indexes for loading a user's direct-message partners when they connect
+        @Index(name = "idx_messages_sender_id_recipient_id", columnList = "sender_id, recipient_id"),
+        @Index(name = "idx_messages_recipient_id_sender_id", columnList = "recipient_id, sender_id")
+})
+@Data
+public class MessageEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String conversationId;
+
+    @Column(nullable = false)
+    private Long senderId;
+
+    private Long recipientId;
+
+    @Column(nullable = false)
+    private String senderUsername;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String content;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private MessageType type;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -6,18 +6,25 @@ import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "auth")
+@Table(name = "auth", uniqueConstraints = {
+        @UniqueConstraint(name = UserEntity.USERNAME_CONSTRAINT, columnNames = "username"),
+        @UniqueConstraint(name = UserEntity.EMAIL_CONSTRAINT, columnNames = "email")
+})
 @Data
 public class UserEntity {
 
+    // Named so a violation can be told apart when sign-up relies on them
+    public static final String USERNAME_CONSTRAINT = "uk_auth_username";
+    public static final String EMAIL_CONSTRAINT = "uk_auth_email";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(unique = true, nullable = false)
+    @Column(nullable = false)
     private String username;
 
-    @Column(unique = true, nullable = false)
+    @Column(nullable = false)
     private String email;
 
     private String password;
@@ -1,5 +1,7 @@
 package wbos.starterchatapp.enums;
 
 public enum MessageType {
-    CHAT, JOIN, LEAVE
+    CHAT, JOIN, LEAVE,
+    // Ephemeral: coalesced by TypingIndicatorService, never persisted
+    TYPING, STOP_TYPING
 }
@@ -0,0 +1,5 @@
+package wbos.starterchatapp.enums;
+
+public enum OverflowPolicy {
+    REJECT, CALLER_RUNS
+}
@@ -0,0 +1,32 @@
+package wbos.starterchatapp.repositories;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import wbos.starterchatapp.dtos.response.MessageResponse;
+import wbos.starterchatapp.entities.MessageEntity;
+
+import java.util.List;
+
+@Repository
+public interface MessageRepository extends JpaRepository<MessageEntity, Long> {
+
+    @Query("""
+            select new wbos.starterchatapp.dtos.response.MessageResponse(
+                m.id, m.senderId, m.recipientId, m.senderUsername, m.content, m.createdAt)
+            from MessageEntity m
+            where m.conversationId = :conversationId and m.id < :beforeId
+            order by m.id desc
+            """)
+    List<MessageResponse> findPageBefore(@Param("conversationId") String conversationId,
+                                         @Param("beforeId") Long beforeId,
+                                         Limit limit);
+
+    @Query("select distinct m.recipientId from MessageEntity m where m.senderId = :senderId and m.recipientId is not null")
+    List<Long> findRecipientIdsBySender(@Param("senderId") Long senderId);
+
+    @Query("select distinct m.senderId from MessageEntity m where m.recipientId = :recipientId")
+    List<Long> findSenderIdsByRecipient(@Param("recipientId") Long recipientId);
+}
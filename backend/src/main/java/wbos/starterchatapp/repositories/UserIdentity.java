@@ -0,0 +1,13 @@
+package wbos.starterchatapp.repositories;
+
+/**
+ * The identifying columns of a user, for scans that do not need the whole row.
+ */
+public interface UserIdentity {
+
+    Long getId();
+
+    String getUsername();
+
+    String getEmail();
+}
@@ -1,9 +1,15 @@
 package wbos.starterchatapp.repositories;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import wbos.starterchatapp.entities.UserEntity;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -17,4 +23,11 @@ public interface UserRepository extends JpaRepository<UserEntity,Long> {
     boolean existsByUsername(String username);
 
     boolean existsByEmail(String email);
+
+    List<UserIdentity> findByIdGreaterThanOrderById(Long id, Limit limit);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UserEntity u SET u.password = :password WHERE u.id = :id")
+    int updatePassword(@Param("id") Long id, @Param("password") String password);
 }
@@ -0,0 +1,174 @@
+package wbos.starterchatapp.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Runs BCrypt on a small dedicated pool instead of the request threads, so a
+ * burst of sign-ins can only use as much CPU as the pool has threads. Work
+ * beyond the pool and its bounded queue is refused straight away with 503
+ * rather than left waiting.
+ */
+@Service
+@Slf4j
+public class PasswordHashingService {
+
+    private final PasswordEncoder passwordEncoder;
+    private final int bcryptStrength;
+    private final ThreadPoolExecutor executor;
+
+    private final Timer encodeTimer;
+    private final Timer matchTimer;
+    private final Timer rehashTimer;
+    private final Timer queueWaitTimer;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder rehashed = new LongAdder();
+
+    public PasswordHashingService(
+            PasswordEncoder passwordEncoder,
+            MeterRegistry meterRegistry,
+            @Value("${chat.security.password.bcrypt-strength:10}") int bcryptStrength,
+            @Value("${chat.security.password.hashing.threads:0}") int threads,
+            @Value("${chat.security.password.hashing.queue-capacity:64}") int queueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+        this.bcryptStrength = bcryptStrength;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("password-hash-", 0).daemon(true).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeTimer = hashTimer(meterRegistry, "encode");
+        this.matchTimer = hashTimer(meterRegistry, "matches");
+        this.rehashTimer = hashTimer(meterRegistry, "rehash");
+        this.queueWaitTimer = Timer.builder("chat.auth.bcrypt.queue.wait")
+                .description("Time a BCrypt job waits for a hashing thread")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("chat.auth.bcrypt.queue", executor, pool -> pool.getQueue().size())
+                .description("BCrypt jobs waiting for a hashing thread")
+                .register(meterRegistry);
+        Gauge.builder("chat.auth.bcrypt.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.auth.bcrypt.rejected", rejected, LongAdder::sum)
+                .description("Sign-ins and sign-ups refused because the hashing pool was full")
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.auth.bcrypt.rehashed", rehashed, LongAdder::sum)
+                .description("Stored hashes upgraded to the configured cost")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    public String encode(String rawPassword) {
+        return run(encodeTimer, () -> passwordEncoder.encode(rawPassword));
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return run(matchTimer, () -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * True when the stored hash was made with a different cost than the one configured now.
+     */
+    public boolean needsRehash(String encodedPassword) {
+        // $2a$10$... : the cost sits between the second and third '$'
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$') {
+            return false;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6)) != bcryptStrength;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Re-encodes with the current cost off the caller's path. Skipped when the
+     * pool is busy; the next sign-in will try again.
+     */
+    public void rehashInBackground(String rawPassword, Consumer<String> store) {
+        try {
+            executor.submit(timed(System.nanoTime(), rehashTimer, () -> {
+                try {
+                    store.accept(passwordEncoder.encode(rawPassword));
+                    rehashed.increment();
+                } catch (RuntimeException e) {
+                    log.warn("Password rehash failed: {}", e.getMessage());
+                }
+                return null;
+            }));
+        } catch (RejectedExecutionException e) {
+            log.debug("Skipping password rehash, hashing pool is busy");
+        }
+    }
+
+    private <T> T run(Timer hashTimer, Callable<T> hashing) {
+        Future<T> result;
+        try {
+            result = executor.submit(timed(System.nanoTime(), hashTimer, hashing));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many sign-in requests, try again shortly");
+        }
+
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while hashing password");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private <T> Callable<T> timed(long enqueuedAt, Timer hashTimer, Callable<T> hashing) {
+        return () -> {
+            long start = System.nanoTime();
+            long queueWait = start - enqueuedAt;
+            queueWaitTimer.record(queueWait, TimeUnit.NANOSECONDS);
+            try {
+                return hashing.call();
+            } finally {
+                long hash = System.nanoTime() - start;
+                hashTimer.record(hash, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    private static Timer hashTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("chat.auth.bcrypt")
+                .description("Time spent in BCrypt on a hashing thread")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,163 @@
+package wbos.starterchatapp.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import wbos.starterchatapp.dtos.response.AvailabilityResponse;
+import wbos.starterchatapp.repositories.UserIdentity;
+import wbos.starterchatapp.repositories.UserRepository;
+import wbos.starterchatapp.utils.BloomFilter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Answers "is this username / email free?" for the sign-up form.
+ *
+ * <p>Taken usernames and emails are kept in Bloom filters, so most checks,
+ * including every keystroke on a name nobody has, are answered from memory.
+ * Only a "maybe taken" from the filter is confirmed against MySQL. The filters
+ * are built from the table once the application is ready, rebuilt
+ * periodically to pick up users created on other instances, and updated
+ * whenever this instance creates a user. Sign-up itself still relies on the
+ * unique constraints, so an answer here is advice, not a reservation.
+ */
+@Service
+@Slf4j
+public class UserAvailabilityService {
+
+    private static final int SCAN_BATCH_SIZE = 10_000;
+
+    private record Filters(BloomFilter usernames, BloomFilter emails) {
+
+        void add(String username, String email) {
+            usernames.add(normalize(username));
+            emails.add(normalize(email));
+        }
+    }
+
+    private final UserRepository userRepository;
+    private final long expectedUsers;
+    private final double falsePositiveRate;
+    private final Duration rebuildInterval;
+
+    // Null until the first build completes; until then every check goes to the database
+    private volatile Filters filters;
+    private volatile Filters building;
+    private ScheduledExecutorService rebuilder;
+
+    public UserAvailabilityService(
+            UserRepository userRepository,
+            @Value("${chat.users.availability.expected-users:1000000}") long expectedUsers,
+            @Value("${chat.users.availability.false-positive-rate:0.01}") double falsePositiveRate,
+            @Value("${chat.users.availability.rebuild-interval:10m}") Duration rebuildInterval) {
+        this.userRepository = userRepository;
+        this.expectedUsers = expectedUsers;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rebuildInterval = rebuildInterval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuild();
+        rebuilder = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("user-availability-rebuild").daemon(true).factory());
+        rebuilder.scheduleWithFixedDelay(this::rebuildQuietly,
+                rebuildInterval.toMillis(), rebuildInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (rebuilder != null) {
+            rebuilder.shutdownNow();
+        }
+    }
+
+    public AvailabilityResponse check(String username, String email) {
+        return AvailabilityResponse.builder()
+                .usernameAvailable(isBlank(username) ? null
+                        : isAvailable(username, Filters::usernames, userRepository::existsByUsername))
+                .emailAvailable(isBlank(email) ? null
+                        : isAvailable(email, Filters::emails, userRepository::existsByEmail))
+                .build();
+    }
+
+    /**
+     * Called after this instance inserted a user.
+     */
+    public void record(String username, String email) {
+        Filters current = filters;
+        if (current != null) {
+            current.add(username, email);
+        }
+        // A rebuild in progress may already have scanned past this row
+        Filters next = building;
+        if (next != null) {
+            next.add(username, email);
+        }
+    }
+
+    public void rebuild() {
+        long start = System.nanoTime();
+        long users = userRepository.count();
+        // Leave headroom so the false-positive rate holds until the next rebuild
+        long capacity = Math.max(expectedUsers, users * 2);
+        Filters next = new Filters(
+                BloomFilter.create(capacity, falsePositiveRate),
+                BloomFilter.create(capacity, falsePositiveRate));
+        building = next;
+
+        long lastId = 0;
+        while (true) {
+            List<UserIdentity> batch = userRepository.findByIdGreaterThanOrderById(lastId, Limit.of(SCAN_BATCH_SIZE));
+            for (UserIdentity user : batch) {
+                next.add(user.getUsername(), user.getEmail());
+            }
+            if (batch.size() < SCAN_BATCH_SIZE) {
+                break;
+            }
+            lastId = batch.getLast().getId();
+        }
+
+        filters = next;
+        building = null;
+        log.info("Built availability filters for {} users ({} KiB each) in {} ms",
+                users, next.usernames().sizeInBytes() / 1024, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            // Keep serving from the previous filters
+            log.warn("Failed to rebuild availability filters: {}", e.getMessage());
+        }
+    }
+
+    private boolean isAvailable(String value, Function<Filters, BloomFilter> filter, Predicate<String> existsInDatabase) {
+        Filters current = filters;
+        if (current != null && !filter.apply(current).mightContain(normalize(value))) {
+            return true;
+        }
+        return !existsInDatabase.test(value);
+    }
+
+    // MySQL's default collation compares case-insensitively, so the filters do too
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -0,0 +1,72 @@
+package wbos.starterchatapp.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tells the gateways a user changed so they drop it from their user caches,
+ * including any negative entry left by lookups made before the user existed.
+ *
+ * <p>Publishing runs on its own thread, so a slow or unreachable Redis never
+ * holds up a sign-up. Deployments without gateways can turn it off with
+ * {@code chat.users.publish-invalidations}.
+ */
+@Service
+@Slf4j
+public class UserChangePublisher {
+
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private final StringRedisTemplate redisTemplate;
+    private final String invalidationChannel;
+    private final ThreadPoolExecutor executor;
+
+    public UserChangePublisher(StringRedisTemplate redisTemplate,
+                               @Value("${chat.users.publish-invalidations:true}") boolean enabled,
+                               @Value("${chat.users.invalidation-channel:users:invalidate}") String invalidationChannel) {
+        this.redisTemplate = redisTemplate;
+        this.invalidationChannel = invalidationChannel;
+        this.executor = enabled
+                ? new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                        Thread.ofPlatform().name("user-change-publisher").daemon(true).factory(),
+                        new ThreadPoolExecutor.AbortPolicy())
+                : null;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    public void userChanged(Long userId) {
+        if (executor == null) {
+            return;
+        }
+        try {
+            executor.execute(() -> publish(userId));
+        } catch (RejectedExecutionException e) {
+            // Gateway caches still expire on their own TTLs
+            log.warn("Dropping cache invalidation for user {}, publisher is backed up", userId);
+        }
+    }
+
+    private void publish(Long userId) {
+        try {
+            redisTemplate.convertAndSend(invalidationChannel, userId.toString());
+        } catch (DataAccessException e) {
+            log.warn("Failed to publish cache invalidation for user {}: {}", userId, e.getMessage());
+        }
+    }
+}
@@ -1,41 +1,51 @@
 package wbos.starterchatapp.services;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 import wbos.starterchatapp.dtos.requests.CreateUserRequest;
 import wbos.starterchatapp.dtos.requests.SignInRequest;
+import wbos.starterchatapp.dtos.response.AvailabilityResponse;
 import wbos.starterchatapp.dtos.response.SignInResponse;
 import wbos.starterchatapp.dtos.response.SignUpResponse;
 import wbos.starterchatapp.entities.UserEntity;
 import wbos.starterchatapp.repositories.UserRepository;
 import wbos.starterchatapp.utils.JwtUtil;
 
+import java.util.Locale;
+
 @Service
 @RequiredArgsConstructor
 public class UserService {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final JwtUtil jwtUtil;
+    private final UserChangePublisher userChangePublisher;
+    private final UserAvailabilityService userAvailabilityService;
 
+    /**
+     * One INSERT: uniqueness is left to the constraints on the auth table, and a
+     * violation becomes a 409 naming the field that clashed.
+     */
     public SignUpResponse createUser(CreateUserRequest request) {
-        if (userRepository.existsByUsername(request.getUsername())) {
-            throw new RuntimeException("Username already exists");
-        }
-
-        if (userRepository.existsByEmail(request.getEmail())) {
-            throw new RuntimeException("Email already exists");
-        }
-
         UserEntity user = new UserEntity();
         user.setUsername(request.getUsername());
         user.setEmail(request.getEmail());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordHashingService.encode(request.getPassword()));
         user.setFirstName(request.getFirstName());
         user.setLastName(request.getLastName());
 
-        UserEntity savedUser = userRepository.save(user);
+        UserEntity savedUser;
+        try {
+            savedUser = userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            throw duplicateUser(request, e);
+        }
+        userAvailabilityService.record(savedUser.getUsername(), savedUser.getEmail());
+        userChangePublisher.userChanged(savedUser.getId());
 
         return SignUpResponse.builder()
                 .id(savedUser.getId())
@@ -48,16 +58,27 @@ public class UserService {
                 .build();
     }
 
+    public AvailabilityResponse checkAvailability(String username, String email) {
+        return userAvailabilityService.check(username, email);
+    }
+
     public SignInResponse signIn(SignInRequest request) {
         UserEntity user = userRepository.findByUsernameOrEmail(
                 request.getUsernameOrEmail(),
                 request.getUsernameOrEmail()
         ).orElseThrow(() -> new RuntimeException("Invalid username/email or password"));
 
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
+        if (!passwordHashingService.matches(request.getPassword(), user.getPassword())) {
             throw new RuntimeException("Invalid username/email or password");
         }
 
+        // The configured cost changed since this hash was made; upgrade it while we have the password
+        if (passwordHashingService.needsRehash(user.getPassword())) {
+            Long userId = user.getId();
+            passwordHashingService.rehashInBackground(request.getPassword(),
+                    hash -> userRepository.updatePassword(userId, hash));
+        }
+
         String token = jwtUtil.generateToken(user.getUsername(), user.getId());
 
         return SignInResponse.builder()
@@ -69,4 +90,24 @@ public class UserService {
                 .message("Sign in successful")
                 .build();
     }
+
+    /**
+     * Names the clashing field from the violated constraint. Tables created
+     * before the constraints were named still carry Hibernate's generated
+     * UK_... names, so when neither name appears the clash is looked up by
+     * column instead; that extra query only runs on a failed sign-up.
+     */
+    private ResponseStatusException duplicateUser(CreateUserRequest request, DataIntegrityViolationException e) {
+        String cause = String.valueOf(e.getMostSpecificCause().getMessage()).toLowerCase(Locale.ROOT);
+        boolean username = cause.contains(UserEntity.USERNAME_CONSTRAINT);
+        boolean email = cause.contains(UserEntity.EMAIL_CONSTRAINT);
+        if (!username && !email) {
+            username = userRepository.existsByUsername(request.getUsername());
+            email = !username && userRepository.existsByEmail(request.getEmail());
+        }
+        String message = username ? "Username already exists"
+                : email ? "Email already exists"
+                : "Username or email already exists";
+        return new ResponseStatusException(HttpStatus.CONFLICT, message);
+    }
 }
@@ -0,0 +1,48 @@
+package wbos.starterchatapp.services.cluster;
+
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.dtos.NodePresence;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Carries broker traffic to the other backend instances. Local subscribers
+ * are always served by the in-process broker; a relay only has to get the
+ * payload to nodes that hold other interested sessions.
+ */
+public interface ClusterRelay {
+
+    void publishToUser(String user, String destination, Object payload);
+
+    void publishToTopic(String destination, Object payload);
+
+    /**
+     * Sends this node's own presence to every other node. Unlike topic traffic
+     * it goes to the presence registries, not to subscribers.
+     */
+    void publishPresence(NodePresence presence);
+
+    /**
+     * Registers the receiver of other nodes' presence, called with the id of the sending node.
+     */
+    void onPresence(BiConsumer<String, NodePresence> listener);
+
+    /**
+     * Issues the next sequence number of a conversation from a counter every
+     * node shares, starting after {@code seed} when the conversation has none.
+     * Returns null on a single node, where the replay buffer counts on its own.
+     */
+    Long nextSequence(String conversationId, long seed);
+
+    /**
+     * The last sequence number any node issued for a conversation, 0 when none
+     * has, or null on a single node.
+     */
+    Long lastSequence(String conversationId);
+
+    /**
+     * Registers the receiver of chat messages that other nodes sent to this one.
+     */
+    void onChatMessage(Consumer<ChatMessage> listener);
+}
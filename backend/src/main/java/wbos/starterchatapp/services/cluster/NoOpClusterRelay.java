@@ -0,0 +1,47 @@
+package wbos.starterchatapp.services.cluster;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.dtos.NodePresence;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Single-instance deployments: the local broker already reaches everyone.
+ */
+@Service
+@ConditionalOnProperty(name = "chat.cluster.relay", havingValue = "none", matchIfMissing = true)
+public class NoOpClusterRelay implements ClusterRelay {
+
+    @Override
+    public void publishToUser(String user, String destination, Object payload) {
+    }
+
+    @Override
+    public void publishToTopic(String destination, Object payload) {
+    }
+
+    @Override
+    public void publishPresence(NodePresence presence) {
+    }
+
+    @Override
+    public void onPresence(BiConsumer<String, NodePresence> listener) {
+    }
+
+    @Override
+    public Long nextSequence(String conversationId, long seed) {
+        return null;
+    }
+
+    @Override
+    public Long lastSequence(String conversationId) {
+        return null;
+    }
+
+    @Override
+    public void onChatMessage(Consumer<ChatMessage> listener) {
+    }
+}
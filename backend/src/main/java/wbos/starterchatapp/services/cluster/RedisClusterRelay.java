@@ -0,0 +1,294 @@
+package wbos.starterchatapp.services.cluster;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.dtos.NodePresence;
+import wbos.starterchatapp.dtos.RelayEnvelope;
+import wbos.starterchatapp.services.messages.MessageRouter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Relays broker traffic between backend instances over Redis pub/sub.
+ *
+ * <p>Every user and every conversation topic gets its own channel, and a node
+ * only subscribes to the channels its local sessions are interested in. Redis
+ * therefore forwards a message only to the nodes that have a recipient, and
+ * nodes with no matching sessions never see it. Presence is the exception:
+ * every node listens on one shared channel for the other nodes' registries.
+ *
+ * <p>Conversation sequence numbers come from one Redis counter per
+ * conversation, so every node stamps a conversation's messages from the same
+ * series and can replay the ones it received from other nodes.
+ */
+@Service
+@ConditionalOnProperty(name = "chat.cluster.relay", havingValue = "redis")
+@Slf4j
+public class RedisClusterRelay implements ClusterRelay, MessageListener {
+
+    private static final String USER_CHANNEL_PREFIX = "chat:user:";
+    private static final String TOPIC_CHANNEL_PREFIX = "chat:topic:";
+    private static final String TOPIC_DESTINATION_PREFIX = "/topic/";
+    private static final String PRESENCE_CHANNEL = "chat:presence";
+    private static final String SEQUENCE_KEY_PREFIX = "chat:seq:";
+    // Seeds a missing counter so sequences keep increasing after it expired or Redis lost it
+    private static final RedisScript<Long> NEXT_SEQUENCE = new DefaultRedisScript<>("""
+            redis.call('SET', KEYS[1], ARGV[1], 'NX')
+            local sequence = redis.call('INCR', KEYS[1])
+            redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            return sequence
+            """, Long.class);
+    // Key under which a session's own user channel is tracked next to its subscriptions
+    private static final String USER_SUBSCRIPTION = "";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final SimpMessageSendingOperations messageSender;
+    private final ObjectMapper objectMapper;
+    private final String nodeId;
+    private final Duration sequenceTtl;
+
+    private final ConcurrentMap<String, Integer> channelInterest = new ConcurrentHashMap<>();
+    // Guarded by itself
+    private final Set<String> subscribedChannels = new HashSet<>();
+    private final ConcurrentMap<String, Map<String, String>> sessionChannels = new ConcurrentHashMap<>();
+    private volatile BiConsumer<String, NodePresence> presenceListener = (node, presence) -> { };
+    private volatile Consumer<ChatMessage> chatListener = message -> { };
+
+    public RedisClusterRelay(StringRedisTemplate redisTemplate,
+                             RedisMessageListenerContainer relayListenerContainer,
+                             SimpMessageSendingOperations messageSender,
+                             ObjectMapper objectMapper,
+                             @Value("${chat.cluster.node-id:}") String nodeId,
+                             @Value("${chat.cluster.sequence-ttl:1d}") Duration sequenceTtl) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = relayListenerContainer;
+        this.messageSender = messageSender;
+        this.objectMapper = objectMapper;
+        this.nodeId = StringUtils.hasText(nodeId) ? nodeId : UUID.randomUUID().toString();
+        this.sequenceTtl = sequenceTtl;
+    }
+
+    @Override
+    public void publishToUser(String user, String destination, Object payload) {
+        publish(USER_CHANNEL_PREFIX + user, user, destination, payload);
+    }
+
+    @Override
+    public void publishToTopic(String destination, Object payload) {
+        publish(TOPIC_CHANNEL_PREFIX + destination, null, destination, payload);
+    }
+
+    @Override
+    public void publishPresence(NodePresence presence) {
+        publish(PRESENCE_CHANNEL, null, null, presence);
+    }
+
+    @Override
+    public void onPresence(BiConsumer<String, NodePresence> listener) {
+        presenceListener = listener;
+        listenerContainer.addMessageListener(this, new ChannelTopic(PRESENCE_CHANNEL));
+    }
+
+    @Override
+    public Long nextSequence(String conversationId, long seed) {
+        return redisTemplate.execute(NEXT_SEQUENCE, List.of(SEQUENCE_KEY_PREFIX + conversationId),
+                Long.toString(seed), Long.toString(sequenceTtl.toMillis()));
+    }
+
+    @Override
+    public Long lastSequence(String conversationId) {
+        String last = redisTemplate.opsForValue().get(SEQUENCE_KEY_PREFIX + conversationId);
+        return last != null ? Long.valueOf(last) : 0L;
+    }
+
+    @Override
+    public void onChatMessage(Consumer<ChatMessage> listener) {
+        chatListener = listener;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        RelayEnvelope envelope;
+        try {
+            envelope = objectMapper.readValue(message.getBody(), RelayEnvelope.class);
+        } catch (IOException e) {
+            log.warn("Dropping unreadable relay message on {}: {}",
+                    new String(message.getChannel(), StandardCharsets.UTF_8), e.getMessage());
+            return;
+        }
+
+        if (nodeId.equals(envelope.getOrigin())) {
+            return;
+        }
+
+        if (PRESENCE_CHANNEL.equals(new String(message.getChannel(), StandardCharsets.UTF_8))) {
+            try {
+                presenceListener.accept(envelope.getOrigin(), objectMapper.treeToValue(envelope.getPayload(), NodePresence.class));
+            } catch (JsonProcessingException e) {
+                log.warn("Dropping unreadable presence from {}: {}", envelope.getOrigin(), e.getMessage());
+            }
+            return;
+        }
+
+        // Recorded before delivery, so a client that sees the message can already resume from it
+        MessageHeaders headers = null;
+        if (isChatMessage(envelope.getDestination())) {
+            try {
+                ChatMessage chatMessage = objectMapper.treeToValue(envelope.getPayload(), ChatMessage.class);
+                chatListener.accept(chatMessage);
+                headers = MessageRouter.chatMessageHeaders(chatMessage);
+            } catch (JsonProcessingException e) {
+                log.warn("Dropping unreadable chat message from {}: {}", envelope.getOrigin(), e.getMessage());
+                return;
+            }
+        }
+
+        // Deliver straight to the local broker; going through MessageRouter would publish it again
+        if (envelope.getUser() != null) {
+            messageSender.convertAndSendToUser(envelope.getUser(), envelope.getDestination(), envelope.getPayload(), headers);
+        } else {
+            messageSender.convertAndSend(envelope.getDestination(), envelope.getPayload(), headers);
+        }
+    }
+
+    @EventListener
+    public void handleSessionConnected(SessionConnectedEvent event) {
+        Principal user = event.getUser();
+        if (user != null) {
+            track(sessionId(event.getMessage()), USER_SUBSCRIPTION, USER_CHANNEL_PREFIX + user.getName());
+        }
+    }
+
+    @EventListener
+    public void handleSessionSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (destination != null && destination.startsWith(TOPIC_DESTINATION_PREFIX)) {
+            track(accessor.getSessionId(), accessor.getSubscriptionId(), TOPIC_CHANNEL_PREFIX + destination);
+        }
+    }
+
+    @EventListener
+    public void handleSessionUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> channels = sessionChannels.get(accessor.getSessionId());
+        if (channels != null) {
+            String channel = channels.remove(accessor.getSubscriptionId());
+            if (channel != null) {
+                release(channel);
+            }
+        }
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> channels = sessionChannels.remove(event.getSessionId());
+        if (channels != null) {
+            channels.values().forEach(this::release);
+        }
+    }
+
+    private void publish(String channel, String user, String destination, Object payload) {
+        try {
+            RelayEnvelope envelope = RelayEnvelope.builder()
+                    .origin(nodeId)
+                    .user(user)
+                    .destination(destination)
+                    .payload(objectMapper.valueToTree(payload))
+                    .build();
+            redisTemplate.convertAndSend(channel, objectMapper.writeValueAsString(envelope));
+        } catch (JsonProcessingException | DataAccessException e) {
+            // Local subscribers already have the message; only remote nodes miss out
+            log.warn("Failed to relay message on {} to other nodes: {}", channel, e.getMessage());
+        }
+    }
+
+    private void track(String sessionId, String subscriptionId, String channel) {
+        if (sessionId == null || subscriptionId == null) {
+            return;
+        }
+        String previous = sessionChannels
+                .computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                .put(subscriptionId, channel);
+        acquire(channel);
+        if (previous != null) {
+            release(previous);
+        }
+    }
+
+    private void acquire(String channel) {
+        if (channelInterest.merge(channel, 1, Integer::sum) == 1) {
+            updateSubscription(channel);
+        }
+    }
+
+    private void release(String channel) {
+        if (channelInterest.computeIfPresent(channel, (key, count) -> count == 1 ? null : count - 1) == null) {
+            updateSubscription(channel);
+        }
+    }
+
+    /**
+     * Subscribes to or leaves a channel to match its current interest. Runs
+     * outside the interest map's locks, since the container may block; when a
+     * release and an acquire race, whichever gets here last sees the final count.
+     */
+    private void updateSubscription(String channel) {
+        synchronized (subscribedChannels) {
+            boolean wanted = channelInterest.containsKey(channel);
+            if (wanted && subscribedChannels.add(channel)) {
+                listenerContainer.addMessageListener(this, new ChannelTopic(channel));
+            } else if (!wanted && subscribedChannels.remove(channel)) {
+                listenerContainer.removeMessageListener(this, new ChannelTopic(channel));
+            }
+        }
+    }
+
+    private static boolean isChatMessage(String destination) {
+        if (destination == null) {
+            return false;
+        }
+        return destination.equals(MessageRouter.USER_MESSAGES_QUEUE)
+                || (destination.startsWith(MessageRouter.CONVERSATION_TOPIC_PREFIX)
+                && !destination.endsWith(MessageRouter.TYPING_TOPIC_SUFFIX));
+    }
+
+    private static String sessionId(org.springframework.messaging.Message<?> message) {
+        return SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+    }
+}
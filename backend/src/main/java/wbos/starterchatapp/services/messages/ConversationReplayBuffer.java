@@ -0,0 +1,225 @@
+package wbos.starterchatapp.services.messages;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.dtos.response.ReplayResponse;
+import wbos.starterchatapp.enums.MessageType;
+import wbos.starterchatapp.services.cluster.ClusterRelay;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stamps chat messages with a per-conversation sequence number and keeps the
+ * most recent ones in a ring buffer, so a reconnecting client can get what it
+ * missed from memory instead of reloading history from MySQL.
+ *
+ * <p>On a single node sequences are contiguous while a conversation stays in
+ * memory. When a conversation is first seen, after a restart or after it was
+ * evicted for being idle, its counter starts from the current time shifted
+ * left by {@link #SEED_SHIFT} bits. That keeps sequences increasing across
+ * restarts (at up to 2048 messages per millisecond of the previous run), keeps
+ * them within JavaScript's safe integer range, and lets a replay spot a client
+ * whose last sequence predates the current counter.
+ *
+ * <p>With a cluster relay the counter is shared through the relay, seeded the
+ * same way, and messages sent through other nodes are buffered as they
+ * arrive. A node only receives the conversations its sessions take part in,
+ * so a replay is complete only when every sequence up to the shared counter
+ * is in the ring; otherwise the client falls back to history.
+ */
+@Service
+@Slf4j
+public class ConversationReplayBuffer {
+
+    static final int SEED_SHIFT = 11;
+
+    private static final class Conversation {
+
+        private final ChatMessage[] ring;
+        private long lastSequence;
+        private long lastActivityNanos;
+
+        private Conversation(long lastSequence, int capacity) {
+            this.ring = new ChatMessage[capacity];
+            this.lastSequence = lastSequence;
+        }
+    }
+
+    private final int capacity;
+    private final Duration idleTimeout;
+    private final ClusterRelay clusterRelay;
+
+    // All access to a Conversation happens inside compute on this map, which serialises it per key
+    private final ConcurrentMap<String, Conversation> conversations = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService evictor;
+
+    public ConversationReplayBuffer(
+            @Value("${chat.messages.replay.capacity:256}") int capacity,
+            @Value("${chat.messages.replay.idle-timeout:30m}") Duration idleTimeout,
+            ClusterRelay clusterRelay) {
+        this.capacity = capacity;
+        this.idleTimeout = idleTimeout;
+        this.clusterRelay = clusterRelay;
+    }
+
+    @PostConstruct
+    public void start() {
+        clusterRelay.onChatMessage(this::received);
+        evictor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("replay-buffer-evictor").daemon(true).factory());
+        long period = Math.max(1, idleTimeout.toMillis() / 4);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+    }
+
+    public void stamp(String conversationId, ChatMessage message) {
+        Long shared;
+        try {
+            shared = clusterRelay.nextSequence(conversationId, seed());
+        } catch (DataAccessException e) {
+            // Sent without a sequence; a client resuming past it is told to reload history
+            log.warn("Could not sequence a message in {}: {}", conversationId, e.getMessage());
+            return;
+        }
+
+        if (shared != null) {
+            message.setSequence(shared);
+            record(conversationId, message);
+            return;
+        }
+
+        long now = System.nanoTime();
+        conversations.compute(conversationId, (id, conversation) -> {
+            if (conversation == null) {
+                conversation = new Conversation(seed(), capacity);
+            }
+            long sequence = ++conversation.lastSequence;
+            message.setSequence(sequence);
+            conversation.ring[slot(sequence)] = message;
+            conversation.lastActivityNanos = now;
+            return conversation;
+        });
+    }
+
+    /**
+     * Messages of the conversation stamped after {@code lastSequence}, or an
+     * incomplete response when some of them are not in memory on this node.
+     */
+    public ReplayResponse replay(String conversationId, Long lastSequence) {
+        if (lastSequence == null) {
+            return incomplete(conversationId, null);
+        }
+
+        Long shared;
+        try {
+            shared = clusterRelay.lastSequence(conversationId);
+        } catch (DataAccessException e) {
+            log.warn("Could not read the sequence of {}: {}", conversationId, e.getMessage());
+            return incomplete(conversationId, null);
+        }
+
+        ReplayResponse[] response = {incomplete(conversationId, shared)};
+        conversations.computeIfPresent(conversationId, (id, conversation) -> {
+            // Other nodes may have issued sequences this one has not received
+            long last = shared != null ? shared : conversation.lastSequence;
+            response[0] = collect(id, conversation, lastSequence, last);
+            return conversation;
+        });
+        return response[0];
+    }
+
+    /**
+     * Buffers a message that reached this node through the cluster relay.
+     */
+    void received(ChatMessage message) {
+        if (message.getType() == MessageType.CHAT && message.getSenderId() != null && message.getSequence() != null) {
+            record(MessageService.conversationId(message.getSenderId(), message.getRecipientId()), message);
+        }
+    }
+
+    void evictIdle() {
+        long cutoff = System.nanoTime() - idleTimeout.toNanos();
+        for (String conversationId : conversations.keySet()) {
+            conversations.computeIfPresent(conversationId,
+                    (id, conversation) -> conversation.lastActivityNanos - cutoff < 0 ? null : conversation);
+        }
+    }
+
+    // Shared sequences can arrive out of order and, for direct messages, more than once
+    private void record(String conversationId, ChatMessage message) {
+        long now = System.nanoTime();
+        long sequence = message.getSequence();
+        conversations.compute(conversationId, (id, conversation) -> {
+            if (conversation == null) {
+                conversation = new Conversation(sequence - 1, capacity);
+            }
+            int slot = slot(sequence);
+            ChatMessage held = conversation.ring[slot];
+            if (held == null || held.getSequence() < sequence) {
+                conversation.ring[slot] = message;
+            }
+            conversation.lastSequence = Math.max(conversation.lastSequence, sequence);
+            conversation.lastActivityNanos = now;
+            return conversation;
+        });
+    }
+
+    private ReplayResponse collect(String conversationId, Conversation conversation, long lastSequence, long last) {
+        // From a counter we never issued, or further back than the ring reaches
+        if (lastSequence > last || last - lastSequence > capacity) {
+            return incomplete(conversationId, last);
+        }
+
+        List<ChatMessage> missed = new ArrayList<>((int) (last - lastSequence));
+        for (long sequence = lastSequence + 1; sequence <= last; sequence++) {
+            ChatMessage message = conversation.ring[slot(sequence)];
+            // Overwritten by a newer one, never received here, or from before this counter started
+            if (message == null || message.getSequence() != sequence) {
+                return incomplete(conversationId, last);
+            }
+            missed.add(message);
+        }
+        return ReplayResponse.builder()
+                .conversationId(conversationId)
+                .messages(missed)
+                .complete(true)
+                .lastSequence(last)
+                .build();
+    }
+
+    private int slot(long sequence) {
+        return (int) Math.floorMod(sequence, (long) capacity);
+    }
+
+    private static long seed() {
+        return System.currentTimeMillis() << SEED_SHIFT;
+    }
+
+    private static ReplayResponse incomplete(String conversationId, Long lastSequence) {
+        return ReplayResponse.builder()
+                .conversationId(conversationId)
+                .messages(List.of())
+                .complete(false)
+                .lastSequence(lastSequence)
+                .build();
+    }
+}
@@ -0,0 +1,13 @@
+package wbos.starterchatapp.services.messages;
+
+/**
+ * A message could not be accepted for persistence: the write-behind queue is
+ * full and the overflow policy did not let the caller write it directly. The
+ * client may retry; each transport maps this to its own error.
+ */
+public class MessageQueueFullException extends RuntimeException {
+
+    public MessageQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,99 @@
+package wbos.starterchatapp.services.messages;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.stereotype.Service;
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.dtos.TypingUpdate;
+import wbos.starterchatapp.services.cluster.ClusterRelay;
+
+/**
+ * Delivers messages only to the sessions that take part in a conversation:
+ * direct messages go to both participants' user queues, everything else to
+ * the conversation's own topic.
+ */
+@Service
+@RequiredArgsConstructor
+public class MessageRouter {
+
+    public static final String USER_MESSAGES_QUEUE = "/queue/messages";
+    public static final String USER_TYPING_QUEUE = "/queue/typing";
+    public static final String USER_ERRORS_QUEUE = "/queue/errors";
+    public static final String CONVERSATION_TOPIC_PREFIX = "/topic/conversations/";
+    public static final String TYPING_TOPIC_SUFFIX = "/typing";
+    /**
+     * Carries the ChatMessage itself alongside its JSON payload up to the
+     * outbound channel, so other wire formats can be encoded from the object.
+     * Not a native header, so it never reaches the client.
+     */
+    public static final String CHAT_MESSAGE_HEADER = "chatMessage";
+
+    private final SimpMessageSendingOperations messageSender;
+    private final ClusterRelay clusterRelay;
+
+    public void route(ChatMessage message) {
+        if (message.getRecipientId() == null) {
+            String destination = conversationTopic(MessageService.PUBLIC_CONVERSATION);
+            messageSender.convertAndSend(destination, message, chatMessageHeaders(message));
+            clusterRelay.publishToTopic(destination, message);
+            return;
+        }
+
+        sendChatToUser(message.getRecipientId().toString(), message);
+        // Echo to the sender's own sessions so other open tabs stay in sync
+        if (message.getSenderId() != null && !message.getSenderId().equals(message.getRecipientId())) {
+            sendChatToUser(message.getSenderId().toString(), message);
+        }
+    }
+
+    /**
+     * Typing indicators use their own destinations so clients that do not
+     * show them never receive them alongside chat messages.
+     */
+    public void routeTyping(TypingUpdate update) {
+        if (update.getParticipants() == null) {
+            sendToTopic(conversationTopic(update.getConversationId()) + TYPING_TOPIC_SUFFIX, update);
+            return;
+        }
+
+        for (Long participant : update.getParticipants()) {
+            sendToUser(participant.toString(), USER_TYPING_QUEUE, update);
+        }
+    }
+
+    public static String conversationTopic(String conversationId) {
+        return CONVERSATION_TOPIC_PREFIX + conversationId;
+    }
+
+    /**
+     * Headers for one send of a chat message through SimpMessagingTemplate;
+     * they are an accessor's headers, so the template keeps them as message
+     * headers, which the broker copies to every subscriber, rather than
+     * turning them into native STOMP headers. The template completes them in
+     * place, so each send needs its own.
+     */
+    public static MessageHeaders chatMessageHeaders(ChatMessage message) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setHeader(CHAT_MESSAGE_HEADER, message);
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+
+    private void sendToTopic(String destination, Object payload) {
+        messageSender.convertAndSend(destination, payload);
+        clusterRelay.publishToTopic(destination, payload);
+    }
+
+    private void sendChatToUser(String user, ChatMessage message) {
+        messageSender.convertAndSendToUser(user, USER_MESSAGES_QUEUE, message, chatMessageHeaders(message));
+        clusterRelay.publishToUser(user, USER_MESSAGES_QUEUE, message);
+    }
+
+    private void sendToUser(String user, String destination, Object payload) {
+        messageSender.convertAndSendToUser(user, destination, payload);
+        clusterRelay.publishToUser(user, destination, payload);
+    }
+}
@@ -0,0 +1,106 @@
+package wbos.starterchatapp.services.messages;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.data.domain.Limit;
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.dtos.response.MessageHistoryResponse;
+import wbos.starterchatapp.dtos.response.MessageResponse;
+import wbos.starterchatapp.entities.MessageEntity;
+import wbos.starterchatapp.enums.MessageType;
+import wbos.starterchatapp.repositories.MessageRepository;
+import wbos.starterchatapp.services.presence.PresenceService;
+import wbos.starterchatapp.utils.ConversationIds;
+import wbos.starterchatapp.utils.MessageCursor;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class MessageService {
+
+    public static final String PUBLIC_CONVERSATION = "public";
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private final MessageWriteBehindService writeBehindService;
+    private final MessageRepository messageRepository;
+    private final ConversationReplayBuffer replayBuffer;
+    private final PresenceService presenceService;
+
+    /**
+     * Hands the message to the write-behind queue and then stamps it. Only CHAT
+     * messages from a known sender are persisted and sequenced; JOIN/LEAVE are
+     * broadcast only. A message the queue refuses is never stamped, so a
+     * resuming client cannot replay one the sender was told failed.
+     */
+    public ChatMessage send(ChatMessage message) {
+        if (message.getTimestamp() == null) {
+            message.setTimestamp(LocalDateTime.now());
+        }
+
+        if (message.getType() == MessageType.CHAT && message.getSenderId() != null) {
+            writeBehindService.enqueue(toEntity(message));
+            replayBuffer.stamp(conversationId(message.getSenderId(), message.getRecipientId()), message);
+            if (message.getRecipientId() != null) {
+                presenceService.met(message.getSenderId(), message.getRecipientId());
+            }
+        }
+
+        return message;
+    }
+
+    /**
+     * Returns one page of history older than the cursor. Fetches one extra row
+     * to find out whether another page exists without a COUNT query.
+     */
+    public MessageHistoryResponse history(Long userId, Long recipientId, String before, Integer limit) {
+        Long beforeId = before != null ? MessageCursor.decode(before) : Long.MAX_VALUE;
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.clamp(limit, 1, MAX_PAGE_SIZE);
+
+        List<MessageResponse> rows = messageRepository.findPageBefore(
+                conversationId(userId, recipientId), beforeId, Limit.of(pageSize + 1));
+        boolean hasMore = rows.size() > pageSize;
+        List<MessageResponse> page = hasMore ? rows.subList(0, pageSize) : rows;
+        Collections.reverse(page);
+
+        return MessageHistoryResponse.builder()
+                .messages(page)
+                .before(hasMore ? MessageCursor.encode(page.getFirst().getId()) : null)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    private MessageEntity toEntity(ChatMessage message) {
+        MessageEntity entity = new MessageEntity();
+        entity.setConversationId(conversationId(message.getSenderId(), message.getRecipientId()));
+        entity.setSenderId(message.getSenderId());
+        entity.setRecipientId(message.getRecipientId());
+        entity.setSenderUsername(message.getSender());
+        entity.setContent(message.getContent());
+        entity.setType(message.getType());
+        entity.setCreatedAt(message.getTimestamp());
+        return entity;
+    }
+
+    /**
+     * Messages are never edited, so the first and last id, the size and whether
+     * older pages exist identify a page's content.
+     */
+    public static String etag(MessageHistoryResponse page) {
+        List<MessageResponse> messages = page.getMessages();
+        if (messages.isEmpty()) {
+            return "\"empty\"";
+        }
+        return "\"" + messages.getFirst().getId() + "-" + messages.getLast().getId() + "-" + messages.size()
+                + (page.isHasMore() ? "+" : "") + "\"";
+    }
+
+    public static String conversationId(Long userId, Long recipientId) {
+        return recipientId != null
+                ? ConversationIds.direct(userId, recipientId)
+                : PUBLIC_CONVERSATION;
+    }
+}
@@ -0,0 +1,330 @@
+package wbos.starterchatapp.services.messages;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import wbos.starterchatapp.entities.MessageEntity;
+import wbos.starterchatapp.enums.OverflowPolicy;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Buffers accepted chat messages in a bounded queue and persists them with
+ * multi-row INSERT statements, flushing whenever a full batch is available or
+ * the flush interval elapses after the first pending message.
+ *
+ * <p>Failed inserts are retried with exponential backoff. A batch that still
+ * fails is not dropped: the flusher keeps it at the head of the line and
+ * retries it until the database is back, so the queue fills behind it and the
+ * overflow policy pushes back on producers: CALLER_RUNS makes the sender wait
+ * a bounded time for room, REJECT refuses at once. Either way every accepted
+ * message goes through the queue, so rows are inserted in the order messages
+ * were accepted and keyset history never shows them out of order.
+ *
+ * <p>Accepted messages are counted per conversation until they are written
+ * (or dead-lettered), so history readers can tell when a page may still be
+ * missing one. Only messages that cannot be
+ * written at shutdown go to the dead-letter log, one line per message.
+ */
+@Service
+@Slf4j
+public class MessageWriteBehindService implements MeterBinder {
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO messages (conversation_id, sender_id, recipient_id, sender_username, content, type, created_at) VALUES ";
+    private static final String ROW_PLACEHOLDER = "(?, ?, ?, ?, ?, ?, ?)";
+    private static final int COLUMNS = 7;
+    private static final int MAX_FLUSH_ATTEMPTS = 3;
+    // Route this logger to its own file to keep messages that could not be persisted
+    private static final Logger DEAD_LETTERS = LoggerFactory.getLogger("chat.messages.dead-letter");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<MessageEntity> queue;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final long callerWaitNanos;
+    private final long retryBackoffMillis;
+    private final long maxRetryBackoffMillis;
+
+    private final ConcurrentHashMap<String, Integer> pendingByConversation = new ConcurrentHashMap<>();
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private final LongAdder failedAttempts = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder totalFlushNanos = new LongAdder();
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public MessageWriteBehindService(
+            JdbcTemplate jdbcTemplate,
+            @Value("${chat.messages.write-behind.queue-capacity:10000}") int queueCapacity,
+            @Value("${chat.messages.write-behind.batch-size:500}") int batchSize,
+            @Value("${chat.messages.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+            @Value("${chat.messages.write-behind.overflow-policy:CALLER_RUNS}") OverflowPolicy overflowPolicy,
+            @Value("${chat.messages.write-behind.caller-wait-ms:1000}") long callerWaitMillis,
+            @Value("${chat.messages.write-behind.retry-backoff-ms:100}") long retryBackoffMillis,
+            @Value("${chat.messages.write-behind.max-retry-backoff-ms:5000}") long maxRetryBackoffMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.overflowPolicy = overflowPolicy;
+        this.callerWaitNanos = TimeUnit.MILLISECONDS.toNanos(callerWaitMillis);
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.maxRetryBackoffMillis = Math.max(retryBackoffMillis, maxRetryBackoffMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        flusher = Thread.ofPlatform()
+                .name("message-write-behind")
+                .daemon(true)
+                .start(this::runFlushLoop);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        List<MessageEntity> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int from = 0; from < remaining.size(); from += batchSize) {
+            flushOrDeadLetter(remaining.subList(from, Math.min(from + batchSize, remaining.size())));
+        }
+    }
+
+    public void enqueue(MessageEntity message) {
+        // Counted before the flusher can see it, so the count never goes below zero
+        pendingByConversation.merge(message.getConversationId(), 1, Integer::sum);
+        if (queue.offer(message)) {
+            accepted.increment();
+            return;
+        }
+
+        overflowed.increment();
+        if (overflowPolicy == OverflowPolicy.CALLER_RUNS && offerWithinCallerWait(message)) {
+            accepted.increment();
+            return;
+        }
+
+        settled(List.of(message));
+        log.warn("Message write-behind queue full ({} pending), rejecting message", queueCapacity);
+        throw new MessageQueueFullException("Message queue is full, try again shortly");
+    }
+
+    /**
+     * True while an accepted message of the conversation is not in the table
+     * yet, including batches held while the database is down.
+     */
+    public boolean hasPendingWrites(String conversationId) {
+        return pendingByConversation.containsKey(conversationId);
+    }
+
+    /**
+     * Exposes the queue and flush counters; they are read on scrape, so the
+     * send path only pays for the LongAdder increments it already does.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("chat.messages.write-behind.queue", queue, BlockingQueue::size)
+                .description("Accepted messages waiting to be inserted")
+                .register(registry);
+        FunctionCounter.builder("chat.messages.write-behind.accepted", accepted, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("chat.messages.write-behind.persisted", persisted, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("chat.messages.write-behind.overflowed", overflowed, LongAdder::sum)
+                .description("Sends that found the queue full, whether or not they got in after waiting")
+                .register(registry);
+        FunctionCounter.builder("chat.messages.write-behind.failed.attempts", failedAttempts, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("chat.messages.write-behind.dead.lettered", deadLettered, LongAdder::sum)
+                .description("Messages written to the dead-letter log instead of the table")
+                .register(registry);
+        FunctionTimer.builder("chat.messages.write-behind.flush", this,
+                        service -> service.flushes.sum(), service -> service.totalFlushNanos.sum(), TimeUnit.NANOSECONDS)
+                .description("Successful batch inserts")
+                .register(registry);
+    }
+
+    /**
+     * Blocks the caller until the flusher frees a slot, so producers slow down
+     * to the database's pace instead of writing around the queue.
+     */
+    private boolean offerWithinCallerWait(MessageEntity message) {
+        try {
+            return queue.offer(message, callerWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void runFlushLoop() {
+        List<MessageEntity> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                MessageEntity first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    MessageEntity next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flushUntilPersisted(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                // stop() drains whatever is still queued; finish the batch already taken off it
+                flushOrDeadLetter(batch);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void flushUntilPersisted(List<MessageEntity> batch) throws InterruptedException {
+        while (!flush(batch)) {
+            log.error("Holding {} messages until the database accepts them ({} queued behind)", batch.size(), queue.size());
+            Thread.sleep(maxRetryBackoffMillis);
+        }
+    }
+
+    private void flushOrDeadLetter(List<MessageEntity> batch) {
+        if (flush(batch)) {
+            return;
+        }
+        deadLettered.add(batch.size());
+        settled(batch);
+        log.error("Writing {} unpersisted messages to the dead-letter log", batch.size());
+        for (MessageEntity message : batch) {
+            DEAD_LETTERS.error("{}\t{}\t{}\t{}\t{}\t{}\t{}", message.getConversationId(), message.getSenderId(),
+                    message.getRecipientId(), message.getSenderUsername(), message.getType(),
+                    message.getCreatedAt(), message.getContent());
+        }
+    }
+
+    /**
+     * Inserts the batch, retrying with exponential backoff.
+     *
+     * @return false if every attempt failed, or the wait between them was interrupted
+     */
+    private boolean flush(List<MessageEntity> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        String sql = buildInsert(batch.size());
+        Object[] args = toArgs(batch);
+
+        long backoffMillis = retryBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                jdbcTemplate.update(sql, args);
+                recordFlush(System.nanoTime() - start);
+                persisted.add(batch.size());
+                settled(batch);
+                return true;
+            } catch (DataAccessException e) {
+                failedAttempts.increment();
+                log.warn("Failed to flush {} messages (attempt {}/{}): {}",
+                        batch.size(), attempt, MAX_FLUSH_ATTEMPTS, e.getMessage());
+            }
+            if (attempt == MAX_FLUSH_ATTEMPTS || !backOff(backoffMillis)) {
+                return false;
+            }
+            backoffMillis = Math.min(backoffMillis * 2, maxRetryBackoffMillis);
+        }
+    }
+
+    private void settled(List<MessageEntity> messages) {
+        for (MessageEntity message : messages) {
+            pendingByConversation.computeIfPresent(message.getConversationId(), (id, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private static boolean backOff(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void recordFlush(long elapsedNanos) {
+        flushes.increment();
+        totalFlushNanos.add(elapsedNanos);
+    }
+
+    private static String buildInsert(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows * (ROW_PLACEHOLDER.length() + 1));
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(ROW_PLACEHOLDER);
+        }
+        return sql.toString();
+    }
+
+    private static Object[] toArgs(List<MessageEntity> batch) {
+        Object[] args = new Object[batch.size() * COLUMNS];
+        int i = 0;
+        for (MessageEntity message : batch) {
+            args[i++] = message.getConversationId();
+            args[i++] = message.getSenderId();
+            args[i++] = message.getRecipientId();
+            args[i++] = message.getSenderUsername();
+            args[i++] = message.getContent();
+            args[i++] = message.getType().name();
+            args[i++] = Timestamp.valueOf(message.getCreatedAt());
+        }
+        return args;
+    }
+}
@@ -0,0 +1,145 @@
+package wbos.starterchatapp.services.messages;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import wbos.starterchatapp.dtos.TypingUpdate;
+import wbos.starterchatapp.dtos.TypingUser;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces typing indicators per conversation. Nothing here is persisted.
+ *
+ * <p>A keystroke only records that the user is typing; repeated keystrokes
+ * just push back the moment the indicator lapses. On every tick each
+ * conversation whose set of typists differs from the last one sent gets a
+ * single {@link TypingUpdate}, so a conversation sees at most one typing
+ * frame per tick however fast its participants type.
+ */
+@Service
+@Slf4j
+public class TypingIndicatorService {
+
+    private static final class Conversation {
+
+        private final List<Long> participants;
+        private final Map<Long, Typist> typists = new LinkedHashMap<>();
+        // Typists in the last update sent, compared with the current ones on each tick
+        private Set<Long> published = Set.of();
+
+        private Conversation(List<Long> participants) {
+            this.participants = participants;
+        }
+    }
+
+    private record Typist(String username, long expiresAtNanos) {
+    }
+
+    private final MessageRouter messageRouter;
+    private final long tickMillis;
+    private final long idleTimeoutNanos;
+
+    // All access to a Conversation happens inside compute on this map, which serialises it per key
+    private final ConcurrentMap<String, Conversation> conversations = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService ticker;
+
+    public TypingIndicatorService(
+            MessageRouter messageRouter,
+            @Value("${chat.typing.tick-ms:250}") long tickMillis,
+            @Value("${chat.typing.idle-timeout-ms:5000}") long idleTimeoutMillis) {
+        this.messageRouter = messageRouter;
+        this.tickMillis = tickMillis;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("typing-ticker").daemon(true).factory());
+        ticker.scheduleWithFixedDelay(this::tickQuietly, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    public void typing(Long senderId, String senderUsername, Long recipientId) {
+        long expiresAt = System.nanoTime() + idleTimeoutNanos;
+        conversations.compute(MessageService.conversationId(senderId, recipientId), (id, conversation) -> {
+            if (conversation == null) {
+                conversation = new Conversation(recipientId != null ? List.of(senderId, recipientId) : null);
+            }
+            conversation.typists.put(senderId, new Typist(senderUsername, expiresAt));
+            return conversation;
+        });
+    }
+
+    public void stoppedTyping(Long senderId, Long recipientId) {
+        conversations.computeIfPresent(MessageService.conversationId(senderId, recipientId), (id, conversation) -> {
+            conversation.typists.remove(senderId);
+            return conversation;
+        });
+    }
+
+    /**
+     * Lapses idle typists and routes one update per changed conversation.
+     * Returns the updates that were sent.
+     */
+    List<TypingUpdate> tick() {
+        long now = System.nanoTime();
+        List<TypingUpdate> updates = new ArrayList<>();
+        for (String conversationId : conversations.keySet()) {
+            conversations.computeIfPresent(conversationId, (id, conversation) -> {
+                conversation.typists.values().removeIf(typist -> typist.expiresAtNanos() - now <= 0);
+                // A start and stop within one tick leaves the set as published, so nothing is sent
+                if (!conversation.published.equals(conversation.typists.keySet())) {
+                    conversation.published = Set.copyOf(conversation.typists.keySet());
+                    updates.add(snapshot(id, conversation));
+                }
+                // Drop conversations nobody is typing in; the next keystroke recreates them
+                return conversation.typists.isEmpty() ? null : conversation;
+            });
+        }
+
+        // Route outside compute so a slow send never blocks keystrokes for the conversation
+        updates.forEach(messageRouter::routeTyping);
+        return updates;
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish typing indicators: {}", e.getMessage());
+        }
+    }
+
+    private static TypingUpdate snapshot(String conversationId, Conversation conversation) {
+        List<TypingUser> typing = new ArrayList<>(conversation.typists.size());
+        conversation.typists.forEach((userId, typist) -> typing.add(TypingUser.builder()
+                .userId(userId)
+                .username(typist.username())
+                .build()));
+        return TypingUpdate.builder()
+                .conversationId(conversationId)
+                .typing(typing)
+                .participants(conversation.participants)
+                .build();
+    }
+}
@@ -0,0 +1,35 @@
+package wbos.starterchatapp.services.presence;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import wbos.starterchatapp.repositories.MessageRepository;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The users someone has exchanged direct messages with, and so may see come
+ * online and go offline.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationPartners {
+
+    private final MessageRepository messageRepository;
+
+    public Set<Long> of(long userId) {
+        Set<Long> partners = new HashSet<>();
+        try {
+            partners.addAll(messageRepository.findRecipientIdsBySender(userId));
+            partners.addAll(messageRepository.findSenderIdsByRecipient(userId));
+        } catch (DataAccessException e) {
+            // Partners met from now on are still added as their messages are sent
+            log.warn("Failed to load conversation partners of user {}: {}", userId, e.getMessage());
+        }
+        partners.remove(userId);
+        return partners;
+    }
+}
@@ -0,0 +1,508 @@
+package wbos.starterchatapp.services.presence;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.stereotype.Service;
+import wbos.starterchatapp.dtos.NodePresence;
+import wbos.starterchatapp.dtos.PresenceDiff;
+import wbos.starterchatapp.services.cluster.ClusterRelay;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Tracks which users have at least one live STOMP session in the cluster and
+ * sends changes as batched diffs to each user's {@link #PRESENCE_QUEUE}.
+ *
+ * <p>Users are spread over lock stripes so connects and disconnects of
+ * different users rarely contend. A connect or disconnect only marks the user
+ * dirty; once per tick the dirty users are compared with what was last
+ * published, so a user who drops and reconnects within a tick (a deploy, a
+ * network blip) produces no event at all, and a reconnect storm becomes one
+ * frame per subscriber per tick.
+ *
+ * <p>A user only hears about their conversation partners. Partners are loaded
+ * when the user's first session on this node connects and extended as direct
+ * messages are sent, and each tick gives every connected user a diff of just
+ * the partners that changed, if any did.
+ *
+ * <p>Sessions that send nothing, heartbeats included, for the expiry window
+ * are dropped in case their disconnect was never seen.
+ *
+ * <p>In a cluster each node relays its own changes, plus a snapshot every
+ * {@code sync-ms}, and keeps the other nodes' sets beside its own. A user is
+ * online while any node has a session for them, so a tab closing on one node
+ * is not reported while another node still holds one. Diffs are computed on
+ * that merged view and sent to local subscribers only; every node does the
+ * same for its own. A node whose snapshots stop arriving is dropped after
+ * {@value #MISSED_SYNCS} sync intervals.
+ */
+@Service
+@Slf4j
+public class PresenceService {
+
+    public static final String PRESENCE_QUEUE = "/queue/presence";
+
+    private static final int MISSED_SYNCS = 3;
+
+    private static final class PresenceSession {
+
+        private final long userId;
+        private volatile long lastSeenNanos;
+
+        private PresenceSession(long userId, long lastSeenNanos) {
+            this.userId = userId;
+            this.lastSeenNanos = lastSeenNanos;
+        }
+    }
+
+    private static final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Long, Set<String>> sessionsByUser = new HashMap<>();
+        private final Set<Long> dirty = new HashSet<>();
+        // Users this node has told the other nodes it holds
+        private final Set<Long> relayed = new HashSet<>();
+        // Conversation partners of the users connected to this node
+        private final Map<Long, Set<Long>> partners = new HashMap<>();
+    }
+
+    private static final class RemoteNode {
+
+        private final Set<Long> users = new HashSet<>();
+        private long lastSeenNanos;
+    }
+
+    private record RemoteUpdate(String node, NodePresence presence) {
+    }
+
+    private final SimpMessageSendingOperations messageSender;
+    private final ClusterRelay clusterRelay;
+    private final ConversationPartners conversationPartners;
+    private final Stripe[] stripes;
+    private final long tickMillis;
+    private final long expireAfterNanos;
+    private final long syncNanos;
+
+    // Session id to owner and last activity; touched on every inbound frame without taking a stripe lock
+    private final ConcurrentMap<String, PresenceSession> sessions = new ConcurrentHashMap<>();
+    // User id to the local users allowed to see them; written under the watching user's stripe lock
+    private final ConcurrentMap<Long, Set<Long>> watchers = new ConcurrentHashMap<>();
+    private final AtomicInteger onlineUsers = new AtomicInteger();
+    private final LongAdder diffsPublished = new LongAdder();
+    private final LongAdder changesPublished = new LongAdder();
+    private final LongAdder expiredSessions = new LongAdder();
+
+    // Written by the relay listener, drained by the ticker
+    private final Queue<RemoteUpdate> remoteUpdates = new ConcurrentLinkedQueue<>();
+    // Number of other nodes holding each user; read by isOnline, written only by the ticker
+    private final ConcurrentMap<Long, Integer> remoteNodeCounts = new ConcurrentHashMap<>();
+    // Ticker-only state
+    private final Map<String, RemoteNode> remoteNodes = new HashMap<>();
+    private final Set<Long> remoteDirty = new HashSet<>();
+    private final Set<Long> published = new HashSet<>();
+    private long lastSyncNanos;
+    private boolean syncRequested = true;
+
+    private ScheduledExecutorService ticker;
+
+    public PresenceService(
+            SimpMessageSendingOperations messageSender,
+            ClusterRelay clusterRelay,
+            ConversationPartners conversationPartners,
+            @Value("${chat.presence.stripes:64}") int stripes,
+            @Value("${chat.presence.tick-ms:1000}") long tickMillis,
+            @Value("${chat.presence.heartbeat-ms:10000}") long heartbeatMillis,
+            @Value("${chat.presence.expire-after-missed-heartbeats:3}") int missedHeartbeats,
+            @Value("${chat.presence.sync-ms:30000}") long syncMillis) {
+        this.messageSender = messageSender;
+        this.clusterRelay = clusterRelay;
+        this.conversationPartners = conversationPartners;
+        this.stripes = new Stripe[Integer.highestOneBit(Math.max(1, stripes - 1)) << 1];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.tickMillis = tickMillis;
+        // Without heartbeats an idle session looks the same as a dead one, so never expire
+        this.expireAfterNanos = heartbeatMillis > 0
+                ? TimeUnit.MILLISECONDS.toNanos(heartbeatMillis * missedHeartbeats)
+                : Long.MAX_VALUE;
+        this.syncNanos = TimeUnit.MILLISECONDS.toNanos(syncMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        clusterRelay.onPresence(this::received);
+        ticker = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("presence-ticker").daemon(true).factory());
+        ticker.scheduleWithFixedDelay(this::tickQuietly, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        // Other nodes drop our users now rather than after missed syncs
+        clusterRelay.publishPresence(NodePresence.builder()
+                .online(List.of())
+                .offline(List.of())
+                .snapshot(true)
+                .build());
+    }
+
+    public void connected(String sessionId, long userId) {
+        if (sessions.putIfAbsent(sessionId, new PresenceSession(userId, System.nanoTime())) != null) {
+            return;
+        }
+
+        Stripe stripe = stripe(userId);
+        boolean first;
+        stripe.lock.lock();
+        try {
+            Set<String> userSessions = stripe.sessionsByUser.computeIfAbsent(userId, id -> new HashSet<>());
+            userSessions.add(sessionId);
+            first = userSessions.size() == 1;
+            if (first) {
+                onlineUsers.incrementAndGet();
+                stripe.dirty.add(userId);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        if (first) {
+            watch(stripe, userId);
+        }
+    }
+
+    /**
+     * Two users just exchanged a direct message, so each may now see the other.
+     */
+    public void met(long userId, long partnerId) {
+        if (userId != partnerId) {
+            addPartner(userId, partnerId);
+            addPartner(partnerId, userId);
+        }
+    }
+
+    public void disconnected(String sessionId) {
+        PresenceSession session = sessions.remove(sessionId);
+        if (session != null) {
+            remove(sessionId, session.userId);
+        }
+    }
+
+    /**
+     * Records activity on a session; any inbound frame counts as a heartbeat.
+     */
+    public void touch(String sessionId) {
+        PresenceSession session = sessions.get(sessionId);
+        if (session != null) {
+            session.lastSeenNanos = System.nanoTime();
+        }
+    }
+
+    public boolean isOnline(long userId) {
+        return isOnlineHere(userId) || remoteNodeCounts.containsKey(userId);
+    }
+
+    public List<Long> online(Collection<Long> userIds) {
+        List<Long> online = new ArrayList<>();
+        for (Long userId : userIds) {
+            if (userId != null && isOnline(userId)) {
+                online.add(userId);
+            }
+        }
+        return online;
+    }
+
+    public int getOnlineUsers() {
+        return onlineUsers.get();
+    }
+
+    public int getSessions() {
+        return sessions.size();
+    }
+
+    public long getDiffsPublished() {
+        return diffsPublished.sum();
+    }
+
+    public long getChangesPublished() {
+        return changesPublished.sum();
+    }
+
+    public long getExpiredSessions() {
+        return expiredSessions.sum();
+    }
+
+    /**
+     * Expires silent sessions, applies what other nodes sent, relays this node's
+     * own changes, then sends each local user what changed among their partners
+     * since the last tick. Returns everything that changed, or null when nothing did.
+     */
+    PresenceDiff tick() {
+        expireSilentSessions();
+        applyRemoteUpdates();
+
+        Set<Long> changed = new HashSet<>(remoteDirty);
+        remoteDirty.clear();
+        List<Long> relayOnline = new ArrayList<>();
+        List<Long> relayOffline = new ArrayList<>();
+        List<Long> relaySnapshot = new ArrayList<>();
+        long now = System.nanoTime();
+        boolean sync = syncRequested || now - lastSyncNanos >= syncNanos;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                for (Long userId : stripe.dirty) {
+                    boolean isOnline = stripe.sessionsByUser.containsKey(userId);
+                    if (isOnline && stripe.relayed.add(userId)) {
+                        relayOnline.add(userId);
+                    } else if (!isOnline && stripe.relayed.remove(userId)) {
+                        relayOffline.add(userId);
+                    }
+                }
+                changed.addAll(stripe.dirty);
+                stripe.dirty.clear();
+                if (sync) {
+                    relaySnapshot.addAll(stripe.relayed);
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        if (sync) {
+            syncRequested = false;
+            lastSyncNanos = now;
+            clusterRelay.publishPresence(NodePresence.builder()
+                    .online(relaySnapshot)
+                    .offline(List.of())
+                    .snapshot(true)
+                    .build());
+        } else if (!relayOnline.isEmpty() || !relayOffline.isEmpty()) {
+            clusterRelay.publishPresence(NodePresence.builder()
+                    .online(relayOnline)
+                    .offline(relayOffline)
+                    .build());
+        }
+
+        List<Long> online = new ArrayList<>();
+        List<Long> offline = new ArrayList<>();
+        for (Long userId : changed) {
+            boolean isOnline = isOnline(userId);
+            if (isOnline && published.add(userId)) {
+                online.add(userId);
+            } else if (!isOnline && published.remove(userId)) {
+                offline.add(userId);
+            }
+        }
+
+        if (online.isEmpty() && offline.isEmpty()) {
+            return null;
+        }
+
+        LocalDateTime timestamp = LocalDateTime.now();
+        // Every node sends the merged view to its own users, so diffs are not relayed
+        Map<Long, PresenceDiff> diffs = new HashMap<>();
+        online.forEach(userId -> forEachWatcher(userId, diffs, timestamp, diff -> diff.getOnline().add(userId)));
+        offline.forEach(userId -> forEachWatcher(userId, diffs, timestamp, diff -> diff.getOffline().add(userId)));
+        diffs.forEach((watcher, diff) -> {
+            messageSender.convertAndSendToUser(watcher.toString(), PRESENCE_QUEUE, diff);
+            diffsPublished.increment();
+            changesPublished.add(diff.getOnline().size() + diff.getOffline().size());
+        });
+
+        return PresenceDiff.builder()
+                .online(online)
+                .offline(offline)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private void forEachWatcher(Long userId, Map<Long, PresenceDiff> diffs, LocalDateTime timestamp,
+                                Consumer<PresenceDiff> change) {
+        Set<Long> userWatchers = watchers.get(userId);
+        if (userWatchers == null) {
+            return;
+        }
+        for (Long watcher : userWatchers) {
+            change.accept(diffs.computeIfAbsent(watcher, id -> PresenceDiff.builder()
+                    .online(new ArrayList<>())
+                    .offline(new ArrayList<>())
+                    .timestamp(timestamp)
+                    .build()));
+        }
+    }
+
+    void received(String node, NodePresence presence) {
+        remoteUpdates.add(new RemoteUpdate(node, presence));
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            // Clients that missed a diff catch up through GET /presence
+            log.warn("Failed to publish presence diff: {}", e.getMessage());
+        }
+    }
+
+    private void expireSilentSessions() {
+        if (expireAfterNanos == Long.MAX_VALUE) {
+            return;
+        }
+        long cutoff = System.nanoTime() - expireAfterNanos;
+        sessions.forEach((sessionId, session) -> {
+            if (session.lastSeenNanos - cutoff < 0 && sessions.remove(sessionId, session)) {
+                expiredSessions.increment();
+                remove(sessionId, session.userId);
+            }
+        });
+    }
+
+    private void remove(String sessionId, long userId) {
+        Stripe stripe = stripe(userId);
+        stripe.lock.lock();
+        try {
+            Set<String> userSessions = stripe.sessionsByUser.get(userId);
+            if (userSessions != null && userSessions.remove(sessionId) && userSessions.isEmpty()) {
+                stripe.sessionsByUser.remove(userId);
+                onlineUsers.decrementAndGet();
+                stripe.dirty.add(userId);
+                Set<Long> partners = stripe.partners.remove(userId);
+                if (partners != null) {
+                    partners.forEach(partnerId -> unwatch(partnerId, userId));
+                }
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Loads the partners of a user whose first session just connected. The
+     * query runs outside the stripe lock; if the user left meanwhile, or a
+     * later session already loaded them, the result is dropped.
+     */
+    private void watch(Stripe stripe, long userId) {
+        Set<Long> partners = conversationPartners.of(userId);
+        stripe.lock.lock();
+        try {
+            if (stripe.sessionsByUser.containsKey(userId) && !stripe.partners.containsKey(userId)) {
+                stripe.partners.put(userId, partners);
+                partners.forEach(partnerId -> watchers.computeIfAbsent(partnerId, id -> ConcurrentHashMap.newKeySet()).add(userId));
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private void addPartner(long userId, long partnerId) {
+        Stripe stripe = stripe(userId);
+        stripe.lock.lock();
+        try {
+            Set<Long> partners = stripe.partners.get(userId);
+            if (partners != null && partners.add(partnerId)) {
+                watchers.computeIfAbsent(partnerId, id -> ConcurrentHashMap.newKeySet()).add(userId);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private void unwatch(Long userId, Long watcher) {
+        watchers.computeIfPresent(userId, (id, userWatchers) -> {
+            userWatchers.remove(watcher);
+            return userWatchers.isEmpty() ? null : userWatchers;
+        });
+    }
+
+    private boolean isOnlineHere(long userId) {
+        Stripe stripe = stripe(userId);
+        stripe.lock.lock();
+        try {
+            return stripe.sessionsByUser.containsKey(userId);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private void applyRemoteUpdates() {
+        long now = System.nanoTime();
+        RemoteUpdate update;
+        while ((update = remoteUpdates.poll()) != null) {
+            RemoteNode node = remoteNodes.get(update.node());
+            if (node == null) {
+                node = new RemoteNode();
+                remoteNodes.put(update.node(), node);
+                // A node that just joined needs our set now, not at our next scheduled sync
+                syncRequested = true;
+            }
+            node.lastSeenNanos = now;
+            apply(node, update.presence());
+        }
+
+        long cutoff = now - syncNanos * MISSED_SYNCS;
+        remoteNodes.values().removeIf(node -> {
+            if (node.lastSeenNanos - cutoff >= 0) {
+                return false;
+            }
+            List.copyOf(node.users).forEach(userId -> removeRemote(node, userId));
+            return true;
+        });
+    }
+
+    private void apply(RemoteNode node, NodePresence presence) {
+        List<Long> online = presence.getOnline() != null ? presence.getOnline() : List.of();
+        if (presence.isSnapshot()) {
+            Set<Long> current = new HashSet<>(online);
+            for (Long userId : List.copyOf(node.users)) {
+                if (!current.contains(userId)) {
+                    removeRemote(node, userId);
+                }
+            }
+        } else if (presence.getOffline() != null) {
+            presence.getOffline().forEach(userId -> removeRemote(node, userId));
+        }
+        for (Long userId : online) {
+            if (node.users.add(userId)) {
+                remoteNodeCounts.merge(userId, 1, Integer::sum);
+                remoteDirty.add(userId);
+            }
+        }
+    }
+
+    private void removeRemote(RemoteNode node, Long userId) {
+        if (node.users.remove(userId)) {
+            remoteNodeCounts.computeIfPresent(userId, (id, count) -> count == 1 ? null : count - 1);
+            remoteDirty.add(userId);
+        }
+    }
+
+    private Stripe stripe(long userId) {
+        return stripes[(int) (Long.hashCode(userId * 0x9E3779B97F4A7C15L) & (stripes.length - 1))];
+    }
+}
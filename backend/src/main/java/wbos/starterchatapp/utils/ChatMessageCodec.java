@@ -0,0 +1,150 @@
+package wbos.starterchatapp.utils;
+
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.enums.MessageType;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Compact binary encoding of {@link ChatMessage} for WebSocket clients that
+ * negotiate it.
+ *
+ * <p>v1 layout: a version byte, a presence byte (bit per field, in the order
+ * below), then the present fields: type as its {@link MessageType} ordinal
+ * (so new types may only be appended), sender id, recipient id and timestamp
+ * as unsigned varints, sender and content as varint length + UTF-8, and the
+ * sequence as an unsigned varint. The
+ * timestamp is the message's wall-clock time as epoch milliseconds read as
+ * UTC, so it round-trips to the same LocalDateTime at millisecond precision.
+ */
+public final class ChatMessageCodec {
+
+    public static final int V1 = 1;
+
+    private static final int HAS_TYPE = 1;
+    private static final int HAS_SENDER_ID = 1 << 1;
+    private static final int HAS_RECIPIENT_ID = 1 << 2;
+    private static final int HAS_TIMESTAMP = 1 << 3;
+    private static final int HAS_SENDER = 1 << 4;
+    private static final int HAS_CONTENT = 1 << 5;
+    private static final int HAS_SEQUENCE = 1 << 6;
+
+    private ChatMessageCodec() {
+    }
+
+    public static byte[] encode(ChatMessage message) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 + (message.getContent() != null ? message.getContent().length() : 0));
+        out.write(V1);
+        out.write((message.getType() != null ? HAS_TYPE : 0)
+                | (message.getSenderId() != null ? HAS_SENDER_ID : 0)
+                | (message.getRecipientId() != null ? HAS_RECIPIENT_ID : 0)
+                | (message.getTimestamp() != null ? HAS_TIMESTAMP : 0)
+                | (message.getSender() != null ? HAS_SENDER : 0)
+                | (message.getContent() != null ? HAS_CONTENT : 0)
+                | (message.getSequence() != null ? HAS_SEQUENCE : 0));
+
+        if (message.getType() != null) {
+            out.write(message.getType().ordinal());
+        }
+        if (message.getSenderId() != null) {
+            writeVarLong(out, message.getSenderId());
+        }
+        if (message.getRecipientId() != null) {
+            writeVarLong(out, message.getRecipientId());
+        }
+        if (message.getTimestamp() != null) {
+            writeVarLong(out, message.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli());
+        }
+        if (message.getSender() != null) {
+            writeString(out, message.getSender());
+        }
+        if (message.getContent() != null) {
+            writeString(out, message.getContent());
+        }
+        if (message.getSequence() != null) {
+            writeVarLong(out, message.getSequence());
+        }
+        return out.toByteArray();
+    }
+
+    public static ChatMessage decode(byte[] bytes) {
+        try {
+            int[] position = {0};
+            int version = readByte(bytes, position);
+            if (version != V1) {
+                throw new IllegalArgumentException("Unsupported chat message encoding version " + version);
+            }
+
+            int presence = readByte(bytes, position);
+            ChatMessage message = new ChatMessage();
+            if ((presence & HAS_TYPE) != 0) {
+                message.setType(MessageType.values()[readByte(bytes, position)]);
+            }
+            if ((presence & HAS_SENDER_ID) != 0) {
+                message.setSenderId(readVarLong(bytes, position));
+            }
+            if ((presence & HAS_RECIPIENT_ID) != 0) {
+                message.setRecipientId(readVarLong(bytes, position));
+            }
+            if ((presence & HAS_TIMESTAMP) != 0) {
+                message.setTimestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(readVarLong(bytes, position)), ZoneOffset.UTC));
+            }
+            if ((presence & HAS_SENDER) != 0) {
+                message.setSender(readString(bytes, position));
+            }
+            if ((presence & HAS_CONTENT) != 0) {
+                message.setContent(readString(bytes, position));
+            }
+            if ((presence & HAS_SEQUENCE) != 0) {
+                message.setSequence(readVarLong(bytes, position));
+            }
+            return message;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated chat message", e);
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, utf8.length);
+        out.writeBytes(utf8);
+    }
+
+    private static int readByte(byte[] bytes, int[] position) {
+        return bytes[position[0]++] & 0xFF;
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static String readString(byte[] bytes, int[] position) {
+        int length = (int) readVarLong(bytes, position);
+        if (position[0] + length > bytes.length) {
+            throw new IndexOutOfBoundsException(position[0] + length);
+        }
+        String value = new String(bytes, position[0], length, StandardCharsets.UTF_8);
+        position[0] += length;
+        return value;
+    }
+}
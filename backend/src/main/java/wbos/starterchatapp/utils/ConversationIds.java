@@ -0,0 +1,35 @@
+package wbos.starterchatapp.utils;
+
+public final class ConversationIds {
+
+    private static final String DIRECT_PREFIX = "dm:";
+
+    private ConversationIds() {
+    }
+
+    /**
+     * Direct conversations are keyed by the ordered pair of participants so both
+     * sides resolve to the same id regardless of who sent the message.
+     */
+    public static String direct(Long userA, Long userB) {
+        long low = Math.min(userA, userB);
+        long high = Math.max(userA, userB);
+        return DIRECT_PREFIX + low + ":" + high;
+    }
+
+    /**
+     * Whether the user may read the conversation: anyone for non-direct
+     * conversations, only the two participants for direct ones.
+     */
+    public static boolean canRead(String conversationId, Long userId) {
+        if (!conversationId.startsWith(DIRECT_PREFIX)) {
+            return true;
+        }
+        if (userId == null) {
+            return false;
+        }
+        String[] participants = conversationId.substring(DIRECT_PREFIX.length()).split(":");
+        return participants.length == 2
+                && (participants[0].equals(userId.toString()) || participants[1].equals(userId.toString()));
+    }
+}
@@ -1,28 +1,46 @@
 package wbos.starterchatapp.utils;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import wbos.starterchatapp.dtos.VerifiedToken;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtil {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    private final Long expiration;
 
-    @Value("${jwt.expiration}")
-    private Long expiration;
+    // Built once; both are immutable and thread-safe
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+    private final Timer verifyTimer;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    public JwtUtil(@Value("${jwt.secret}") String secret,
+                   @Value("${jwt.expiration}") Long expiration,
+                   MeterRegistry meterRegistry) {
+        this.expiration = expiration;
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        this.verifyTimer = Timer.builder("chat.jwt.verify")
+                .description("Time to check a token's signature and parse its claims")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     public String generateToken(String username, Long userId) {
@@ -40,10 +58,27 @@ public class JwtUtil {
                 .subject(subject)
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
+    /**
+     * Verifies the token once and returns its claims; throws a JwtException
+     * when the signature is wrong, the token has expired or it has no expiry.
+     */
+    public VerifiedToken verify(String token) {
+        Claims claims = extractClaims(token);
+        Date expiresAt = claims.getExpiration();
+        if (expiresAt == null) {
+            // Every token we issue has one; a token without it would never expire
+            throw new JwtException("Token has no expiration");
+        }
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.get("userId", Long.class),
+                expiresAt.toInstant());
+    }
+
     public String extractUsername(String token) {
         return extractClaims(token).getSubject();
     }
@@ -57,11 +92,12 @@ public class JwtUtil {
     }
 
     private Claims extractClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        long start = System.nanoTime();
+        try {
+            return parser.parseSignedClaims(token).getPayload();
+        } finally {
+            verifyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
     }
 
     public boolean isTokenExpired(String token) {
@@ -69,7 +105,7 @@ public class JwtUtil {
     }
 
     public boolean validateToken(String token, String username) {
-        final String extractedUsername = extractUsername(token);
-        return (extractedUsername.equals(username) && !isTokenExpired(token));
+        VerifiedToken verified = verify(token);
+        return verified.username().equals(username) && verified.expiresAt().isAfter(Instant.now());
     }
 }
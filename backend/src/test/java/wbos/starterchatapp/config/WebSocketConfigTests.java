@@ -0,0 +1,92 @@
+package wbos.starterchatapp.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.TaskExecutorRegistration;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import wbos.starterchatapp.config.interceptors.OutboundBatchingInterceptor;
+import wbos.starterchatapp.config.interceptors.PresenceHeartbeatInterceptor;
+import wbos.starterchatapp.config.interceptors.StompAuthChannelInterceptor;
+import wbos.starterchatapp.config.interceptors.WireFormatInterceptor;
+import wbos.starterchatapp.config.listeners.SlowConsumerMonitor;
+import wbos.starterchatapp.config.listeners.WebSocketTransportMonitor;
+import wbos.starterchatapp.config.metrics.OutboundFanOutCounter;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class WebSocketConfigTests {
+
+    private final WebSocketProperties properties = new WebSocketProperties();
+    private final ChannelRegistration registration = mock(ChannelRegistration.class);
+    private final TaskExecutorRegistration taskExecutor = mock(TaskExecutorRegistration.class);
+    private WebSocketConfig config;
+
+    @BeforeEach
+    void setUp() {
+        when(registration.taskExecutor()).thenReturn(taskExecutor);
+        when(taskExecutor.corePoolSize(anyInt())).thenReturn(taskExecutor);
+        when(taskExecutor.maxPoolSize(anyInt())).thenReturn(taskExecutor);
+        when(taskExecutor.queueCapacity(anyInt())).thenReturn(taskExecutor);
+
+        config = new WebSocketConfig(mock(StompAuthChannelInterceptor.class), new SlowConsumerMonitor(),
+                mock(WebSocketTransportMonitor.class), mock(PresenceHeartbeatInterceptor.class),
+                mock(OutboundBatchingInterceptor.class), mock(WireFormatInterceptor.class),
+                mock(OutboundFanOutCounter.class), new SimpleMeterRegistry(), properties);
+    }
+
+    @Test
+    void channelPoolsAreSizedFromProperties() {
+        properties.getChannels().getInbound().setCorePoolSize(4);
+        properties.getChannels().getInbound().setMaxPoolSize(8);
+        properties.getChannels().getInbound().setQueueCapacity(100);
+
+        config.configureClientInboundChannel(registration);
+
+        verify(taskExecutor).corePoolSize(4);
+        verify(taskExecutor).maxPoolSize(8);
+        verify(taskExecutor).queueCapacity(100);
+        verify(registration, never()).executor(any());
+    }
+
+    @Test
+    void outboundPoolUsesItsOwnSettings() {
+        properties.getChannels().getOutbound().setCorePoolSize(2);
+        properties.getChannels().getOutbound().setMaxPoolSize(3);
+        properties.getChannels().getOutbound().setQueueCapacity(50);
+
+        config.configureClientOutboundChannel(registration);
+
+        verify(taskExecutor).corePoolSize(2);
+        verify(taskExecutor).maxPoolSize(3);
+        verify(taskExecutor).queueCapacity(50);
+    }
+
+    @Test
+    void virtualThreadsReplaceThePools() {
+        properties.getChannels().setVirtualThreads(true);
+
+        config.configureClientInboundChannel(registration);
+        config.configureClientOutboundChannel(registration);
+
+        verify(registration, times(2)).executor(any(VirtualThreadTaskExecutor.class));
+        verify(registration, never()).taskExecutor();
+    }
+
+    @Test
+    void transportLimitsComeFromProperties() {
+        properties.setSendTimeLimitMs(1000);
+        properties.setSendBufferSizeLimit(4096);
+        properties.setMessageSizeLimit(2048);
+        WebSocketTransportRegistration transport = mock(WebSocketTransportRegistration.class, RETURNS_SELF);
+
+        config.configureWebSocketTransport(transport);
+
+        verify(transport).setSendTimeLimit(1000);
+        verify(transport).setSendBufferSizeLimit(4096);
+        verify(transport).setMessageSizeLimit(2048);
+    }
+}
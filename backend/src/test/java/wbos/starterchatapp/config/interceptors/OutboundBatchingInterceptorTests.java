@@ -0,0 +1,136 @@
+package wbos.starterchatapp.config.interceptors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutboundBatchingInterceptorTests {
+
+    private final List<Message<?>> sent = new CopyOnWriteArrayList<>();
+    private final MessageChannel channel = (message, timeout) -> sent.add(message);
+    private OutboundBatchingInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        interceptor = new OutboundBatchingInterceptor(channel, true, TimeUnit.MILLISECONDS.toMicros(50), 3);
+        interceptor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        interceptor.stop();
+    }
+
+    @Test
+    void messagesWithinTheWindowGoOutAsOneArrayFrame() throws InterruptedException {
+        assertThat(interceptor.preSend(message("s1", "{\"n\":1}"), channel)).isNull();
+        assertThat(interceptor.preSend(message("s1", "{\"n\":2}"), channel)).isNull();
+
+        awaitSent(1);
+        Message<?> frame = sent.getFirst();
+        assertThat(new String((byte[]) frame.getPayload(), StandardCharsets.UTF_8)).isEqualTo("[{\"n\":1},{\"n\":2}]");
+        assertThat(SimpMessageHeaderAccessor.wrap(frame).getFirstNativeHeader(OutboundBatchingInterceptor.BATCH_SIZE_HEADER))
+                .isEqualTo("2");
+        // Passing the flushed frame through again must not re-batch it
+        assertThat(interceptor.preSend(frame, channel)).isSameAs(frame);
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaitingForTheWindow() {
+        for (int i = 0; i < 3; i++) {
+            interceptor.preSend(message("s1", "{\"n\":" + i + "}"), channel);
+        }
+
+        assertThat(sent).hasSize(1);
+        assertThat(interceptor.getBatchedMessages()).isEqualTo(3);
+    }
+
+    @Test
+    void singleMessageGoesOutUnchanged() throws InterruptedException {
+        interceptor.preSend(message("s1", "{\"n\":1}"), channel);
+        interceptor.preSend(message("s2", "{\"n\":2}"), channel);
+
+        awaitSent(2);
+        assertThat(sent).allSatisfy(frame -> assertThat(SimpMessageHeaderAccessor.wrap(frame)
+                .getFirstNativeHeader(OutboundBatchingInterceptor.BATCH_SIZE_HEADER)).isNull());
+    }
+
+    @Test
+    void concurrentSendersKeepTheirOrderWithinASubscription() throws Exception {
+        interceptor.stop();
+        interceptor = new OutboundBatchingInterceptor(channel, true, 20, 3);
+        interceptor.start();
+        int senders = 4;
+        int perSender = 5000;
+
+        try (ExecutorService pool = Executors.newFixedThreadPool(senders)) {
+            CountDownLatch go = new CountDownLatch(1);
+            for (int t = 0; t < senders; t++) {
+                int sender = t;
+                pool.submit(() -> {
+                    go.await();
+                    for (int n = 0; n < perSender; n++) {
+                        interceptor.preSend(message("s1", "{\"t\":" + sender + ",\"n\":" + n + "}"), channel);
+                    }
+                    return null;
+                });
+            }
+            go.countDown();
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        int[] next = new int[senders];
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        int seen = 0;
+        while (seen < senders * perSender && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            seen = 0;
+            Arrays.fill(next, 0);
+            for (Message<?> frame : sent) {
+                JsonNode body = objectMapper.readTree((byte[]) frame.getPayload());
+                for (JsonNode message : body.isArray() ? body : List.of(body)) {
+                    // Each sender's messages must come out in the order it sent them, none lost or repeated
+                    assertThat(message.get("n").asInt()).isEqualTo(next[message.get("t").asInt()]++);
+                    seen++;
+                }
+            }
+        }
+        assertThat(seen).isEqualTo(senders * perSender);
+    }
+
+    private void awaitSent(int frames) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (sent.size() < frames && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(sent).hasSize(frames);
+    }
+
+    private static Message<byte[]> message(String sessionId, String json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination("/topic/conversations/public");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(json.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+}
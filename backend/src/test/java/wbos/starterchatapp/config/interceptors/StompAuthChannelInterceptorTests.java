@@ -0,0 +1,81 @@
+package wbos.starterchatapp.config.interceptors;
+
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import wbos.starterchatapp.dtos.VerifiedToken;
+import wbos.starterchatapp.utils.JwtUtil;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StompAuthChannelInterceptorTests {
+
+    private JwtUtil jwtUtil;
+    private StompAuthChannelInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = mock(JwtUtil.class);
+        interceptor = new StompAuthChannelInterceptor(jwtUtil);
+    }
+
+    @Test
+    void connectWithValidTokenSetsPrincipalAndSessionAttributes() {
+        when(jwtUtil.verify("good")).thenReturn(new VerifiedToken("alice", 1L, Instant.now().plusSeconds(60)));
+        Map<String, Object> attributes = new HashMap<>();
+
+        Message<?> result = interceptor.preSend(connect("Bearer good", attributes), null);
+
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(result, StompHeaderAccessor.class);
+        assertThat(accessor.getUser().getName()).isEqualTo("1");
+        assertThat(attributes).containsEntry("userId", 1L).containsEntry("username", "alice");
+    }
+
+    @Test
+    void connectWithoutAuthorizationIsRejected() {
+        assertThatThrownBy(() -> interceptor.preSend(connect(null, new HashMap<>()), null))
+                .isInstanceOf(MessageDeliveryException.class);
+    }
+
+    @Test
+    void connectWithNonBearerOrInvalidTokenIsRejected() {
+        when(jwtUtil.verify("bad")).thenThrow(new JwtException("expired"));
+
+        assertThatThrownBy(() -> interceptor.preSend(connect("Basic abc", new HashMap<>()), null))
+                .isInstanceOf(MessageDeliveryException.class);
+        assertThatThrownBy(() -> interceptor.preSend(connect("Bearer bad", new HashMap<>()), null))
+                .isInstanceOf(MessageDeliveryException.class);
+    }
+
+    @Test
+    void framesOtherThanConnectPassThrough() {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setLeaveMutable(true);
+        Message<byte[]> send = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+
+        assertThat(interceptor.preSend(send, null)).isSameAs(send);
+    }
+
+    private static Message<byte[]> connect(String authorization, Map<String, Object> attributes) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        if (authorization != null) {
+            accessor.addNativeHeader("Authorization", authorization);
+        }
+        accessor.setSessionAttributes(attributes);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,131 @@
+package wbos.starterchatapp.config.interceptors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import wbos.starterchatapp.config.converters.ChatMessageBinaryConverter;
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.enums.MessageType;
+import wbos.starterchatapp.services.cluster.NoOpClusterRelay;
+import wbos.starterchatapp.services.messages.MessageRouter;
+import wbos.starterchatapp.utils.ChatMessageCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class WireFormatInterceptorTests {
+
+    private static final String TOPIC = "/topic/conversations/public";
+
+    private WireFormatInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        interceptor = new WireFormatInterceptor(new ObjectMapper().registerModule(new JavaTimeModule()));
+        connect("binary-1", "binary");
+        connect("binary-2", "BINARY");
+        connect("json", null);
+    }
+
+    @Test
+    void broadcastIsEncodedOnceForAllBinarySessions() {
+        byte[] json = "{\"type\":\"CHAT\",\"sender\":\"alice\",\"content\":\"hi\"}".getBytes(StandardCharsets.UTF_8);
+
+        Message<?> first = interceptor.preSend(message("binary-1", TOPIC, json), null);
+        Message<?> second = interceptor.preSend(message("binary-2", TOPIC, json), null);
+        Message<?> plain = interceptor.preSend(message("json", TOPIC, json), null);
+
+        assertThat(first.getPayload()).isSameAs(second.getPayload());
+        assertThat(ChatMessageCodec.decode((byte[]) first.getPayload()))
+                .isEqualTo(ChatMessage.builder().type(MessageType.CHAT).sender("alice").content("hi").build());
+        assertThat(SimpMessageHeaderAccessor.wrap(first).getContentType()).isEqualTo(ChatMessageBinaryConverter.CHAT_BINARY);
+        assertThat(plain.getPayload()).isSameAs(json);
+        assertThat(interceptor.getBinaryEncodes()).isEqualTo(1);
+    }
+
+    @Test
+    void routedMessageIsEncodedFromTheObjectTheBrokerCarriesAlong() {
+        ObjectMapper objectMapper = mock(ObjectMapper.class);
+        interceptor = new WireFormatInterceptor(objectMapper);
+        connect("binary-1", "binary");
+
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel outbound = new ExecutorSubscribableChannel();
+        SimpleBrokerMessageHandler broker = new SimpleBrokerMessageHandler(
+                new ExecutorSubscribableChannel(), outbound, brokerChannel, List.of("/topic"));
+        broker.start();
+        broker.handleMessage(broker("binary-1", SimpMessageType.CONNECT, null));
+        broker.handleMessage(broker("binary-1", SimpMessageType.SUBSCRIBE, TOPIC));
+        List<Message<?>> delivered = new ArrayList<>();
+        outbound.addInterceptor(interceptor);
+        outbound.subscribe(delivered::add);
+
+        SimpMessagingTemplate template = new SimpMessagingTemplate(brokerChannel);
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(new ObjectMapper().registerModule(new JavaTimeModule()));
+        template.setMessageConverter(converter);
+        ChatMessage chat = ChatMessage.builder().type(MessageType.CHAT).sender("alice").content("hi").build();
+        new MessageRouter(template, new NoOpClusterRelay()).route(chat);
+
+        assertThat(delivered).hasSize(1);
+        assertThat(ChatMessageCodec.decode((byte[]) delivered.getFirst().getPayload())).isEqualTo(chat);
+        assertThat(StompHeaderAccessor.wrap(delivered.getFirst()).toNativeHeaderMap())
+                .doesNotContainKey(MessageRouter.CHAT_MESSAGE_HEADER);
+        verifyNoInteractions(objectMapper);
+    }
+
+    @Test
+    void otherDestinationsStayJson() {
+        byte[] json = "{\"online\":[1],\"offline\":[]}".getBytes(StandardCharsets.UTF_8);
+
+        Message<?> presence = interceptor.preSend(message("binary-1", "/queue/presence-userbinary-1", json), null);
+        Message<?> typing = interceptor.preSend(message("binary-1", TOPIC + "/typing", json), null);
+
+        assertThat(presence.getPayload()).isSameAs(json);
+        assertThat(typing.getPayload()).isSameAs(json);
+    }
+
+    private void connect(String sessionId, String wireFormat) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        if (wireFormat != null) {
+            accessor.setNativeHeader(WireFormatInterceptor.WIRE_FORMAT_HEADER, wireFormat);
+        }
+        accessor.setLeaveMutable(true);
+        interceptor.preSend(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), null);
+    }
+
+    private static Message<byte[]> broker(String sessionId, SimpMessageType type, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> message(String sessionId, String destination, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination(destination);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
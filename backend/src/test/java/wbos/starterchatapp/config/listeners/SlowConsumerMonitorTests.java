@@ -0,0 +1,43 @@
+package wbos.starterchatapp.config.listeners;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class SlowConsumerMonitorTests {
+
+    private final SlowConsumerMonitor monitor = new SlowConsumerMonitor();
+    private final WebSocketHandler delegate = mock(WebSocketHandler.class);
+    private final WebSocketSession session = mock(WebSocketSession.class);
+
+    @Test
+    void sessionClosedAsUnreliableIsCountedAsAnEviction() throws Exception {
+        WebSocketHandler handler = monitor.decorate(delegate);
+
+        handler.afterConnectionEstablished(session);
+        assertThat(monitor.getActiveSessions()).isEqualTo(1);
+
+        // What ConcurrentWebSocketSessionDecorator closes with when a send-time or buffer limit is exceeded
+        CloseStatus status = CloseStatus.SESSION_NOT_RELIABLE.withReason("Send time limit exceeded");
+        handler.afterConnectionClosed(session, status);
+
+        assertThat(monitor.getActiveSessions()).isZero();
+        assertThat(monitor.getEvictions()).isEqualTo(1);
+        verify(delegate).afterConnectionClosed(session, status);
+    }
+
+    @Test
+    void ordinaryCloseIsNotAnEviction() throws Exception {
+        WebSocketHandler handler = monitor.decorate(delegate);
+
+        handler.afterConnectionEstablished(session);
+        handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+
+        assertThat(monitor.getActiveSessions()).isZero();
+        assertThat(monitor.getEvictions()).isZero();
+    }
+}
@@ -0,0 +1,60 @@
+package wbos.starterchatapp.config.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import wbos.starterchatapp.config.interceptors.OutboundBatchingInterceptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutboundFanOutCounterTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final OutboundFanOutCounter counter = new OutboundFanOutCounter(registry);
+    private final MessageChannel channel = (message, timeout) -> true;
+
+    @Test
+    void countsEachSubscriberCopyByDestinationKind() {
+        counter.preSend(message(SimpMessageType.MESSAGE, "/topic/conversations/public"), channel);
+        counter.preSend(message(SimpMessageType.MESSAGE, "/topic/conversations/public"), channel);
+        counter.preSend(message(SimpMessageType.MESSAGE, "/topic/conversations/public/typing"), channel);
+        counter.preSend(message(SimpMessageType.MESSAGE, "/queue/messages-userabc123"), channel);
+        counter.preSend(message(SimpMessageType.MESSAGE, "/queue/typing-userabc123"), channel);
+        counter.preSend(message(SimpMessageType.MESSAGE, "/queue/presence-userabc123"), channel);
+
+        assertThat(count("conversation")).isEqualTo(2);
+        assertThat(count("conversation-typing")).isEqualTo(1);
+        assertThat(count("user-messages")).isEqualTo(1);
+        assertThat(count("user-typing")).isEqualTo(1);
+        assertThat(count("presence")).isEqualTo(1);
+        assertThat(count("other")).isZero();
+    }
+
+    @Test
+    void ignoresControlFramesAndFlushedBatches() {
+        counter.preSend(message(SimpMessageType.CONNECT_ACK, null), channel);
+        counter.preSend(MessageBuilder.fromMessage(message(SimpMessageType.MESSAGE, "/queue/presence-userabc123"))
+                .setHeader(OutboundBatchingInterceptor.FLUSHED_HEADER, true)
+                .build(), channel);
+
+        assertThat(registry.get("chat.websocket.outbound.messages").counters())
+                .allSatisfy(c -> assertThat(c.count()).isZero());
+    }
+
+    private double count(String destination) {
+        return registry.get("chat.websocket.outbound.messages").tag("destination", destination).counter().count();
+    }
+
+    private static Message<byte[]> message(SimpMessageType type, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId("s1");
+        if (destination != null) {
+            accessor.setDestination(destination);
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
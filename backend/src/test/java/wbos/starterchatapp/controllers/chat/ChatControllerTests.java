@@ -0,0 +1,99 @@
+package wbos.starterchatapp.controllers.chat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.enums.MessageType;
+import wbos.starterchatapp.services.messages.ConversationReplayBuffer;
+import wbos.starterchatapp.services.messages.MessageRouter;
+import wbos.starterchatapp.services.messages.MessageService;
+import wbos.starterchatapp.services.messages.TypingIndicatorService;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ChatControllerTests {
+
+    private MessageService messageService;
+    private MessageRouter messageRouter;
+    private TypingIndicatorService typingIndicatorService;
+    private ChatController controller;
+
+    @BeforeEach
+    void setUp() {
+        messageService = mock(MessageService.class);
+        messageRouter = mock(MessageRouter.class);
+        typingIndicatorService = mock(TypingIndicatorService.class);
+        controller = new ChatController(messageService, messageRouter, typingIndicatorService,
+                mock(ConversationReplayBuffer.class));
+        when(messageService.send(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void senderComesFromTheSessionNotThePayload() {
+        ChatMessage spoofed = ChatMessage.builder()
+                .type(MessageType.CHAT).content("hi").recipientId(2L)
+                .senderId(99L).sender("mallory")
+                .build();
+
+        controller.sendMessage(spoofed, principal(1L), session("alice"));
+
+        ArgumentCaptor<ChatMessage> sent = ArgumentCaptor.forClass(ChatMessage.class);
+        verify(messageService).send(sent.capture());
+        assertThat(sent.getValue().getSenderId()).isEqualTo(1L);
+        assertThat(sent.getValue().getSender()).isEqualTo("alice");
+    }
+
+    @Test
+    void typingIgnoresPayloadIdentity() {
+        ChatMessage spoofed = ChatMessage.builder()
+                .type(MessageType.TYPING).recipientId(2L)
+                .senderId(99L).sender("mallory")
+                .build();
+
+        controller.typing(spoofed, principal(1L), session("alice"));
+
+        verify(typingIndicatorService).typing(1L, "alice", 2L);
+    }
+
+    @Test
+    void unauthenticatedSessionsCannotSendOrType() {
+        ChatMessage message = ChatMessage.builder()
+                .type(MessageType.CHAT).content("hi").senderId(99L).sender("mallory")
+                .build();
+
+        assertThatThrownBy(() -> controller.sendMessage(message, null, session(null)))
+                .isInstanceOf(MessageDeliveryException.class);
+        assertThatThrownBy(() -> controller.typing(message, null, session(null)))
+                .isInstanceOf(MessageDeliveryException.class);
+        verifyNoInteractions(messageService, typingIndicatorService);
+    }
+
+    private static Principal principal(Long userId) {
+        return new UsernamePasswordAuthenticationToken(userId.toString(), null, List.of());
+    }
+
+    private static SimpMessageHeaderAccessor session(String username) {
+        Map<String, Object> attributes = new HashMap<>();
+        if (username != null) {
+            attributes.put("username", username);
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setSessionAttributes(attributes);
+        return accessor;
+    }
+}
@@ -0,0 +1,88 @@
+package wbos.starterchatapp.controllers.messages;
+
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.dtos.VerifiedToken;
+import wbos.starterchatapp.dtos.requests.SendMessageRequest;
+import wbos.starterchatapp.dtos.response.MessageHistoryResponse;
+import wbos.starterchatapp.services.messages.MessageRouter;
+import wbos.starterchatapp.services.messages.MessageService;
+import wbos.starterchatapp.services.messages.MessageWriteBehindService;
+import wbos.starterchatapp.utils.JwtUtil;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class MessageControllerTests {
+
+    private final MessageService messageService = mock(MessageService.class);
+    private final MessageRouter messageRouter = mock(MessageRouter.class);
+    private final MessageWriteBehindService writeBehindService = mock(MessageWriteBehindService.class);
+    private final JwtUtil jwtUtil = mock(JwtUtil.class);
+    private final MessageController controller = new MessageController(
+            messageService, writeBehindService, messageRouter, jwtUtil);
+
+    @Test
+    void senderComesFromTheVerifiedToken() {
+        when(jwtUtil.verify("good")).thenReturn(new VerifiedToken("alice", 1L, Instant.now().plusSeconds(60)));
+        when(messageService.send(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ChatMessage sent = controller.sendMessage("Bearer good", request(2L)).getBody();
+
+        assertThat(sent.getSenderId()).isEqualTo(1L);
+        assertThat(sent.getSender()).isEqualTo("alice");
+        verify(messageRouter).route(sent);
+    }
+
+    @Test
+    void historyIsReadForTheTokenOwner() {
+        when(jwtUtil.verify("good")).thenReturn(new VerifiedToken("alice", 1L, Instant.now().plusSeconds(60)));
+        when(messageService.history(1L, 2L, null, null))
+                .thenReturn(MessageHistoryResponse.builder().messages(List.of()).build());
+
+        assertThat(controller.getMessages("Bearer good", 2L, null, null).getHeaders().getETag())
+                .isEqualTo("\"empty\"");
+    }
+
+    @Test
+    void pageOfAConversationWithUnwrittenMessagesIsNoStore() {
+        when(jwtUtil.verify("good")).thenReturn(new VerifiedToken("alice", 1L, Instant.now().plusSeconds(60)));
+        when(messageService.history(any(), any(), any(), any()))
+                .thenReturn(MessageHistoryResponse.builder().messages(List.of()).build());
+        when(writeBehindService.hasPendingWrites("dm:1:2")).thenReturn(true);
+
+        assertThat(controller.getMessages("Bearer good", 2L, null, null).getHeaders().getCacheControl())
+                .isEqualTo("no-store");
+        assertThat(controller.getMessages("Bearer good", 3L, null, null).getHeaders().getCacheControl())
+                .isNull();
+    }
+
+    @Test
+    void missingOrInvalidTokenIsUnauthorized() {
+        when(jwtUtil.verify("bad")).thenThrow(new JwtException("expired"));
+
+        for (String authHeader : new String[]{null, "Basic abc", "Bearer bad"}) {
+            assertThatThrownBy(() -> controller.sendMessage(authHeader, request(2L)))
+                    .isInstanceOfSatisfying(ResponseStatusException.class,
+                            e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED));
+            assertThatThrownBy(() -> controller.getMessages(authHeader, 2L, null, null))
+                    .isInstanceOf(ResponseStatusException.class);
+        }
+        verifyNoInteractions(messageService, messageRouter);
+    }
+
+    private static SendMessageRequest request(Long recipientId) {
+        SendMessageRequest request = new SendMessageRequest();
+        request.setRecipientId(recipientId);
+        request.setContent("hi");
+        return request;
+    }
+}
@@ -0,0 +1,54 @@
+package wbos.starterchatapp.repositories;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import wbos.starterchatapp.dtos.response.MessageResponse;
+import wbos.starterchatapp.entities.MessageEntity;
+import wbos.starterchatapp.enums.MessageType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"})
+class MessageRepositoryTests {
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Test
+    void findPageBeforeReturnsOlderMessagesOfOneConversationNewestFirst() {
+        List<Long> ids = List.of(
+                save("dm:1:2", 1L, 2L).getId(),
+                save("dm:1:3", 1L, 3L).getId(),
+                save("dm:1:2", 2L, 1L).getId(),
+                save("dm:1:2", 1L, 2L).getId(),
+                save("dm:1:2", 2L, 1L).getId());
+
+        List<MessageResponse> firstPage = messageRepository.findPageBefore("dm:1:2", Long.MAX_VALUE, Limit.of(3));
+        assertThat(firstPage).extracting(MessageResponse::getId)
+                .containsExactly(ids.get(4), ids.get(3), ids.get(2));
+        assertThat(firstPage.getFirst().getSenderUsername()).isEqualTo("user2");
+        assertThat(firstPage.getFirst().getTimestamp()).isNotNull();
+
+        List<MessageResponse> olderPage = messageRepository.findPageBefore("dm:1:2", ids.get(2), Limit.of(3));
+        assertThat(olderPage).extracting(MessageResponse::getId).containsExactly(ids.get(0));
+    }
+
+    private MessageEntity save(String conversationId, Long senderId, Long recipientId) {
+        MessageEntity entity = new MessageEntity();
+        entity.setConversationId(conversationId);
+        entity.setSenderId(senderId);
+        entity.setRecipientId(recipientId);
+        entity.setSenderUsername("user" + senderId);
+        entity.setContent("hello");
+        entity.setType(MessageType.CHAT);
+        entity.setCreatedAt(LocalDateTime.now());
+        return messageRepository.save(entity);
+    }
+}
@@ -0,0 +1,93 @@
+package wbos.starterchatapp.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PasswordHashingServiceTests {
+
+    private PasswordHashingService service;
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void hashesOnThePoolAndRecordsTimings() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        service = new PasswordHashingService(new BCryptPasswordEncoder(4), registry, 4, 2, 8);
+
+        String hash = service.encode("secret");
+
+        assertThat(service.matches("secret", hash)).isTrue();
+        assertThat(service.matches("wrong", hash)).isFalse();
+        assertThat(registry.get("chat.auth.bcrypt").tag("operation", "encode").timer().count()).isEqualTo(1);
+        assertThat(registry.get("chat.auth.bcrypt").tag("operation", "encode").timer().max(TimeUnit.NANOSECONDS)).isPositive();
+        assertThat(registry.get("chat.auth.bcrypt").tag("operation", "matches").timer().count()).isEqualTo(2);
+        assertThat(registry.get("chat.auth.bcrypt.queue.wait").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    void shedsWithServiceUnavailableWhenPoolAndQueueAreFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slow = mock(PasswordEncoder.class);
+        when(slow.encode(anyString())).thenAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return "hash";
+        });
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        service = new PasswordHashingService(slow, registry, 10, 1, 1);
+
+        // One running, one queued
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> service.encode("a"));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> service.encode("b"));
+        while (registry.get("chat.auth.bcrypt.queue").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        assertThatThrownBy(() -> service.encode("c"))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        assertThat(registry.get("chat.auth.bcrypt.rejected").functionCounter().count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("hash");
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("hash");
+    }
+
+    @Test
+    void rehashesHashesMadeWithAnotherCost() throws Exception {
+        service = new PasswordHashingService(new BCryptPasswordEncoder(5), new SimpleMeterRegistry(), 5, 1, 4);
+        String oldHash = new BCryptPasswordEncoder(4).encode("secret");
+
+        assertThat(service.needsRehash(oldHash)).isTrue();
+        assertThat(service.needsRehash(service.encode("secret"))).isFalse();
+
+        AtomicReference<String> stored = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        service.rehashInBackground("secret", hash -> {
+            stored.set(hash);
+            done.countDown();
+        });
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(stored.get()).startsWith("$2a$05$");
+        assertThat(service.matches("secret", stored.get())).isTrue();
+    }
+}
@@ -0,0 +1,100 @@
+package wbos.starterchatapp.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import wbos.starterchatapp.dtos.response.AvailabilityResponse;
+import wbos.starterchatapp.repositories.UserIdentity;
+import wbos.starterchatapp.repositories.UserRepository;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserAvailabilityServiceTests {
+
+    private UserRepository userRepository;
+    private UserAvailabilityService service;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        service = new UserAvailabilityService(userRepository, 1_000, 0.01, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void unknownNamesAreAnsweredWithoutTheDatabaseOnceBuilt() {
+        when(userRepository.count()).thenReturn(1L);
+        when(userRepository.findByIdGreaterThanOrderById(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(identity(1L, "Alice", "alice@example.com")));
+        service.rebuild();
+
+        AvailabilityResponse response = service.check("bob", "bob@example.com");
+
+        assertThat(response.getUsernameAvailable()).isTrue();
+        assertThat(response.getEmailAvailable()).isTrue();
+        verify(userRepository, never()).existsByUsername(anyString());
+        verify(userRepository, never()).existsByEmail(anyString());
+    }
+
+    @Test
+    void possibleMatchesAreConfirmedAgainstTheDatabase() {
+        when(userRepository.count()).thenReturn(1L);
+        when(userRepository.findByIdGreaterThanOrderById(anyLong(), any(Limit.class)))
+                .thenReturn(List.of(identity(1L, "Alice", "alice@example.com")));
+        when(userRepository.existsByUsername("alice")).thenReturn(true);
+        service.rebuild();
+
+        assertThat(service.check("alice", null).getUsernameAvailable()).isFalse();
+        assertThat(service.check("alice", null).getEmailAvailable()).isNull();
+        verify(userRepository, never()).existsByEmail(anyString());
+    }
+
+    @Test
+    void usersCreatedHereAreSeenBeforeTheNextRebuild() {
+        when(userRepository.findByIdGreaterThanOrderById(anyLong(), any(Limit.class))).thenReturn(List.of());
+        service.rebuild();
+
+        service.record("carol", "carol@example.com");
+        // MySQL compares case-insensitively; the filter has to flag "Carol" so the database gets asked
+        when(userRepository.existsByUsername("Carol")).thenReturn(true);
+
+        assertThat(service.check("Carol", null).getUsernameAvailable()).isFalse();
+    }
+
+    @Test
+    void fallsBackToTheDatabaseUntilFiltersAreBuilt() {
+        when(userRepository.existsByUsername("bob")).thenReturn(false);
+
+        assertThat(service.check("bob", null).getUsernameAvailable()).isTrue();
+        verify(userRepository).existsByUsername("bob");
+    }
+
+    private static UserIdentity identity(Long id, String username, String email) {
+        return new UserIdentity() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getUsername() {
+                return username;
+            }
+
+            @Override
+            public String getEmail() {
+                return email;
+            }
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package wbos.starterchatapp.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class UserChangePublisherTests {
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+
+    @Test
+    void signUpDoesNotWaitForRedis() throws InterruptedException {
+        CountDownLatch redisAnswers = new CountDownLatch(1);
+        CountDownLatch published = new CountDownLatch(1);
+        when(redisTemplate.convertAndSend(anyString(), anyString())).thenAnswer(inv -> {
+            redisAnswers.await(10, TimeUnit.SECONDS);
+            published.countDown();
+            return 1L;
+        });
+        UserChangePublisher publisher = new UserChangePublisher(redisTemplate, true, "users:invalidate");
+
+        try {
+            long start = System.nanoTime();
+            publisher.userChanged(42L);
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+
+            redisAnswers.countDown();
+            assertThat(published.await(5, TimeUnit.SECONDS)).isTrue();
+            verify(redisTemplate).convertAndSend("users:invalidate", "42");
+        } finally {
+            publisher.stop();
+        }
+    }
+
+    @Test
+    void nothingIsPublishedWhenDisabled() {
+        UserChangePublisher publisher = new UserChangePublisher(redisTemplate, false, "users:invalidate");
+
+        publisher.userChanged(42L);
+        publisher.stop();
+
+        verifyNoInteractions(redisTemplate);
+    }
+}
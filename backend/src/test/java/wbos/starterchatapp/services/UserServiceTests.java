@@ -0,0 +1,88 @@
+package wbos.starterchatapp.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import wbos.starterchatapp.dtos.requests.CreateUserRequest;
+import wbos.starterchatapp.entities.UserEntity;
+import wbos.starterchatapp.repositories.UserRepository;
+import wbos.starterchatapp.utils.JwtUtil;
+
+import java.sql.SQLIntegrityConstraintViolationException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class UserServiceTests {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserChangePublisher userChangePublisher = mock(UserChangePublisher.class);
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        PasswordHashingService passwordHashingService = mock(PasswordHashingService.class);
+        when(passwordHashingService.encode(any())).thenReturn("hash");
+        userService = new UserService(userRepository, passwordHashingService, mock(JwtUtil.class),
+                userChangePublisher, mock(UserAvailabilityService.class));
+    }
+
+    @Test
+    void namedConstraintViolationIsAConflictOnThatField() {
+        rejectSave("Duplicate entry 'alice@example.com' for key 'auth." + UserEntity.EMAIL_CONSTRAINT + "'");
+
+        assertConflict("Email already exists");
+        verify(userRepository, never()).existsByUsername(any());
+        verify(userChangePublisher, never()).userChanged(anyLong());
+    }
+
+    @Test
+    void legacyConstraintNameFallsBackToLookingUpTheColumns() {
+        // Tables created before the constraints were named keep Hibernate's generated names
+        rejectSave("Duplicate entry 'alice' for key 'auth.UK_sb8bbouer5wak8vyiiy4pf2bx'");
+        when(userRepository.existsByUsername("alice")).thenReturn(true);
+
+        assertConflict("Username already exists");
+    }
+
+    @Test
+    void legacyEmailClashIsNamedToo() {
+        rejectSave("Duplicate entry 'alice@example.com' for key 'auth.UK_1j9d9a06i600gd43uu3km82jw'");
+        when(userRepository.existsByEmail("alice@example.com")).thenReturn(true);
+
+        assertConflict("Email already exists");
+    }
+
+    @Test
+    void clashThatCannotBeAttributedIsStillAConflict() {
+        rejectSave("Duplicate entry 'alice' for key 'auth.UK_sb8bbouer5wak8vyiiy4pf2bx'");
+
+        assertConflict("Username or email already exists");
+    }
+
+    private void rejectSave(String mysqlMessage) {
+        when(userRepository.save(any())).thenThrow(new DataIntegrityViolationException("could not execute statement",
+                new SQLIntegrityConstraintViolationException(mysqlMessage, "23000", 1062)));
+    }
+
+    private void assertConflict(String message) {
+        assertThatThrownBy(() -> userService.createUser(request()))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> {
+                    assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+                    assertThat(e.getReason()).isEqualTo(message);
+                });
+    }
+
+    private static CreateUserRequest request() {
+        CreateUserRequest request = new CreateUserRequest();
+        request.setUsername("alice");
+        request.setEmail("alice@example.com");
+        request.setPassword("secret1");
+        return request;
+    }
+}
@@ -0,0 +1,243 @@
+package wbos.starterchatapp.services.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+import redis.embedded.RedisServer;
+import wbos.starterchatapp.StarterChatAppApplication;
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.dtos.response.ReplayResponse;
+import wbos.starterchatapp.enums.MessageType;
+import wbos.starterchatapp.services.messages.ConversationReplayBuffer;
+import wbos.starterchatapp.services.presence.PresenceService;
+import wbos.starterchatapp.utils.JwtUtil;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Boots two backend instances in the same JVM against one embedded Redis and
+ * checks that a session on one node receives what is sent through the other.
+ */
+class RedisClusterRelayIntegrationTests {
+
+    private static RedisServer redisServer;
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startCluster() throws IOException {
+        int redisPort = freePort();
+        redisServer = new RedisServer(redisPort);
+        redisServer.start();
+
+        nodeA = startNode("node-a", redisPort);
+        nodeB = startNode("node-b", redisPort);
+    }
+
+    @AfterAll
+    static void stopCluster() throws IOException {
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @Test
+    void directMessageReachesRecipientOnOtherNode() throws Exception {
+        BlockingQueue<Map<String, Object>> received = new LinkedBlockingQueue<>();
+        StompSession bob = connect(nodeA, 2L, "bob");
+        bob.subscribe("/user/queue/messages", collectInto(received));
+
+        StompSession alice = connect(nodeB, 1L, "alice");
+        ChatMessage message = ChatMessage.builder()
+                .type(MessageType.CHAT)
+                .sender("alice")
+                .recipientId(2L)
+                .content("hello from node b")
+                .build();
+
+        Map<String, Object> delivered = sendUntilReceived(alice, "/app/chat.sendMessage", message, received);
+
+        assertThat(delivered).isNotNull();
+        assertThat(delivered.get("content")).isEqualTo("hello from node b");
+        assertThat(((Number) delivered.get("senderId")).longValue()).isEqualTo(1L);
+    }
+
+    @Test
+    void conversationTopicReachesSubscribersOnOtherNode() throws Exception {
+        BlockingQueue<Map<String, Object>> received = new LinkedBlockingQueue<>();
+        StompSession carol = connect(nodeA, 3L, "carol");
+        carol.subscribe("/topic/conversations/public", collectInto(received));
+
+        StompSession dave = connect(nodeB, 4L, "dave");
+        ChatMessage message = ChatMessage.builder()
+                .type(MessageType.CHAT)
+                .sender("dave")
+                .content("hello everyone")
+                .build();
+
+        Map<String, Object> delivered = sendUntilReceived(dave, "/app/chat.sendMessage", message, received);
+
+        assertThat(delivered).isNotNull();
+        assertThat(delivered.get("content")).isEqualTo("hello everyone");
+        assertThat(delivered.get("sender")).isEqualTo("dave");
+    }
+
+    @Test
+    void resumeOnOneNodeReplaysMessagesSentThroughTheOther() throws Exception {
+        BlockingQueue<Map<String, Object>> received = new LinkedBlockingQueue<>();
+        StompSession frank = connect(nodeA, 7L, "frank");
+        frank.subscribe("/user/queue/messages", collectInto(received));
+
+        StompSession grace = connect(nodeB, 6L, "grace");
+        Map<String, Object> first = sendUntilReceived(grace, "/app/chat.sendMessage", direct(7L, "first"), received);
+        assertThat(first).isNotNull();
+        grace.send("/app/chat.sendMessage", direct(7L, "second"));
+        assertThat(received.poll(5, TimeUnit.SECONDS)).containsEntry("content", "second");
+
+        long seen = ((Number) first.get("sequence")).longValue();
+        ReplayResponse replay = nodeA.getBean(ConversationReplayBuffer.class).replay("dm:6:7", seen);
+
+        assertThat(replay.isComplete()).isTrue();
+        assertThat(replay.getMessages()).extracting(ChatMessage::getContent).containsExactly("second");
+    }
+
+    @Test
+    void presenceIsMergedAcrossNodes() throws Exception {
+        PresenceService presenceA = nodeA.getBean(PresenceService.class);
+        PresenceService presenceB = nodeB.getBean(PresenceService.class);
+        StompSession onA = connect(nodeA, 5L, "erin");
+        StompSession onB = connect(nodeB, 5L, "erin");
+        assertThat(waitFor(() -> presenceA.isOnline(5L) && presenceB.isOnline(5L))).isTrue();
+
+        // The tab on node b still counts after the one on node a closes
+        onA.disconnect();
+        assertThat(waitFor(() -> presenceA.getSessions() == 0)).isTrue();
+        Thread.sleep(2_000);
+        assertThat(presenceA.isOnline(5L)).isTrue();
+
+        onB.disconnect();
+        assertThat(waitFor(() -> !presenceA.isOnline(5L) && !presenceB.isOnline(5L))).isTrue();
+    }
+
+    private static ConfigurableApplicationContext startNode(String nodeId, int redisPort) {
+        // Passed as arguments so they take precedence over application.yml
+        return new SpringApplicationBuilder(StarterChatAppApplication.class)
+                .run(
+                        "--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:" + nodeId + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.data.redis.host=localhost",
+                        "--spring.data.redis.port=" + redisPort,
+                        "--chat.cluster.relay=redis",
+                        "--chat.cluster.node-id=" + nodeId);
+    }
+
+    private static ChatMessage direct(Long recipientId, String content) {
+        return ChatMessage.builder()
+                .type(MessageType.CHAT)
+                .recipientId(recipientId)
+                .content(content)
+                .build();
+    }
+
+    private static StompSession connect(ConfigurableApplicationContext node, Long userId, String username)
+            throws Exception {
+        WebSocketStompClient client = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(new ObjectMapper().findAndRegisterModules());
+        client.setMessageConverter(converter);
+
+        int port = ((WebServerApplicationContext) node).getWebServer().getPort();
+        String token = node.getBean(JwtUtil.class).generateToken(username, userId);
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + token);
+
+        return client.connectAsync("http://localhost:" + port + "/api/v1/chatApp/ws",
+                        new WebSocketHttpHeaders(), connectHeaders, new StompSessionHandlerAdapter() {
+                        })
+                .get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Redis subscriptions are established asynchronously after a STOMP
+     * subscribe, so keep sending until the first copy arrives.
+     */
+    private static Map<String, Object> sendUntilReceived(StompSession session, String destination, Object payload,
+                                                         BlockingQueue<Map<String, Object>> received)
+            throws InterruptedException {
+        for (int attempt = 0; attempt < 20; attempt++) {
+            session.send(destination, payload);
+            Map<String, Object> delivered = received.poll(500, TimeUnit.MILLISECONDS);
+            if (delivered != null) {
+                return delivered;
+            }
+        }
+        return null;
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+
+    private static StompFrameHandler collectInto(BlockingQueue<Map<String, Object>> received) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((Map<String, Object>) payload);
+            }
+        };
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package wbos.starterchatapp.services.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class RedisClusterRelayTests {
+
+    private static final String TOPIC = "/topic/conversations/public";
+    private static final ChannelTopic CHANNEL = new ChannelTopic("chat:topic:" + TOPIC);
+
+    private RedisMessageListenerContainer listenerContainer;
+    private RedisClusterRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        listenerContainer = mock(RedisMessageListenerContainer.class);
+        relay = new RedisClusterRelay(mock(StringRedisTemplate.class), listenerContainer,
+                mock(SimpMessageSendingOperations.class), new ObjectMapper(), "node-a", Duration.ofDays(1));
+    }
+
+    @Test
+    void channelIsSubscribedOnceForAllLocalSubscribers() {
+        relay.handleSessionSubscribe(new SessionSubscribeEvent(this, frame(StompCommand.SUBSCRIBE, "s1", "sub-1")));
+        relay.handleSessionSubscribe(new SessionSubscribeEvent(this, frame(StompCommand.SUBSCRIBE, "s2", "sub-1")));
+        verify(listenerContainer, times(1)).addMessageListener(eq(relay), eq(CHANNEL));
+
+        relay.handleSessionUnsubscribe(new SessionUnsubscribeEvent(this, frame(StompCommand.UNSUBSCRIBE, "s1", "sub-1")));
+        verify(listenerContainer, never()).removeMessageListener(any(), any(ChannelTopic.class));
+
+        relay.handleSessionUnsubscribe(new SessionUnsubscribeEvent(this, frame(StompCommand.UNSUBSCRIBE, "s2", "sub-1")));
+        verify(listenerContainer, times(1)).removeMessageListener(eq(relay), eq(CHANNEL));
+    }
+
+    @Test
+    void resubscribingAfterTheLastSubscriberLeftListensAgain() {
+        relay.handleSessionSubscribe(new SessionSubscribeEvent(this, frame(StompCommand.SUBSCRIBE, "s1", "sub-1")));
+        relay.handleSessionUnsubscribe(new SessionUnsubscribeEvent(this, frame(StompCommand.UNSUBSCRIBE, "s1", "sub-1")));
+        relay.handleSessionSubscribe(new SessionSubscribeEvent(this, frame(StompCommand.SUBSCRIBE, "s1", "sub-2")));
+
+        verify(listenerContainer, times(2)).addMessageListener(eq(relay), eq(CHANNEL));
+        verify(listenerContainer, times(1)).removeMessageListener(eq(relay), eq(CHANNEL));
+    }
+
+    private static Message<byte[]> frame(StompCommand command, String sessionId, String subscriptionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        if (command == StompCommand.SUBSCRIBE) {
+            accessor.setDestination(TOPIC);
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,158 @@
+package wbos.starterchatapp.services.messages;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.dtos.response.ReplayResponse;
+import wbos.starterchatapp.enums.MessageType;
+import wbos.starterchatapp.services.cluster.ClusterRelay;
+import wbos.starterchatapp.services.cluster.NoOpClusterRelay;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ConversationReplayBufferTests {
+
+    private ConversationReplayBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        // Not started: no background eviction
+        buffer = new ConversationReplayBuffer(4, Duration.ofMinutes(30), new NoOpClusterRelay());
+    }
+
+    @Test
+    void sequencesIncreaseByOnePerConversation() {
+        ChatMessage first = send("public", "a");
+        ChatMessage second = send("public", "b");
+        ChatMessage other = send("dm:1:2", "c");
+
+        assertThat(second.getSequence()).isEqualTo(first.getSequence() + 1);
+        assertThat(other.getSequence()).isNotNull();
+        assertThat(first.getSequence()).isLessThan(1L << 53);
+    }
+
+    @Test
+    void replaysTheGapFromMemory() {
+        ChatMessage seen = send("public", "a");
+        send("public", "b");
+        send("public", "c");
+
+        ReplayResponse replay = buffer.replay("public", seen.getSequence());
+
+        assertThat(replay.isComplete()).isTrue();
+        assertThat(replay.getMessages()).extracting(ChatMessage::getContent).containsExactly("b", "c");
+        assertThat(buffer.replay("public", replay.getLastSequence()).getMessages()).isEmpty();
+    }
+
+    @Test
+    void gapOlderThanTheBufferFallsBackToHistory() {
+        ChatMessage seen = send("public", "a");
+        for (int i = 0; i < 5; i++) {
+            send("public", "m" + i);
+        }
+
+        assertThat(buffer.replay("public", seen.getSequence()).isComplete()).isFalse();
+        // The last four are still buffered
+        assertThat(buffer.replay("public", seen.getSequence() + 1).getMessages()).hasSize(4);
+    }
+
+    @Test
+    void sequencesFromAnEarlierCounterFallBackToHistory() throws InterruptedException {
+        ChatMessage seen = send("public", "a");
+        // A restart some time later seeds its counter above everything issued before
+        Thread.sleep(2);
+        ConversationReplayBuffer restarted = new ConversationReplayBuffer(4, Duration.ofMinutes(30), new NoOpClusterRelay());
+        ChatMessage next = ChatMessage.builder().content("b").build();
+        restarted.stamp("public", next);
+
+        assertThat(next.getSequence()).isGreaterThan(seen.getSequence());
+        assertThat(restarted.replay("public", seen.getSequence()).isComplete()).isFalse();
+        assertThat(restarted.replay("unknown", 1L).isComplete()).isFalse();
+    }
+
+    @Test
+    void idleConversationsAreEvicted() {
+        buffer = new ConversationReplayBuffer(4, Duration.ZERO, new NoOpClusterRelay());
+        ChatMessage seen = send("public", "a");
+
+        buffer.evictIdle();
+
+        assertThat(buffer.replay("public", seen.getSequence()).isComplete()).isFalse();
+    }
+
+    @Test
+    void clusteredNodesReplayMessagesSentThroughOtherNodes() {
+        AtomicLong counter = new AtomicLong(1000);
+        ConversationReplayBuffer clustered = new ConversationReplayBuffer(4, Duration.ofMinutes(30), sharedCounter(counter));
+        ChatMessage seen = chat("a");
+        clustered.stamp("dm:1:2", seen);
+        // Issued on another node and relayed here, the direct message once per participant
+        ChatMessage relayed = chat("b");
+        relayed.setSequence(counter.incrementAndGet());
+        clustered.received(relayed);
+        clustered.received(relayed);
+        ChatMessage local = chat("c");
+        clustered.stamp("dm:1:2", local);
+
+        ReplayResponse replay = clustered.replay("dm:1:2", seen.getSequence());
+
+        assertThat(seen.getSequence()).isEqualTo(1001);
+        assertThat(replay.isComplete()).isTrue();
+        assertThat(replay.getMessages()).extracting(ChatMessage::getContent).containsExactly("b", "c");
+        assertThat(replay.getLastSequence()).isEqualTo(1003);
+    }
+
+    @Test
+    void clusteredReplayMissingAMessageFallsBackToHistory() {
+        AtomicLong counter = new AtomicLong(1000);
+        ConversationReplayBuffer clustered = new ConversationReplayBuffer(4, Duration.ofMinutes(30), sharedCounter(counter));
+        ChatMessage seen = chat("a");
+        clustered.stamp("dm:1:2", seen);
+        // Another node issued a sequence whose message never reached this one
+        counter.incrementAndGet();
+
+        ReplayResponse replay = clustered.replay("dm:1:2", seen.getSequence());
+
+        assertThat(replay.isComplete()).isFalse();
+        assertThat(replay.getLastSequence()).isEqualTo(1002);
+    }
+
+    @Test
+    void unreachableCounterLeavesTheMessageUnsequenced() {
+        ClusterRelay relay = mock(ClusterRelay.class);
+        when(relay.nextSequence(anyString(), anyLong())).thenThrow(new RedisConnectionFailureException("down"));
+        when(relay.lastSequence(anyString())).thenThrow(new RedisConnectionFailureException("down"));
+        ConversationReplayBuffer clustered = new ConversationReplayBuffer(4, Duration.ofMinutes(30), relay);
+        ChatMessage message = chat("a");
+
+        clustered.stamp("dm:1:2", message);
+
+        assertThat(message.getSequence()).isNull();
+        assertThat(clustered.replay("dm:1:2", 1L).isComplete()).isFalse();
+    }
+
+    private static ClusterRelay sharedCounter(AtomicLong counter) {
+        ClusterRelay relay = mock(ClusterRelay.class);
+        when(relay.nextSequence(anyString(), anyLong())).thenAnswer(inv -> counter.incrementAndGet());
+        when(relay.lastSequence(anyString())).thenAnswer(inv -> counter.get());
+        return relay;
+    }
+
+    private static ChatMessage chat(String content) {
+        return ChatMessage.builder().type(MessageType.CHAT).senderId(1L).recipientId(2L).content(content).build();
+    }
+
+    private ChatMessage send(String conversationId, String content) {
+        ChatMessage message = ChatMessage.builder().content(content).build();
+        buffer.stamp(conversationId, message);
+        return message;
+    }
+}
@@ -0,0 +1,133 @@
+package wbos.starterchatapp.services.messages;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.dtos.response.MessageHistoryResponse;
+import wbos.starterchatapp.dtos.response.MessageResponse;
+import wbos.starterchatapp.enums.MessageType;
+import wbos.starterchatapp.repositories.MessageRepository;
+import wbos.starterchatapp.services.presence.PresenceService;
+import wbos.starterchatapp.utils.MessageCursor;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MessageServiceTests {
+
+    private final MessageWriteBehindService writeBehindService = mock(MessageWriteBehindService.class);
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final ConversationReplayBuffer replayBuffer = mock(ConversationReplayBuffer.class);
+    private final PresenceService presenceService = mock(PresenceService.class);
+    private final MessageService messageService =
+            new MessageService(writeBehindService, messageRepository, replayBuffer, presenceService);
+
+    @Test
+    void acceptedMessageIsStampedForReplay() {
+        ChatMessage sent = messageService.send(chat(1L, 2L));
+
+        assertThat(sent.getTimestamp()).isNotNull();
+        verify(writeBehindService).enqueue(any());
+        verify(replayBuffer).stamp("dm:1:2", sent);
+        verify(presenceService).met(1L, 2L);
+    }
+
+    @Test
+    void refusedMessageNeverReachesTheReplayBuffer() {
+        doThrow(new MessageQueueFullException("full")).when(writeBehindService).enqueue(any());
+
+        assertThatThrownBy(() -> messageService.send(chat(1L, 2L))).isInstanceOf(MessageQueueFullException.class);
+
+        verifyNoInteractions(replayBuffer);
+    }
+
+    @Test
+    void extraRowMeansAnotherPageAndYieldsACursorToTheOldestShown() {
+        // Newest first, as the repository returns them: ids 10 down to 7 for a page of 3
+        when(messageRepository.findPageBefore(eq("dm:1:2"), eq(Long.MAX_VALUE), eq(Limit.of(4))))
+                .thenReturn(rows(10, 7));
+
+        MessageHistoryResponse page = messageService.history(1L, 2L, null, 3);
+
+        assertThat(page.getMessages()).extracting(MessageResponse::getId).containsExactly(8L, 9L, 10L);
+        assertThat(page.isHasMore()).isTrue();
+        assertThat(MessageCursor.decode(page.getBefore())).isEqualTo(8L);
+        assertThat(MessageService.etag(page)).isEqualTo("\"8-10-3+\"");
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        String cursor = MessageCursor.encode(8L);
+        when(messageRepository.findPageBefore(eq("dm:1:2"), eq(8L), eq(Limit.of(4)))).thenReturn(rows(7, 6));
+
+        MessageHistoryResponse page = messageService.history(2L, 1L, cursor, 3);
+
+        assertThat(page.getMessages()).extracting(MessageResponse::getId).containsExactly(6L, 7L);
+        assertThat(page.isHasMore()).isFalse();
+        assertThat(page.getBefore()).isNull();
+        assertThat(MessageService.etag(page)).isEqualTo("\"6-7-2\"");
+    }
+
+    @Test
+    void limitIsClampedAndDefaulted() {
+        when(messageRepository.findPageBefore(any(), any(), any())).thenReturn(new ArrayList<>());
+
+        messageService.history(1L, null, null, 1000);
+        messageService.history(1L, null, null, 0);
+        messageService.history(1L, null, null, null);
+
+        verify(messageRepository).findPageBefore("public", Long.MAX_VALUE, Limit.of(MessageService.MAX_PAGE_SIZE + 1));
+        verify(messageRepository).findPageBefore("public", Long.MAX_VALUE, Limit.of(2));
+        verify(messageRepository).findPageBefore("public", Long.MAX_VALUE, Limit.of(MessageService.DEFAULT_PAGE_SIZE + 1));
+    }
+
+    @Test
+    void emptyPageHasAStableEtag() {
+        when(messageRepository.findPageBefore(any(), any(), any())).thenReturn(new ArrayList<>());
+
+        MessageHistoryResponse page = messageService.history(1L, 2L, null, null);
+
+        assertThat(page.getMessages()).isEmpty();
+        assertThat(MessageService.etag(page)).isEqualTo("\"empty\"");
+    }
+
+    @Test
+    void malformedCursorIsABadRequest() {
+        String notBase64 = "%%%";
+        String wrongPrefix = Base64.getUrlEncoder().encodeToString("x:5".getBytes());
+        String notANumber = Base64.getUrlEncoder().encodeToString("m:abc".getBytes());
+
+        for (String cursor : List.of(notBase64, wrongPrefix, notANumber)) {
+            assertThatThrownBy(() -> messageService.history(1L, 2L, cursor, null))
+                    .isInstanceOfSatisfying(ResponseStatusException.class,
+                            e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        }
+        verifyNoInteractions(messageRepository);
+    }
+
+    private static List<MessageResponse> rows(long newest, long oldest) {
+        List<MessageResponse> rows = new ArrayList<>();
+        LongStream.rangeClosed(oldest, newest).map(id -> newest + oldest - id)
+                .forEach(id -> rows.add(MessageResponse.builder().id(id).content("m" + id).build()));
+        return rows;
+    }
+
+    private static ChatMessage chat(Long senderId, Long recipientId) {
+        return ChatMessage.builder()
+                .type(MessageType.CHAT)
+                .senderId(senderId)
+                .recipientId(recipientId)
+                .content("hi")
+                .build();
+    }
+}
@@ -0,0 +1,200 @@
+package wbos.starterchatapp.services.messages;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.dao.DataAccessResourceFailureException;
+import wbos.starterchatapp.entities.MessageEntity;
+import wbos.starterchatapp.enums.MessageType;
+import wbos.starterchatapp.enums.OverflowPolicy;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class MessageWriteBehindServiceTests {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private MessageWriteBehindService service;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        service.stop();
+    }
+
+    @Test
+    void burstIsFlushedAsMultiRowInserts() throws InterruptedException {
+        service = new MessageWriteBehindService(jdbcTemplate, 1000, 100, 50, OverflowPolicy.REJECT, 20, 1, 10);
+        service.start();
+
+        for (int i = 0; i < 250; i++) {
+            service.enqueue(message(i));
+        }
+        service.stop();
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate, atMost(5)).update(sql.capture(), any(Object[].class));
+        assertThat(sql.getAllValues()).allMatch(s -> s.startsWith("INSERT INTO messages"));
+        assertThat(count("persisted")).isEqualTo(250);
+        assertThat(meters().get("chat.messages.write-behind.queue").gauge().value()).isZero();
+    }
+
+    @Test
+    void rejectPolicySurfacesOverflow() {
+        service = new MessageWriteBehindService(jdbcTemplate, 1, 10, 1000, OverflowPolicy.REJECT, 20, 1, 10);
+
+        service.enqueue(message(1));
+
+        assertThatThrownBy(() -> service.enqueue(message(2))).isInstanceOf(MessageQueueFullException.class);
+        assertThat(count("overflowed")).isEqualTo(1);
+    }
+
+    @Test
+    void callerRunsWaitsForRoomAndKeepsInsertOrder() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+            flushing.countDown();
+            release.await();
+            return 1;
+        });
+        service = new MessageWriteBehindService(jdbcTemplate, 1, 10, 1, OverflowPolicy.CALLER_RUNS, 5000, 1, 10);
+        service.start();
+
+        service.enqueue(message(1));
+        assertThat(flushing.await(5, TimeUnit.SECONDS)).isTrue();
+        service.enqueue(message(2));
+
+        // The queue is full and the flusher is stuck on message 1, so message 3 has to wait
+        Thread sender = Thread.ofPlatform().start(() -> service.enqueue(message(3)));
+        sender.join(100);
+        assertThat(sender.isAlive()).isTrue();
+        verify(jdbcTemplate, times(1)).update(anyString(), any(Object[].class));
+
+        release.countDown();
+        sender.join(5000);
+        assertThat(sender.isAlive()).isFalse();
+        service.stop();
+
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, atLeast(2)).update(anyString(), args.capture());
+        assertThat(args.getAllValues().stream().flatMap(Arrays::stream).filter(String.class::isInstance)
+                .map(String.class::cast).filter(value -> value.startsWith("message ")))
+                .containsExactly("message 1", "message 2", "message 3");
+        assertThat(count("overflowed")).isEqualTo(1);
+        assertThat(count("accepted")).isEqualTo(3);
+    }
+
+    @Test
+    void failedBatchIsHeldAndPersistedOnceTheDatabaseRecovers() throws InterruptedException {
+        when(jdbcTemplate.update(anyString(), any(Object[].class)))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(1);
+        service = new MessageWriteBehindService(jdbcTemplate, 100, 10, 10, OverflowPolicy.REJECT, 20, 1, 20);
+        service.start();
+
+        service.enqueue(message(1));
+        for (int i = 0; i < 100 && count("persisted") == 0; i++) {
+            Thread.sleep(20);
+        }
+
+        assertThat(count("persisted")).isEqualTo(1);
+        assertThat(count("failed.attempts")).isEqualTo(4);
+        assertThat(count("dead.lettered")).isZero();
+    }
+
+    @Test
+    void messagesThatCannotBeWrittenAtShutdownAreDeadLettered() throws InterruptedException {
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenThrow(new DataAccessResourceFailureException("down"));
+        service = new MessageWriteBehindService(jdbcTemplate, 100, 10, 1000, OverflowPolicy.REJECT, 20, 1, 10);
+
+        service.enqueue(message(1));
+        service.enqueue(message(2));
+        service.stop();
+
+        assertThat(count("dead.lettered")).isEqualTo(2);
+        assertThat(count("persisted")).isZero();
+    }
+
+    @Test
+    void callerRunsRefusesWhenNoRoomFreesUpInTime() {
+        service = new MessageWriteBehindService(jdbcTemplate, 1, 10, 1000, OverflowPolicy.CALLER_RUNS, 20, 1, 10);
+
+        service.enqueue(message(1));
+
+        assertThatThrownBy(() -> service.enqueue(message(2))).isInstanceOf(MessageQueueFullException.class);
+        assertThat(count("accepted")).isEqualTo(1);
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void conversationHasPendingWritesUntilItsMessagesAreWritten() throws InterruptedException {
+        when(jdbcTemplate.update(anyString(), any(Object[].class)))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(1);
+        service = new MessageWriteBehindService(jdbcTemplate, 100, 10, 10, OverflowPolicy.REJECT, 20, 1, 50);
+        assertThat(service.hasPendingWrites("dm:1:2")).isFalse();
+
+        service.enqueue(message(1));
+        service.enqueue(message(2));
+        assertThat(service.hasPendingWrites("dm:1:2")).isTrue();
+        assertThat(service.hasPendingWrites("dm:1:3")).isFalse();
+
+        // The first batch fails and is held, so the conversation stays pending until the retry succeeds
+        service.start();
+        for (int i = 0; i < 100 && count("persisted") < 2; i++) {
+            Thread.sleep(20);
+        }
+        assertThat(count("persisted")).isEqualTo(2);
+        assertThat(service.hasPendingWrites("dm:1:2")).isFalse();
+    }
+
+    @Test
+    void refusedMessageIsNotLeftPending() {
+        service = new MessageWriteBehindService(jdbcTemplate, 1, 10, 1000, OverflowPolicy.REJECT, 20, 1, 10);
+        MessageEntity other = message(2);
+        other.setConversationId("dm:1:3");
+
+        service.enqueue(message(1));
+        assertThatThrownBy(() -> service.enqueue(other)).isInstanceOf(MessageQueueFullException.class);
+
+        assertThat(service.hasPendingWrites("dm:1:2")).isTrue();
+        assertThat(service.hasPendingWrites("dm:1:3")).isFalse();
+    }
+
+    private double count(String name) {
+        return meters().get("chat.messages.write-behind." + name).functionCounter().count();
+    }
+
+    private SimpleMeterRegistry meters() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        service.bindTo(registry);
+        return registry;
+    }
+
+    private static MessageEntity message(int i) {
+        MessageEntity entity = new MessageEntity();
+        entity.setConversationId("dm:1:2");
+        entity.setSenderId(1L);
+        entity.setRecipientId(2L);
+        entity.setSenderUsername("alice");
+        entity.setContent("message " + i);
+        entity.setType(MessageType.CHAT);
+        entity.setCreatedAt(LocalDateTime.now());
+        return entity;
+    }
+}
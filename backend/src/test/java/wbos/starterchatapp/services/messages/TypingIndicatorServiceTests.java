@@ -0,0 +1,85 @@
+package wbos.starterchatapp.services.messages;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import wbos.starterchatapp.dtos.TypingUpdate;
+import wbos.starterchatapp.dtos.TypingUser;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class TypingIndicatorServiceTests {
+
+    private MessageRouter messageRouter;
+    private TypingIndicatorService typing;
+
+    @BeforeEach
+    void setUp() {
+        messageRouter = mock(MessageRouter.class);
+        // Not started: tests drive tick() themselves
+        typing = new TypingIndicatorService(messageRouter, 250, 60_000);
+    }
+
+    @Test
+    void keystrokesWithinATickBecomeOneUpdate() {
+        for (int i = 0; i < 50; i++) {
+            typing.typing(1L, "alice", 2L);
+        }
+        typing.typing(2L, "bob", 1L);
+
+        List<TypingUpdate> updates = typing.tick();
+
+        assertThat(updates).hasSize(1);
+        assertThat(updates.getFirst().getConversationId()).isEqualTo("dm:1:2");
+        assertThat(updates.getFirst().getTyping()).extracting(TypingUser::getUserId).containsExactly(1L, 2L);
+        verify(messageRouter, times(1)).routeTyping(updates.getFirst());
+    }
+
+    @Test
+    void continuedTypingSendsNothingNew() {
+        typing.typing(1L, "alice", null);
+        typing.tick();
+
+        typing.typing(1L, "alice", null);
+
+        assertThat(typing.tick()).isEmpty();
+    }
+
+    @Test
+    void stoppingSendsAnEmptyUpdate() {
+        typing.typing(1L, "alice", 2L);
+        typing.tick();
+
+        typing.stoppedTyping(1L, 2L);
+        List<TypingUpdate> updates = typing.tick();
+
+        assertThat(updates).singleElement().satisfies(update -> {
+            assertThat(update.getTyping()).isEmpty();
+            assertThat(update.getParticipants()).containsExactly(1L, 2L);
+        });
+        assertThat(typing.tick()).isEmpty();
+    }
+
+    @Test
+    void startAndStopWithinATickSendsNothing() {
+        typing.typing(1L, "alice", 2L);
+        typing.stoppedTyping(1L, 2L);
+
+        assertThat(typing.tick()).isEmpty();
+    }
+
+    @Test
+    void idleTypistsLapse() throws InterruptedException {
+        typing = new TypingIndicatorService(messageRouter, 250, 20);
+        typing.typing(1L, "alice", null);
+        typing.tick();
+
+        Thread.sleep(50);
+
+        assertThat(typing.tick()).singleElement().satisfies(update -> assertThat(update.getTyping()).isEmpty());
+    }
+}
@@ -0,0 +1,178 @@
+package wbos.starterchatapp.services.presence;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import wbos.starterchatapp.dtos.NodePresence;
+import wbos.starterchatapp.dtos.PresenceDiff;
+import wbos.starterchatapp.services.cluster.ClusterRelay;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+class PresenceServiceTests {
+
+    private SimpMessageSendingOperations messageSender;
+    private ClusterRelay clusterRelay;
+    private ConversationPartners partners;
+    private PresenceService presence;
+
+    @BeforeEach
+    void setUp() {
+        messageSender = mock(SimpMessageSendingOperations.class);
+        // Not started: tests drive tick() themselves. No heartbeats, so nothing expires on its own
+        clusterRelay = mock(ClusterRelay.class);
+        partners = mock(ConversationPartners.class);
+        when(partners.of(anyLong())).thenReturn(new HashSet<>());
+        presence = new PresenceService(messageSender, clusterRelay, partners, 4, 1000, 0, 3, 60_000);
+    }
+
+    @Test
+    void userStaysOnlineUntilTheLastTabCloses() {
+        presence.connected("tab-1", 7L);
+        presence.connected("tab-2", 7L);
+        presence.tick();
+
+        presence.disconnected("tab-1");
+        assertThat(presence.isOnline(7L)).isTrue();
+        assertThat(presence.tick()).isNull();
+
+        presence.disconnected("tab-2");
+        assertThat(presence.isOnline(7L)).isFalse();
+        assertThat(presence.tick().getOffline()).containsExactly(7L);
+    }
+
+    @Test
+    void changesWithinOneTickAreCoalescedIntoOneDiff() {
+        for (long userId = 1; userId <= 100; userId++) {
+            presence.connected("s" + userId, userId);
+        }
+
+        PresenceDiff diff = presence.tick();
+
+        assertThat(diff.getOnline()).hasSize(100);
+        assertThat(diff.getOffline()).isEmpty();
+        // Nobody here has these users as partners
+        verify(messageSender, never()).convertAndSendToUser(any(), any(), any());
+    }
+
+    @Test
+    void eachUserOnlyHearsAboutTheirPartners() {
+        when(partners.of(1L)).thenReturn(new HashSet<>(Set.of(2L)));
+        when(partners.of(3L)).thenReturn(new HashSet<>(Set.of(2L, 4L)));
+        presence.connected("s1", 1L);
+        presence.connected("s3", 3L);
+        presence.tick();
+        reset(messageSender);
+
+        presence.connected("s2", 2L);
+        presence.connected("s4", 4L);
+        presence.connected("s5", 5L);
+        presence.tick();
+
+        verify(messageSender).convertAndSendToUser(eq("1"), eq(PresenceService.PRESENCE_QUEUE),
+                argThat((PresenceDiff diff) -> diff.getOnline().equals(List.of(2L))));
+        verify(messageSender).convertAndSendToUser(eq("3"), eq(PresenceService.PRESENCE_QUEUE),
+                argThat((PresenceDiff diff) -> Set.copyOf(diff.getOnline()).equals(Set.of(2L, 4L))));
+        verifyNoMoreInteractions(messageSender);
+    }
+
+    @Test
+    void directMessageMakesUsersPartnersAndLeavingStopsDiffs() {
+        presence.connected("s1", 1L);
+        presence.met(1L, 9L);
+        presence.connected("s9", 9L);
+        presence.tick();
+        verify(messageSender).convertAndSendToUser(eq("1"), eq(PresenceService.PRESENCE_QUEUE), any(Object.class));
+
+        presence.disconnected("s1");
+        presence.disconnected("s9");
+        reset(messageSender);
+        presence.tick();
+
+        verify(messageSender, never()).convertAndSendToUser(any(), any(), any());
+    }
+
+    @Test
+    void reconnectWithinATickPublishesNothing() {
+        presence.connected("old", 7L);
+        presence.tick();
+
+        presence.disconnected("old");
+        presence.connected("new", 7L);
+
+        assertThat(presence.tick()).isNull();
+        assertThat(presence.online(List.of(7L, 8L))).containsExactly(7L);
+    }
+
+    @Test
+    void silentSessionsExpire() throws InterruptedException {
+        presence = new PresenceService(messageSender, clusterRelay, partners, 4, 1000, 10, 3, 60_000);
+        presence.connected("quiet", 7L);
+        presence.connected("chatty", 8L);
+        presence.tick();
+
+        Thread.sleep(50);
+        presence.touch("chatty");
+        PresenceDiff diff = presence.tick();
+
+        assertThat(diff.getOffline()).containsExactly(7L);
+        assertThat(presence.isOnline(8L)).isTrue();
+        assertThat(presence.getExpiredSessions()).isEqualTo(1);
+    }
+
+    @Test
+    void userWithASessionOnAnotherNodeStaysOnline() {
+        presence.connected("tab-1", 7L);
+        presence.tick();
+        presence.received("node-b", NodePresence.builder().online(List.of(7L)).offline(List.of()).build());
+        assertThat(presence.tick()).isNull();
+
+        presence.disconnected("tab-1");
+        assertThat(presence.tick()).isNull();
+        assertThat(presence.isOnline(7L)).isTrue();
+
+        presence.received("node-b", NodePresence.builder().online(List.of()).offline(List.of(7L)).build());
+        assertThat(presence.tick().getOffline()).containsExactly(7L);
+        assertThat(presence.isOnline(7L)).isFalse();
+    }
+
+    @Test
+    void ownChangesAreRelayedAndMergedDiffsStayLocal() {
+        presence.connected("tab-1", 7L);
+        presence.tick();
+        verify(clusterRelay).publishPresence(NodePresence.builder().online(List.of(7L)).offline(List.of()).snapshot(true).build());
+
+        presence.disconnected("tab-1");
+        presence.tick();
+        verify(clusterRelay).publishPresence(NodePresence.builder().online(List.of()).offline(List.of(7L)).build());
+        verify(clusterRelay, never()).publishToTopic(any(), any());
+    }
+
+    @Test
+    void snapshotReplacesANodesSetAndSilentNodesAreDropped() throws InterruptedException {
+        presence = new PresenceService(messageSender, clusterRelay, partners, 4, 1000, 0, 3, 10);
+        presence.received("node-b", NodePresence.builder().online(List.of(1L, 2L)).snapshot(true).build());
+        assertThat(presence.tick().getOnline()).containsExactlyInAnyOrder(1L, 2L);
+
+        presence.received("node-b", NodePresence.builder().online(List.of(2L)).snapshot(true).build());
+        assertThat(presence.tick().getOffline()).containsExactly(1L);
+
+        Thread.sleep(50);
+        assertThat(presence.tick().getOffline()).containsExactly(2L);
+    }
+}
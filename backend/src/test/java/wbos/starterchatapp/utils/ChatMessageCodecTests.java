@@ -0,0 +1,62 @@
+package wbos.starterchatapp.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.enums.MessageType;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChatMessageCodecTests {
+
+    @Test
+    void roundTripsEveryField() {
+        ChatMessage message = ChatMessage.builder()
+                .type(MessageType.CHAT)
+                .senderId(42L)
+                .recipientId(1_000_000L)
+                .sender("alice")
+                .content("héllo 👋")
+                .timestamp(LocalDateTime.of(2025, 3, 1, 12, 30, 15, 123_000_000))
+                .build();
+
+        assertThat(ChatMessageCodec.decode(ChatMessageCodec.encode(message))).isEqualTo(message);
+    }
+
+    @Test
+    void absentFieldsStayAbsent() {
+        ChatMessage message = ChatMessage.builder().type(MessageType.JOIN).sender("bob").build();
+
+        assertThat(ChatMessageCodec.decode(ChatMessageCodec.encode(message))).isEqualTo(message);
+    }
+
+    @Test
+    void isSmallerThanJson() throws Exception {
+        ObjectMapper json = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        ChatMessage message = ChatMessage.builder()
+                .type(MessageType.CHAT)
+                .senderId(42L)
+                .recipientId(7L)
+                .sender("alice")
+                .content("hi")
+                .timestamp(LocalDateTime.now())
+                .build();
+
+        assertThat(ChatMessageCodec.encode(message).length).isLessThan(json.writeValueAsBytes(message).length / 3);
+    }
+
+    @Test
+    void rejectsTruncatedInput() {
+        byte[] bytes = ChatMessageCodec.encode(ChatMessage.builder().content("hello").build());
+
+        assertThatThrownBy(() -> ChatMessageCodec.decode(Arrays.copyOf(bytes, bytes.length - 2)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
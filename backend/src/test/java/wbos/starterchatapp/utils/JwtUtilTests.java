@@ -0,0 +1,41 @@
+package wbos.starterchatapp.utils;
+
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import wbos.starterchatapp.dtos.VerifiedToken;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtUtilTests {
+
+    private static final String SECRET = "a388fa4107c45ade94f89acb81515a1ff6733ca840858e0cea2a884f3ff664e690fff922";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final JwtUtil jwtUtil = new JwtUtil(SECRET, 60_000L, registry);
+
+    @Test
+    void issuedTokenVerifies() {
+        VerifiedToken verified = jwtUtil.verify(jwtUtil.generateToken("alice", 42L));
+
+        assertThat(verified.username()).isEqualTo("alice");
+        assertThat(verified.userId()).isEqualTo(42L);
+        assertThat(registry.get("chat.jwt.verify").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsTokenWithoutExpiration() {
+        String token = Jwts.builder()
+                .claim("userId", 42L)
+                .subject("alice")
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+
+        assertThatThrownBy(() -> jwtUtil.verify(token)).isInstanceOf(JwtException.class);
+    }
+}
@@ -0,0 +1,58 @@
+#!/usr/bin/env python3
+"""Compares two JMH JSON reports written by run.sh.
+
+Prints every benchmark present in both with its change in score, and exits
+with status 1 when any got slower than the threshold allows, so it can gate
+a release build:
+
+    ./compare.py results/v1.3.0.json results/v1.4.0.json --threshold 10
+"""
+import argparse
+import json
+import sys
+
+
+def load(path):
+    with open(path) as f:
+        runs = json.load(f)
+    scores = {}
+    for run in runs:
+        params = ",".join(f"{k}={v}" for k, v in sorted(run.get("params", {}).items()))
+        name = run["benchmark"].removeprefix("wbos.benchmarks.") + (f" [{params}]" if params else "")
+        metric = run["primaryMetric"]
+        # scoreError is the string "NaN" when a run had a single iteration
+        scores[name] = (run["mode"], float(metric["score"]), float(metric["scoreError"]), metric["scoreUnit"])
+    return scores
+
+
+def main():
+    parser = argparse.ArgumentParser()
+    parser.add_argument("baseline")
+    parser.add_argument("candidate")
+    parser.add_argument("--threshold", type=float, default=10.0,
+                        help="largest slowdown in percent that still passes (default 10)")
+    args = parser.parse_args()
+
+    baseline, candidate = load(args.baseline), load(args.candidate)
+    regressions = []
+    for name in sorted(baseline.keys() & candidate.keys()):
+        mode, before, _, unit = baseline[name]
+        _, after, error, _ = candidate[name]
+        change = (after - before) / before * 100
+        # Lower is better for time per op, higher for ops per time
+        slowdown = change if mode in ("avgt", "sample", "ss") else -change
+        flag = "REGRESSION" if slowdown > args.threshold else ""
+        print(f"{name:70} {before:12.3f} -> {after:12.3f} {unit:8} (±{error:.3f}) {change:+7.1f}% {flag}")
+        if flag:
+            regressions.append(name)
+
+    for name in sorted(baseline.keys() - candidate.keys()):
+        print(f"{name:70} missing from {args.candidate}")
+
+    if regressions:
+        print(f"\n{len(regressions)} benchmark(s) slower by more than {args.threshold}%", file=sys.stderr)
+        sys.exit(1)
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,16 @@
+#!/usr/bin/env bash
+# Builds the JMH jar and runs every benchmark (or those matching the given
+# regex), writing JMH's JSON report to results/<label>.json. The label
+# defaults to `git describe`, so a release tag names its own baseline.
+#
+#   ./run.sh                      # everything, labelled with git describe
+#   LABEL=v1.4.0 ./run.sh         # explicit label
+#   ./run.sh Jwt -p strength=12   # extra arguments go straight to JMH
+set -euo pipefail
+
+cd "$(dirname "$0")"
+LABEL=${LABEL:-$(git describe --tags --always --dirty)}
+mkdir -p results
+
+mvn -B -q package
+java -jar target/benchmarks.jar -rf json -rff "results/$LABEL.json" "$@" | tee "results/$LABEL.txt"
@@ -0,0 +1,70 @@
+package wbos.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import wbos.middleware.config.serializer.CachedUserRedisSerializer;
+import wbos.middleware.config.serializer.RedisCacheCodecs;
+import wbos.middleware.dto.user.CachedUser;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared user cache values in both codecs RedisConfig can select with
+ * cache.users.codec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CachedUserSerializerBenchmark {
+
+    @Param({"binary", "json"})
+    public String codec;
+
+    private RedisSerializer<Object> serializer;
+    private CachedUser user;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        // Same registry RedisConfig builds the user cache template from
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("benchmark", Map.of("cache.users.codec", codec)));
+        serializer = new RedisCacheCodecs(environment)
+                .binary("users", CachedUserRedisSerializer::new)
+                .serializer("users");
+        user = CachedUser.builder()
+                .id(42L)
+                .username("alice")
+                .email("alice@example.com")
+                .firstName("Alice")
+                .lastName("Liddell")
+                .build();
+        bytes = serializer.serialize(user);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(user);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(bytes);
+    }
+}
@@ -0,0 +1,76 @@
+package wbos.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import wbos.starterchatapp.dtos.ChatMessage;
+import wbos.starterchatapp.enums.MessageType;
+import wbos.starterchatapp.utils.ChatMessageCodec;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A typical direct message through the default JSON format and through the
+ * binary format sessions can negotiate with "wire-format: binary".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ChatMessageSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private ChatMessage message;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Configured the way Spring Boot configures the application's ObjectMapper
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        message = ChatMessage.builder()
+                .type(MessageType.CHAT)
+                .content("Are we still on for the release review at three? I can move it if needed.")
+                .sender("alice")
+                .senderId(42L)
+                .recipientId(7L)
+                .timestamp(LocalDateTime.of(2025, 1, 15, 14, 30, 5))
+                .sequence(1_736_951_405_000L << 11)
+                .build();
+        json = objectMapper.writeValueAsBytes(message);
+        binary = ChatMessageCodec.encode(message);
+    }
+
+    @Benchmark
+    public byte[] jsonSerialize() throws IOException {
+        return objectMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public ChatMessage jsonDeserialize() throws IOException {
+        return objectMapper.readValue(json, ChatMessage.class);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return ChatMessageCodec.encode(message);
+    }
+
+    @Benchmark
+    public ChatMessage binaryDecode() {
+        return ChatMessageCodec.decode(binary);
+    }
+}
@@ -0,0 +1,164 @@
+package wbos.benchmarks;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+import wbos.middleware.config.WebClientConfig;
+import wbos.middleware.dto.user.CachedUser;
+import wbos.middleware.service.GatewayService;
+import wbos.middleware.service.cache.HistoryResponseCache;
+import wbos.middleware.service.ratelimit.GatewayRateLimiter;
+import wbos.middleware.service.upstream.UpstreamCircuitBreaker;
+import wbos.middleware.service.upstream.UpstreamPoolMetrics;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One proxied request through GatewayService.forwardToBackend, against a
+ * stub backend on loopback that answers with canned bodies. Measures the
+ * gateway's own cost: header copying, the pooled WebClient, the circuit
+ * breaker and streaming the body back, without a real backend's latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GatewayProxyBenchmark {
+
+    private static final String MESSAGES_PATH = "/api/v1/chatApp/messages";
+
+    private DisposableServer stubBackend;
+    private ConnectionProvider connectionProvider;
+    private GatewayService gatewayService;
+    private HttpHeaders requestHeaders;
+    private byte[] postBody;
+    private CachedUser user;
+
+    @Setup
+    public void setUp() {
+        byte[] created = "{\"id\":1,\"conversationId\":\"dm:7:42\",\"content\":\"hi\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] page = historyPage(50);
+        stubBackend = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .handle((request, response) -> response
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .sendByteArray(request.receive().asByteArray().then(Mono.just(
+                                request.method().name().equals("POST") ? created : page))))
+                .bindNow();
+        String backendUrl = "http://127.0.0.1:" + stubBackend.port();
+
+        // Client built by the application's own WebClientConfig with its default settings
+        UpstreamPoolMetrics poolMetrics = new UpstreamPoolMetrics();
+        WebClientConfig clientConfig = new WebClientConfig();
+        Beans.inject(clientConfig, "backendServiceUrl", backendUrl);
+        Beans.inject(clientConfig, "maxConnections", 500);
+        Beans.inject(clientConfig, "pendingAcquireMaxCount", 1000);
+        Beans.inject(clientConfig, "pendingAcquireTimeout", Duration.ofSeconds(5));
+        Beans.inject(clientConfig, "maxIdleTime", Duration.ofSeconds(30));
+        Beans.inject(clientConfig, "maxLifeTime", Duration.ofMinutes(5));
+        Beans.inject(clientConfig, "connectTimeout", Duration.ofSeconds(2));
+        Beans.inject(clientConfig, "responseTimeout", Duration.ofSeconds(10));
+        Beans.inject(clientConfig, "http2", false);
+        connectionProvider = clientConfig.backendConnectionProvider(poolMetrics);
+        WebClient webClient = clientConfig.webClient(connectionProvider);
+
+        gatewayService = new GatewayService(
+                webClient,
+                null,
+                new UpstreamCircuitBreaker(true, 50, 20, 50, Duration.ofSeconds(10), 5),
+                new HistoryResponseCache(10_000, Duration.ofMinutes(10), Duration.ofSeconds(2), 262_144),
+                new SimpleMeterRegistry(),
+                backendUrl,
+                2,
+                Duration.ofMillis(50),
+                Duration.ofSeconds(10));
+
+        requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        requestHeaders.setAccept(List.of(MediaType.APPLICATION_JSON));
+        requestHeaders.setBearerAuth("benchmark-token");
+        requestHeaders.set(HttpHeaders.USER_AGENT, "Mozilla/5.0 (X11; Linux x86_64)");
+        postBody = "{\"content\":\"hi\",\"recipientId\":7}".getBytes(StandardCharsets.UTF_8);
+        user = CachedUser.builder()
+                .id(42L)
+                .username("alice")
+                .email("alice@example.com")
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        connectionProvider.dispose();
+        stubBackend.disposeNow();
+    }
+
+    @Benchmark
+    public Long postMessage() {
+        return drain(gatewayService.forwardToBackend(
+                GatewayRateLimiter.MESSAGES_SEND,
+                MESSAGES_PATH,
+                HttpMethod.POST,
+                requestHeaders,
+                Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(postBody)),
+                user));
+    }
+
+    @Benchmark
+    public Long getHistoryPage() {
+        return drain(gatewayService.forwardToBackend(
+                GatewayRateLimiter.MESSAGES_READ,
+                MESSAGES_PATH + "?limit=50",
+                HttpMethod.GET,
+                requestHeaders,
+                null,
+                user));
+    }
+
+    private static Long drain(Mono<ResponseEntity<Flux<DataBuffer>>> response) {
+        return response
+                .flatMap(entity -> entity.getBody().doOnNext(DataBufferUtils::release).count())
+                .block();
+    }
+
+    private static byte[] historyPage(int messages) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < messages; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i)
+                    .append(",\"conversationId\":\"dm:7:42\",\"senderId\":42,\"recipientId\":7")
+                    .append(",\"senderUsername\":\"alice\",\"content\":\"message number ").append(i)
+                    .append("\",\"type\":\"CHAT\",\"createdAt\":\"2025-01-15T14:30:05\"}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
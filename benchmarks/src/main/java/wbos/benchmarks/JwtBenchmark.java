@@ -0,0 +1,61 @@
+package wbos.benchmarks;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import wbos.middleware.dto.token.VerifiedToken;
+import wbos.starterchatapp.utils.JwtUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token checks on both sides of the gateway. The backend parses and verifies
+ * the signature on every call; the gateway answers a token it has already
+ * verified from its digest cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JwtBenchmark {
+
+    // Same key as both application.yml files, so the token shape matches production
+    private static final String SECRET = "a388fa4107c45ade94f89acb81515a1ff6733ca840858e0cea2a884f3ff664e690fff922";
+
+    private JwtUtil backendJwt;
+    private wbos.middleware.util.JwtUtil gatewayJwt;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        backendJwt = new JwtUtil(SECRET, TimeUnit.HOURS.toMillis(1), new SimpleMeterRegistry());
+        gatewayJwt = new wbos.middleware.util.JwtUtil(SECRET, 10_000L, new SimpleMeterRegistry());
+
+        token = backendJwt.generateToken("alice", 42L);
+    }
+
+    @Benchmark
+    public wbos.starterchatapp.dtos.VerifiedToken backendVerify() {
+        return backendJwt.verify(token);
+    }
+
+    @Benchmark
+    public VerifiedToken gatewayVerifyCached() {
+        return gatewayJwt.verify(token);
+    }
+
+    @Benchmark
+    public String backendGenerate() {
+        return backendJwt.generateToken("alice", 42L);
+    }
+}
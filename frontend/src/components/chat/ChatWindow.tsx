@@ -1,7 +1,8 @@
-import { useState, useRef, useEffect } from 'react';
+import { useState, useRef, useEffect, useCallback, type UIEvent } from 'react';
 import { FiSend, FiMenu, FiMoreVertical } from 'react-icons/fi';
 import { motion } from 'framer-motion';
-import type { Conversation, Message } from '../../types/chat';
+import api from '../../utils/api';
+import type { Conversation, Message, MessageHistoryResponse } from '../../types/chat';
 
 interface ChatWindowProps {
     conversation: Conversation;
@@ -11,47 +12,39 @@ interface ChatWindowProps {
 const ChatWindow = ({ conversation, onOpenMobileMenu }: ChatWindowProps) => {
     const [message, setMessage] = useState('');
     const [messages, setMessages] = useState<Message[]>([]);
+    const [beforeCursor, setBeforeCursor] = useState<string | null>(null);
+    const [loadingHistory, setLoadingHistory] = useState(false);
     const messagesEndRef = useRef<HTMLDivElement>(null);
     const currentUserId = JSON.parse(localStorage.getItem('user') || '{}').id;
 
-    // Mock messages
+    const loadHistory = useCallback(async (before?: string) => {
+        setLoadingHistory(true);
+        try {
+            const response = await api.get<MessageHistoryResponse>('/gateway/messages', {
+                params: { recipientId: conversation.userId, before },
+            });
+            const page = response.data;
+            setMessages((current) => (before ? [...page.messages, ...current] : page.messages));
+            setBeforeCursor(page.hasMore ? page.before : null);
+        } catch (error) {
+            console.error('Failed to load messages', error);
+        } finally {
+            setLoadingHistory(false);
+        }
+    }, [conversation.userId]);
+
     useEffect(() => {
-        const mockMessages: Message[] = [
-            {
-                id: 1,
-                content: 'Hey! How are you doing?',
-                senderId: conversation.userId,
-                recipientId: currentUserId,
-                timestamp: '10:30 AM',
-                read: true,
-            },
-            {
-                id: 2,
-                content: 'I\'m doing great! Thanks for asking 😊',
-                senderId: currentUserId,
-                recipientId: conversation.userId,
-                timestamp: '10:32 AM',
-                read: true,
-            },
-            {
-                id: 3,
-                content: 'Want to grab coffee later? I found this amazing new place downtown!',
-                senderId: conversation.userId,
-                recipientId: currentUserId,
-                timestamp: '10:35 AM',
-                read: true,
-            },
-            {
-                id: 4,
-                content: 'Sounds perfect! What time works for you?',
-                senderId: currentUserId,
-                recipientId: conversation.userId,
-                timestamp: '10:36 AM',
-                read: true,
-            },
-        ];
-        setMessages(mockMessages);
-    }, [conversation, currentUserId]);
+        setMessages([]);
+        setBeforeCursor(null);
+        loadHistory();
+    }, [loadHistory]);
+
+    // Older pages are fetched by cursor, so scrolling back stays cheap however deep the history goes
+    const handleScroll = (e: UIEvent<HTMLDivElement>) => {
+        if (e.currentTarget.scrollTop === 0 && beforeCursor && !loadingHistory) {
+            loadHistory(beforeCursor);
+        }
+    };
 
     useEffect(() => {
         messagesEndRef.current?.scrollIntoView({ behavior: 'smooth' });
@@ -65,7 +58,7 @@ const ChatWindow = ({ conversation, onOpenMobileMenu }: ChatWindowProps) => {
             content: message,
             senderId: currentUserId,
             recipientId: conversation.userId,
-            timestamp: new Date().toLocaleTimeString('en-US', { hour: '2-digit', minute: '2-digit' }),
+            timestamp: new Date().toISOString(),
             read: false,
         };
 
@@ -73,6 +66,10 @@ const ChatWindow = ({ conversation, onOpenMobileMenu }: ChatWindowProps) => {
         setMessage('');
     };
 
+    const formatTime = (timestamp: string) => {
+        return new Date(timestamp).toLocaleTimeString('en-US', { hour: '2-digit', minute: '2-digit' });
+    };
+
     const getInitials = (firstName?: string, lastName?: string) => {
         return `${firstName?.[0] || ''}${lastName?.[0] || ''}`.toUpperCase() || '?';
     };
@@ -138,6 +135,7 @@ const ChatWindow = ({ conversation, onOpenMobileMenu }: ChatWindowProps) => {
             <div
                 className="flex-1 overflow-y-auto p-4 space-y-3"
                 style={{ backgroundColor: 'var(--color-bg-primary)' }}
+                onScroll={handleScroll}
             >
                 {messages.map((msg, index) => {
                     const isOwnMessage = msg.senderId === currentUserId;
@@ -170,7 +168,7 @@ const ChatWindow = ({ conversation, onOpenMobileMenu }: ChatWindowProps) => {
                             <div className={`message-bubble ${isOwnMessage ? 'message-bubble-sent' : 'message-bubble-received'}`}>
                                 <p className="break-words">{msg.content}</p>
                                 <div className="message-time" style={{ textAlign: isOwnMessage ? 'right' : 'left' }}>
-                                    {msg.timestamp}
+                                    {formatTime(msg.timestamp)}
                                 </div>
                             </div>
                         </motion.div>
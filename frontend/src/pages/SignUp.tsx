@@ -1,10 +1,12 @@
-import { useState, type FormEvent, type ChangeEvent } from 'react';
+import { useEffect, useState, type FormEvent, type ChangeEvent } from 'react';
 import { motion } from 'framer-motion';
 import { Link, useNavigate } from 'react-router-dom';
 import { FiMail, FiLock, FiUser, FiEye, FiEyeOff } from 'react-icons/fi';
 import AuthLayout from '../components/AuthLayout';
 import api from '../utils/api';
-import type { SignUpRequest, AuthResponse } from '../types/auth';
+import type { SignUpRequest, AuthResponse, AvailabilityResponse } from '../types/auth';
+
+const AVAILABILITY_DEBOUNCE_MS = 300;
 
 const SignUp = () => {
     const navigate = useNavigate();
@@ -18,6 +20,39 @@ const SignUp = () => {
         lastName: '',
     });
     const [error, setError] = useState('');
+    const [usernameTaken, setUsernameTaken] = useState(false);
+    const [emailTaken, setEmailTaken] = useState(false);
+
+    // Check once the user pauses typing; the signup request stays the authority
+    useEffect(() => {
+        const username = formData.username.trim();
+        setUsernameTaken(false);
+        if (!username) return;
+        const timer = setTimeout(async () => {
+            try {
+                const response = await api.get<AvailabilityResponse>('/auth/availability', { params: { username } });
+                setUsernameTaken(response.data.usernameAvailable === false);
+            } catch {
+                // Ignore; signup reports conflicts anyway
+            }
+        }, AVAILABILITY_DEBOUNCE_MS);
+        return () => clearTimeout(timer);
+    }, [formData.username]);
+
+    useEffect(() => {
+        const email = formData.email.trim();
+        setEmailTaken(false);
+        if (!email.includes('@')) return;
+        const timer = setTimeout(async () => {
+            try {
+                const response = await api.get<AvailabilityResponse>('/auth/availability', { params: { email } });
+                setEmailTaken(response.data.emailAvailable === false);
+            } catch {
+                // Ignore; signup reports conflicts anyway
+            }
+        }, AVAILABILITY_DEBOUNCE_MS);
+        return () => clearTimeout(timer);
+    }, [formData.email]);
 
     const handleChange = (e: ChangeEvent<HTMLInputElement>) => {
         setFormData({
@@ -57,7 +92,8 @@ const SignUp = () => {
 
             navigate('/chat');
         } catch (err: any) {
-            setError(err.response?.data?.message || 'Signup failed. Please try again.');
+            setError(err.response?.data?.message
+                || (err.response?.status === 409 ? 'Username or email is already taken' : 'Signup failed. Please try again.'));
         } finally {
             setLoading(false);
         }
@@ -127,6 +163,9 @@ const SignUp = () => {
                             required
                         />
                     </div>
+                    {usernameTaken && (
+                        <p className="text-red-500 text-xs mt-1">This username is already taken</p>
+                    )}
                 </div>
 
                 {/* Email Input */}
@@ -146,6 +185,9 @@ const SignUp = () => {
                             required
                         />
                     </div>
+                    {emailTaken && (
+                        <p className="text-red-500 text-xs mt-1">An account with this email already exists</p>
+                    )}
                 </div>
 
                 {/* Password Input */}
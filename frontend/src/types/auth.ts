@@ -20,6 +20,11 @@ export interface AuthResponse {
     message: string;
 }
 
+export interface AvailabilityResponse {
+    usernameAvailable: boolean | null;
+    emailAvailable: boolean | null;
+}
+
 export interface User {
     id: number;
     username: string;
@@ -3,8 +3,15 @@ export interface Message {
     content: string;
     senderId: number;
     recipientId: number;
+    senderUsername?: string;
     timestamp: string;
-    read: boolean;
+    read?: boolean;
+}
+
+export interface MessageHistoryResponse {
+    messages: Message[];
+    before: string | null;
+    hasMore: boolean;
 }
 
 export interface Conversation {
@@ -0,0 +1,78 @@
+package wbos.middleware.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Token-bucket limits per gateway route, bound from gateway.rate-limit.
+ * A route without an entry is not limited.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "gateway.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * How often local consumption is reconciled with the shared Redis budget.
+     */
+    private Duration syncInterval = Duration.ofSeconds(1);
+
+    /**
+     * Buckets unused for this long are dropped.
+     */
+    private Duration idleTimeout = Duration.ofMinutes(10);
+
+    private long maximumBuckets = 100_000;
+
+    private Map<String, Limit> routes = new HashMap<>();
+
+    private ClientAddress clientAddress = new ClientAddress();
+
+    @Data
+    public static class Limit {
+
+        /**
+         * Burst size per user (or per IP for unauthenticated routes).
+         */
+        private long capacity;
+
+        private double refillPerSecond;
+
+        /**
+         * Optional budget shared by all callers of the route; 0 disables it.
+         */
+        private long globalCapacity;
+
+        private double globalRefillPerSecond;
+    }
+
+    /**
+     * How the caller's IP is found for routes limited per client IP.
+     */
+    @Data
+    public static class ClientAddress {
+
+        public enum Header {
+            NONE, X_FORWARDED_FOR, FORWARDED
+        }
+
+        /**
+         * Header a trusted proxy adds the client address to; NONE uses the socket address.
+         */
+        private Header header = Header.NONE;
+
+        /**
+         * Proxy addresses or CIDR ranges whose forwarded header is believed.
+         */
+        private List<String> trustedProxies = new ArrayList<>();
+    }
+}
@@ -1,44 +1,48 @@
 package wbos.middleware.config;
 
-import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.data.redis.cache.RedisCacheConfiguration;
-import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
-import org.springframework.data.redis.serializer.RedisSerializationContext;
-import org.springframework.data.redis.serializer.StringRedisSerializer;
-
-import java.time.Duration;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import wbos.middleware.config.serializer.CachedUserRedisSerializer;
+import wbos.middleware.config.serializer.RedisCacheCodecs;
+import wbos.middleware.service.cache.UserCacheService;
 
 @Configuration
-@EnableCaching
 public class RedisConfig {
 
+    private static final String USERS_CACHE = "users";
+
+    @Value("${cache.users.invalidation-channel:users:invalidate}")
+    private String userInvalidationChannel;
+
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
-        RedisTemplate<String, Object> template = new RedisTemplate<>();
-        template.setConnectionFactory(connectionFactory);
-        template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
-        template.setHashKeySerializer(new StringRedisSerializer());
-        template.setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
-        return template;
+    public RedisCacheCodecs redisCacheCodecs(Environment environment) {
+        return new RedisCacheCodecs(environment)
+                .binary(USERS_CACHE, CachedUserRedisSerializer::new);
     }
 
+    /**
+     * Non-blocking access to the shared user cache. Keys keep the "users::{id}"
+     * layout of the former Spring Cache entries so both read the same data.
+     */
     @Bean
-    public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory) {
-        RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofHours(1))
-                .serializeKeysWith(RedisSerializationContext.SerializationPair
-                        .fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair
-                        .fromSerializer(new GenericJackson2JsonRedisSerializer()));
+    public ReactiveRedisTemplate<String, Object> userCacheRedisTemplate(ReactiveRedisConnectionFactory connectionFactory,
+                                                                        RedisCacheCodecs codecs) {
+        return codecs.template(connectionFactory, USERS_CACHE);
+    }
 
-        return RedisCacheManager.builder(connectionFactory)
-                .cacheDefaults(config)
-                .build();
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       UserCacheService userCacheService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(userCacheService, new ChannelTopic(userInvalidationChannel));
+        return container;
     }
 }
@@ -0,0 +1,21 @@
+package wbos.middleware.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+public class SchedulerConfig {
+
+    /**
+     * Bounded pool for blocking JPA calls so they never run on, or pile up
+     * behind, the Netty event loop. Work beyond the queue capacity is rejected.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler jdbcScheduler(@Value("${gateway.jdbc.threads:10}") int threads,
+                                   @Value("${gateway.jdbc.queue-capacity:1000}") int queueCapacity) {
+        return Schedulers.newBoundedElastic(threads, queueCapacity, "gateway-jdbc");
+    }
+}
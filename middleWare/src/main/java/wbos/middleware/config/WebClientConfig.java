@@ -1,9 +1,17 @@
 package wbos.middleware.config;
 
+import io.netty.channel.ChannelOption;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import wbos.middleware.service.upstream.UpstreamPoolMetrics;
+
+import java.time.Duration;
 
 @Configuration
 public class WebClientConfig {
@@ -11,10 +19,58 @@ public class WebClientConfig {
     @Value("${backend.service.url}")
     private String backendServiceUrl;
 
+    @Value("${backend.client.pool.max-connections:500}")
+    private int maxConnections;
+
+    @Value("${backend.client.pool.pending-acquire-max-count:1000}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${backend.client.pool.pending-acquire-timeout:5s}")
+    private Duration pendingAcquireTimeout;
+
+    @Value("${backend.client.pool.max-idle-time:30s}")
+    private Duration maxIdleTime;
+
+    @Value("${backend.client.pool.max-life-time:5m}")
+    private Duration maxLifeTime;
+
+    @Value("${backend.client.connect-timeout:2s}")
+    private Duration connectTimeout;
+
+    @Value("${backend.client.response-timeout:10s}")
+    private Duration responseTimeout;
+
+    @Value("${backend.client.http2:false}")
+    private boolean http2;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider backendConnectionProvider(UpstreamPoolMetrics poolMetrics) {
+        return ConnectionProvider.builder("backend")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                // Close idle and old connections before the backend or a load balancer drops them under us
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(maxIdleTime)
+                .metrics(true, () -> poolMetrics)
+                .build();
+    }
+
     @Bean
-    public WebClient webClient() {
+    public WebClient webClient(ConnectionProvider backendConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(backendConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(responseTimeout)
+                // The backend speaks plain HTTP, so HTTP/2 means h2c with HTTP/1.1 as the fallback
+                .protocol(http2
+                        ? new HttpProtocol[]{HttpProtocol.H2C, HttpProtocol.HTTP11}
+                        : new HttpProtocol[]{HttpProtocol.HTTP11});
+
         return WebClient.builder()
                 .baseUrl(backendServiceUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .build();
     }
-}
\ No newline at end of file
+}
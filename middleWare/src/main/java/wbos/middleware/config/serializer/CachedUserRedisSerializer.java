@@ -0,0 +1,79 @@
+package wbos.middleware.config.serializer;
+
+import org.springframework.data.redis.serializer.SerializationException;
+import wbos.middleware.dto.user.CachedUser;
+
+/**
+ * Binary codec for {@link CachedUser}.
+ *
+ * <p>v1 layout after the header: one presence byte (bit per field, in
+ * declaration order), then the present fields. The id is a varint and the
+ * strings are varint length + UTF-8.
+ */
+public class CachedUserRedisSerializer extends VersionedBinaryRedisSerializer<CachedUser> {
+
+    private static final int TYPE_TAG = 1;
+    private static final int V1 = 1;
+
+    private static final int HAS_ID = 1;
+    private static final int HAS_USERNAME = 1 << 1;
+    private static final int HAS_EMAIL = 1 << 2;
+    private static final int HAS_FIRST_NAME = 1 << 3;
+    private static final int HAS_LAST_NAME = 1 << 4;
+
+    public CachedUserRedisSerializer() {
+        super(CachedUser.class, TYPE_TAG, V1);
+    }
+
+    @Override
+    protected void write(CachedUser user, Writer out) {
+        int presence = (user.getId() != null ? HAS_ID : 0)
+                | (user.getUsername() != null ? HAS_USERNAME : 0)
+                | (user.getEmail() != null ? HAS_EMAIL : 0)
+                | (user.getFirstName() != null ? HAS_FIRST_NAME : 0)
+                | (user.getLastName() != null ? HAS_LAST_NAME : 0);
+        out.writeByte(presence);
+
+        if (user.getId() != null) {
+            out.writeVarLong(user.getId());
+        }
+        if (user.getUsername() != null) {
+            out.writeString(user.getUsername());
+        }
+        if (user.getEmail() != null) {
+            out.writeString(user.getEmail());
+        }
+        if (user.getFirstName() != null) {
+            out.writeString(user.getFirstName());
+        }
+        if (user.getLastName() != null) {
+            out.writeString(user.getLastName());
+        }
+    }
+
+    @Override
+    protected CachedUser read(int version, Reader in) {
+        if (version != V1) {
+            throw new SerializationException("Unsupported CachedUser schema version " + version);
+        }
+
+        int presence = in.readByte();
+        CachedUser user = new CachedUser();
+        if ((presence & HAS_ID) != 0) {
+            user.setId(in.readVarLong());
+        }
+        if ((presence & HAS_USERNAME) != 0) {
+            user.setUsername(in.readString());
+        }
+        if ((presence & HAS_EMAIL) != 0) {
+            user.setEmail(in.readString());
+        }
+        if ((presence & HAS_FIRST_NAME) != 0) {
+            user.setFirstName(in.readString());
+        }
+        if ((presence & HAS_LAST_NAME) != 0) {
+            user.setLastName(in.readString());
+        }
+        return user;
+    }
+}
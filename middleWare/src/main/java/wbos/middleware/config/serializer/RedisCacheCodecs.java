@@ -0,0 +1,58 @@
+package wbos.middleware.config.serializer;
+
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Value codec per shared cache, selected with {@code cache.<name>.codec}.
+ *
+ * <p>A cache registered with a binary codec uses it unless configured as
+ * {@code json}; any other cache is JSON and refuses binary. Every cache gets
+ * its own reactive template, so switching one codec leaves the others alone.
+ */
+public class RedisCacheCodecs {
+
+    public static final String BINARY = "binary";
+    public static final String JSON = "json";
+
+    private final PropertyResolver properties;
+    private final Map<String, Supplier<RedisSerializer<Object>>> binaryCodecs = new HashMap<>();
+
+    public RedisCacheCodecs(PropertyResolver properties) {
+        this.properties = properties;
+    }
+
+    public RedisCacheCodecs binary(String cacheName, Supplier<RedisSerializer<Object>> codec) {
+        binaryCodecs.put(cacheName, codec);
+        return this;
+    }
+
+    public RedisSerializer<Object> serializer(String cacheName) {
+        Supplier<RedisSerializer<Object>> binary = binaryCodecs.get(cacheName);
+        String codec = properties.getProperty("cache." + cacheName + ".codec", binary != null ? BINARY : JSON);
+        if (JSON.equals(codec)) {
+            return new GenericJackson2JsonRedisSerializer();
+        }
+        if (BINARY.equals(codec) && binary != null) {
+            return binary.get();
+        }
+        throw new IllegalStateException("Unsupported codec '" + codec + "' for cache '" + cacheName + "'");
+    }
+
+    public ReactiveRedisTemplate<String, Object> template(ReactiveRedisConnectionFactory connectionFactory, String cacheName) {
+        RedisSerializationContext<String, Object> context = RedisSerializationContext
+                .<String, Object>newSerializationContext(new StringRedisSerializer())
+                .value(serializer(cacheName))
+                .build();
+        return new ReactiveRedisTemplate<>(connectionFactory, context);
+    }
+}
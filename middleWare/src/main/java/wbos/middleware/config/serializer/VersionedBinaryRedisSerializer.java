@@ -0,0 +1,154 @@
+package wbos.middleware.config.serializer;
+
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Base for compact, schema-aware cache codecs.
+ *
+ * <p>Every value starts with a three byte header: a marker byte that can never
+ * open a JSON document, a type tag and a schema version. Subclasses write
+ * fields in a fixed order, so no field names or class names are stored.
+ * Readers dispatch on the version, which lets a new schema be rolled out while
+ * entries written by the previous one are still live.
+ *
+ * <p>Values that do not start with the marker are handed to the JSON
+ * serializer. Entries written before the cache switched codecs therefore keep
+ * reading until they expire. The JSON serializer also writes any value that is
+ * not of the codec's type, such as negative-cache markers.
+ */
+public abstract class VersionedBinaryRedisSerializer<T> implements RedisSerializer<Object> {
+
+    static final byte MARKER = (byte) 0xB1;
+    private static final int HEADER_LENGTH = 3;
+
+    private final Class<T> type;
+    private final byte typeTag;
+    private final byte currentVersion;
+    private final GenericJackson2JsonRedisSerializer jsonFallback = new GenericJackson2JsonRedisSerializer();
+
+    protected VersionedBinaryRedisSerializer(Class<T> type, int typeTag, int currentVersion) {
+        this.type = type;
+        this.typeTag = (byte) typeTag;
+        this.currentVersion = (byte) currentVersion;
+    }
+
+    protected abstract void write(T value, Writer out);
+
+    protected abstract T read(int version, Reader in);
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (!type.isInstance(value)) {
+            return jsonFallback.serialize(value);
+        }
+
+        Writer out = new Writer();
+        out.writeByte(MARKER);
+        out.writeByte(typeTag);
+        out.writeByte(currentVersion);
+        write(type.cast(value), out);
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MARKER) {
+            return jsonFallback.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_LENGTH || bytes[1] != typeTag) {
+            throw new SerializationException("Cached value was not written for " + type.getSimpleName());
+        }
+
+        try {
+            return read(bytes[2], new Reader(bytes, HEADER_LENGTH));
+        } catch (IndexOutOfBoundsException e) {
+            throw new SerializationException("Truncated " + type.getSimpleName() + " entry", e);
+        }
+    }
+
+    /**
+     * Growable byte sink with varint and length-prefixed UTF-8 string encodings.
+     */
+    protected static final class Writer {
+
+        private byte[] buffer = new byte[64];
+        private int length;
+
+        public void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[length++] = (byte) value;
+        }
+
+        public void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        public void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(utf8.length);
+            ensureCapacity(utf8.length);
+            System.arraycopy(utf8, 0, buffer, length, utf8.length);
+            length += utf8.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+    }
+
+    protected static final class Reader {
+
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        public int readByte() {
+            return bytes[position++] & 0xFF;
+        }
+
+        public long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        public String readString() {
+            int utf8Length = (int) readVarLong();
+            if (position + utf8Length > bytes.length) {
+                throw new IndexOutOfBoundsException(position + utf8Length);
+            }
+            String value = new String(bytes, position, utf8Length, StandardCharsets.UTF_8);
+            position += utf8Length;
+            return value;
+        }
+    }
+}
@@ -1,10 +1,16 @@
 package wbos.middleware.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import wbos.middleware.service.GatewayService;
+import wbos.middleware.service.ratelimit.GatewayRateLimiter;
+import wbos.middleware.util.ClientAddressResolver;
 
 @RestController
 @RequestMapping("/auth")
@@ -13,24 +19,53 @@ import wbos.middleware.service.GatewayService;
 public class AuthController {
 
     private final GatewayService gatewayService;
+    private final GatewayRateLimiter rateLimiter;
+    private final ClientAddressResolver clientAddressResolver;
 
     @PostMapping("/signup")
-    public Mono<ResponseEntity<Object>> signup(@RequestBody Object requestBody) {
-        return gatewayService.forwardToBackend(
-                "/api/v1/chatApp/auth/signup",
-                "POST",
-                requestBody,
-                null
-        );
+    public Mono<ResponseEntity<Flux<DataBuffer>>> signup(ServerHttpRequest request) {
+        return rateLimiter.limit(GatewayRateLimiter.AUTH, clientAddress(request),
+                () -> gatewayService.forwardToBackend(
+                        GatewayRateLimiter.AUTH,
+                        "/api/v1/chatApp/auth/signup",
+                        HttpMethod.POST,
+                        request.getHeaders(),
+                        request.getBody(),
+                        null
+                ));
     }
 
     @PostMapping("/signin")
-    public Mono<ResponseEntity<Object>> signin(@RequestBody Object requestBody) {
-        return gatewayService.forwardToBackend(
-                "/api/v1/chatApp/auth/signin",
-                "POST",
-                requestBody,
-                null
-        );
+    public Mono<ResponseEntity<Flux<DataBuffer>>> signin(ServerHttpRequest request) {
+        return rateLimiter.limit(GatewayRateLimiter.AUTH, clientAddress(request),
+                () -> gatewayService.forwardToBackend(
+                        GatewayRateLimiter.AUTH,
+                        "/api/v1/chatApp/auth/signin",
+                        HttpMethod.POST,
+                        request.getHeaders(),
+                        request.getBody(),
+                        null
+                ));
     }
-}
\ No newline at end of file
+
+    @GetMapping("/availability")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> availability(ServerHttpRequest request) {
+        String query = request.getURI().getRawQuery();
+        return rateLimiter.limit(GatewayRateLimiter.AUTH_AVAILABILITY, clientAddress(request),
+                () -> gatewayService.forwardToBackend(
+                        GatewayRateLimiter.AUTH_AVAILABILITY,
+                        "/api/v1/chatApp/auth/availability" + (query != null ? "?" + query : ""),
+                        HttpMethod.GET,
+                        request.getHeaders(),
+                        Flux.empty(),
+                        null
+                ));
+    }
+
+    /**
+     * No user yet on these routes, so they are limited per client IP.
+     */
+    private String clientAddress(ServerHttpRequest request) {
+        return clientAddressResolver.resolve(request);
+    }
+}
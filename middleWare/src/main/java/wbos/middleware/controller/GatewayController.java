@@ -1,42 +1,67 @@
 package wbos.middleware.controller;
 
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import wbos.middleware.dto.token.VerifiedToken;
 import wbos.middleware.dto.user.CachedUser;
 import wbos.middleware.service.GatewayService;
+import wbos.middleware.service.cache.HistoryResponseCache;
+import wbos.middleware.service.ratelimit.GatewayRateLimiter;
 import wbos.middleware.util.JwtUtil;
 
+import java.util.Optional;
+
 @RestController
 @RequestMapping("/gateway")
 @RequiredArgsConstructor
 @CrossOrigin(origins = "*")
 public class GatewayController {
 
+    private static final String GATEWAY_PREFIX = "/gateway";
+    // Set by the backend on message posts
+    private static final String CONVERSATION_ID_HEADER = "X-Conversation-Id";
+
     private final JwtUtil jwtUtil;
     private final GatewayService gatewayService;
+    private final HistoryResponseCache historyCache;
+    private final GatewayRateLimiter rateLimiter;
 
     /**
      * Proxy endpoint for sending messages
      * Client calls: POST /api/v1/gateway/messages
      */
     @PostMapping("/messages")
-    public Mono<ResponseEntity<Object>> sendMessage(
-            @RequestHeader("Authorization") String authHeader,
-            @RequestBody Object requestBody) {
-
-        // Validate token and get cached user
-        CachedUser user = validateAndGetUser(authHeader);
-
-        // Forward request to backend with user context
-        return gatewayService.forwardToBackend(
-                "/api/v1/chatApp/messages",
-                "POST",
-                requestBody,
-                user
-        );
+    public Mono<ResponseEntity<Flux<DataBuffer>>> sendMessage(
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            ServerHttpRequest request) {
+
+        // Validate token and get cached user, then forward request to backend with user context
+        return authenticate(authHeader)
+                .flatMap(user -> rateLimiter.limit(GatewayRateLimiter.MESSAGES_SEND, user.getId().toString(),
+                        () -> gatewayService.forwardToBackend(
+                                GatewayRateLimiter.MESSAGES_SEND,
+                                "/api/v1/chatApp/messages",
+                                HttpMethod.POST,
+                                request.getHeaders(),
+                                request.getBody(),
+                                user
+                        )))
+                .doOnNext(response -> {
+                    String conversationId = response.getHeaders().getFirst(CONVERSATION_ID_HEADER);
+                    if (response.getStatusCode().is2xxSuccessful() && conversationId != null) {
+                        historyCache.invalidateConversation(conversationId);
+                    }
+                });
     }
 
     /**
@@ -44,17 +69,25 @@ public class GatewayController {
      * Client calls: GET /api/v1/gateway/messages
      */
     @GetMapping("/messages")
-    public Mono<ResponseEntity<Object>> getMessages(
-            @RequestHeader("Authorization") String authHeader,
-            @RequestParam(required = false) Long recipientId) {
-
-        CachedUser user = validateAndGetUser(authHeader);
-
-        String path = recipientId != null
-                ? "/api/v1/chatApp/messages?recipientId=" + recipientId
-                : "/api/v1/chatApp/messages";
-
-        return gatewayService.forwardToBackend(path, "GET", null, user);
+    public Mono<ResponseEntity<Flux<DataBuffer>>> getMessages(
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @RequestParam(required = false) Long recipientId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) Integer limit,
+            ServerHttpRequest request) {
+
+        String path = UriComponentsBuilder.fromPath("/api/v1/chatApp/messages")
+                .queryParamIfPresent("recipientId", Optional.ofNullable(recipientId))
+                .queryParamIfPresent("before", Optional.ofNullable(before))
+                .queryParamIfPresent("limit", Optional.ofNullable(limit))
+                .encode()
+                .build()
+                .toUriString();
+
+        return authenticate(authHeader)
+                .flatMap(user -> rateLimiter.limit(GatewayRateLimiter.MESSAGES_READ, user.getId().toString(),
+                        () -> gatewayService.forwardHistory(path, request.getHeaders(), user,
+                                new HistoryResponseCache.Key(user.getId(), recipientId, before, limit))));
     }
 
     /**
@@ -62,33 +95,42 @@ public class GatewayController {
      * Client calls: ANY /api/v1/gateway/chatApp/*
      */
     @RequestMapping("/chatApp/**")
-    public Mono<ResponseEntity<Object>> proxyToChatApp(
-            @RequestHeader("Authorization") String authHeader,
-            @RequestBody(required = false) Object requestBody,
-            @RequestParam(required = false) String params) {
-
-        CachedUser user = validateAndGetUser(authHeader);
-
-        // Extract the path after /gateway
-        String path = "/api/v1/chatApp" + params;
-
-        return gatewayService.forwardToBackend(path, "POST", requestBody, user);
+    public Mono<ResponseEntity<Flux<DataBuffer>>> proxyToChatApp(
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            ServerHttpRequest request) {
+
+        // Keep the raw (still encoded) path after /gateway and the raw query string
+        String remainder = request.getPath().pathWithinApplication().value()
+                .substring(GATEWAY_PREFIX.length());
+        String query = request.getURI().getRawQuery();
+        String path = "/api/v1" + remainder + (query != null ? "?" + query : "");
+
+        return authenticate(authHeader)
+                .flatMap(user -> rateLimiter.limit(GatewayRateLimiter.CHAT_APP, user.getId().toString(),
+                        () -> gatewayService.forwardToBackend(GatewayRateLimiter.CHAT_APP,
+                                path, request.getMethod(), request.getHeaders(), request.getBody(), user)));
     }
 
-    private CachedUser validateAndGetUser(String authHeader) {
+    private Mono<CachedUser> authenticate(String authHeader) {
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            throw new RuntimeException("Missing or invalid authorization header");
+            return Mono.error(unauthorized("Missing or invalid authorization header"));
         }
 
         String token = authHeader.substring(7);
 
-        if (!jwtUtil.validateToken(token)) {
-            throw new RuntimeException("Invalid or expired token");
+        VerifiedToken verified;
+        try {
+            verified = jwtUtil.verify(token);
+        } catch (JwtException e) {
+            return Mono.error(unauthorized("Invalid or expired token"));
         }
 
-        Long userId = jwtUtil.extractUserId(token);
-
         // Get user from cache (or DB if not cached)
-        return gatewayService.getCachedUser(userId);
+        return gatewayService.getCachedUser(verified.userId())
+                .switchIfEmpty(Mono.error(() -> unauthorized("User not found")));
+    }
+
+    private static ResponseStatusException unauthorized(String reason) {
+        return new ResponseStatusException(HttpStatus.UNAUTHORIZED, reason);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,9 @@
+package wbos.middleware.dto.token;
+
+import java.time.Instant;
+
+/**
+ * Claims of a token whose signature and expiry have been checked.
+ */
+public record VerifiedToken(String username, Long userId, Instant expiresAt) {
+}
@@ -1,46 +1,334 @@
 package wbos.middleware.service;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.handler.timeout.TimeoutException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 import wbos.middleware.dto.user.CachedUser;
+import wbos.middleware.service.cache.HistoryResponseCache;
 import wbos.middleware.service.cache.UserCacheService;
+import wbos.middleware.service.ratelimit.GatewayRateLimiter;
+import wbos.middleware.service.upstream.UpstreamCircuitBreaker;
 
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Relays requests to the backend as raw byte streams. Bodies are never
+ * parsed or buffered in full: request DataBuffers are written upstream as
+ * they arrive, and the upstream status, headers and body stream are handed
+ * back unchanged except for hop-by-hop headers.
+ *
+ * <p>Idempotent requests are retried a bounded number of times when no
+ * response arrived. Connect failures and 5xx responses feed the circuit
+ * breaker; while it is open requests fail fast with 503 and Retry-After.
+ */
 @Service
-@RequiredArgsConstructor
 public class GatewayService {
 
+    public static final String USER_ID_HEADER = "X-User-Id";
+    public static final String USERNAME_HEADER = "X-Username";
+
+    // Connection-level headers, and headers the gateway owns, are never copied across.
+    // Authorization is relayed: the backend verifies the token itself rather than trusting the gateway.
+    private static final Set<String> EXCLUDED_REQUEST_HEADERS = Set.of(
+            "host", "connection", "keep-alive", "transfer-encoding", "te", "trailer", "upgrade",
+            "proxy-authorization", "content-length", "origin", "cookie",
+            "x-user-id", "x-username");
+    private static final Set<String> EXCLUDED_RESPONSE_HEADERS = Set.of(
+            "connection", "keep-alive", "transfer-encoding", "te", "trailer", "upgrade",
+            "proxy-authenticate", "set-cookie", "vary",
+            "access-control-allow-origin", "access-control-allow-credentials",
+            "access-control-allow-methods", "access-control-allow-headers",
+            "access-control-expose-headers", "access-control-max-age");
+
     private final WebClient webClient;
     private final UserCacheService userCacheService;
+    private final UpstreamCircuitBreaker circuitBreaker;
+    private final HistoryResponseCache historyCache;
+    private final String backendServiceUrl;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+    private final MeterRegistry meterRegistry;
+    private final Duration responseTimeout;
+    private final Map<String, Timer> upstreamTimers = new ConcurrentHashMap<>();
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder connectFailures = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
 
-    public CachedUser getCachedUser(Long userId) {
+    public GatewayService(WebClient webClient,
+                          UserCacheService userCacheService,
+                          UpstreamCircuitBreaker circuitBreaker,
+                          HistoryResponseCache historyCache,
+                          MeterRegistry meterRegistry,
+                          @Value("${backend.service.url}") String backendServiceUrl,
+                          @Value("${backend.client.retry.max-retries:2}") int maxRetries,
+                          @Value("${backend.client.retry.backoff:50ms}") Duration retryBackoff,
+                          @Value("${backend.client.response-timeout:10s}") Duration responseTimeout) {
+        this.webClient = webClient;
+        this.userCacheService = userCacheService;
+        this.circuitBreaker = circuitBreaker;
+        this.historyCache = historyCache;
+        this.backendServiceUrl = backendServiceUrl;
+        this.maxRetries = maxRetries;
+        this.retryBackoff = retryBackoff;
+        this.meterRegistry = meterRegistry;
+        this.responseTimeout = responseTimeout;
+
+        for (String route : List.of(GatewayRateLimiter.AUTH, GatewayRateLimiter.AUTH_AVAILABILITY,
+                GatewayRateLimiter.MESSAGES_SEND, GatewayRateLimiter.MESSAGES_READ, GatewayRateLimiter.CHAT_APP)) {
+            upstreamTimers.put(route, registerUpstreamTimer(route));
+        }
+        FunctionCounter.builder("gateway.upstream.retries", retries, LongAdder::sum)
+                .register(meterRegistry);
+        upstreamFailures(meterRegistry, "timeout", timeouts);
+        upstreamFailures(meterRegistry, "connect", connectFailures);
+        upstreamFailures(meterRegistry, "server-error", serverErrors);
+    }
+
+    public Mono<CachedUser> getCachedUser(Long userId) {
         return userCacheService.getUserById(userId);
     }
 
-    public Mono<ResponseEntity<Object>> forwardToBackend(
+    /**
+     * @param route names the route in upstream latency metrics
+     * @param path already-encoded backend path and query, relayed byte for byte
+     */
+    public Mono<ResponseEntity<Flux<DataBuffer>>> forwardToBackend(
+            String route,
             String path,
-            String method,
-            Object body,
+            HttpMethod method,
+            HttpHeaders requestHeaders,
+            Flux<DataBuffer> body,
             CachedUser user) {
 
         WebClient.RequestBodySpec request = webClient
-                .method(org.springframework.http.HttpMethod.valueOf(method))
-                .uri(path)
-                .header("X-User-Id", user.getId().toString())
-                .header("X-Username", user.getUsername());
+                .method(method)
+                .uri(URI.create(backendServiceUrl + path))
+                .headers(headers -> {
+                    copyHeaders(requestHeaders, headers, EXCLUDED_REQUEST_HEADERS);
+                    if (user != null) {
+                        headers.set(USER_ID_HEADER, user.getId().toString());
+                        headers.set(USERNAME_HEADER, user.getUsername());
+                    }
+                });
 
         if (body != null) {
-            request.bodyValue(body);
+            request.body(BodyInserters.fromDataBuffers(body));
         }
 
-        return request
+        Mono<ResponseEntity<Flux<DataBuffer>>> exchange = request
                 .retrieve()
-                .toEntity(Object.class)
-                .onErrorResume(error -> {
-                    return Mono.just(ResponseEntity.status(500)
-                            .body("Error calling backend: " + error.getMessage()));
+                // Backend error responses are relayed as-is instead of becoming exceptions
+                .onStatus(HttpStatusCode::isError, response -> Mono.empty())
+                .toEntityFlux(DataBuffer.class);
+
+        if (method == HttpMethod.GET || method == HttpMethod.HEAD) {
+            // Only failures before a response arrived are retried, so nothing has reached the client yet
+            exchange = exchange.retryWhen(Retry.backoff(maxRetries, retryBackoff)
+                    .filter(WebClientRequestException.class::isInstance)
+                    .doBeforeRetry(signal -> retries.increment())
+                    .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+        }
+
+        Mono<ResponseEntity<Flux<DataBuffer>>> guarded = exchange;
+        Timer upstreamTimer = upstreamTimer(route);
+        return Mono.defer(() -> {
+            if (!circuitBreaker.tryAcquire()) {
+                return Mono.just(circuitOpenResponse());
+            }
+            // Until the response headers arrive, retries included; the body streams afterwards
+            long start = System.nanoTime();
+
+            return guarded
+                    .doOnNext(response -> {
+                        upstreamTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        if (response.getStatusCode().is5xxServerError()) {
+                            serverErrors.increment();
+                            circuitBreaker.onFailure();
+                        } else {
+                            circuitBreaker.onSuccess();
+                        }
+                    })
+                    .doOnError(error -> {
+                        upstreamTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        circuitBreaker.onFailure();
+                    })
+                    .doOnCancel(circuitBreaker::onIgnored)
+                    .map(GatewayService::withoutHopByHopHeaders)
+                    .onErrorResume(WebClientRequestException.class, error -> Mono.just(upstreamFailureResponse(error)));
+        });
+    }
+
+    /**
+     * GET history through {@link HistoryResponseCache}: fresh entries are answered
+     * here, stale ones are revalidated with the backend by ETag, and a client
+     * already holding the current ETag gets a 304.
+     */
+    public Mono<ResponseEntity<Flux<DataBuffer>>> forwardHistory(
+            String path,
+            HttpHeaders requestHeaders,
+            CachedUser user,
+            HistoryResponseCache.Key key) {
+
+        List<String> clientEtags = requestHeaders.getIfNoneMatch();
+        HistoryResponseCache.Entry cached = historyCache.get(key);
+        if (cached != null && historyCache.isFresh(cached)) {
+            return Mono.just(fromCache(cached, clientEtags));
+        }
+
+        HttpHeaders upstreamHeaders = new HttpHeaders();
+        upstreamHeaders.addAll(requestHeaders);
+        upstreamHeaders.remove(HttpHeaders.IF_NONE_MATCH);
+        if (cached != null) {
+            upstreamHeaders.setIfNoneMatch(cached.etag());
+        }
+
+        long stamp = historyCache.stamp();
+        return forwardToBackend(GatewayRateLimiter.MESSAGES_READ, path, HttpMethod.GET, upstreamHeaders, null, user)
+                .flatMap(response -> {
+                    Flux<DataBuffer> body = response.getBody() != null ? response.getBody() : Flux.empty();
+                    if (cached != null && response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                        return body.doOnNext(DataBufferUtils::release)
+                                .then(Mono.fromSupplier(() -> fromCache(historyCache.revalidated(key, cached, stamp, response.getHeaders()), clientEtags)));
+                    }
+
+                    String etag = response.getHeaders().getETag();
+                    if (response.getStatusCode() != HttpStatus.OK || etag == null) {
+                        return Mono.just(response);
+                    }
+                    return DataBufferUtils.join(body)
+                            .map(joined -> {
+                                byte[] bytes = new byte[joined.readableByteCount()];
+                                joined.read(bytes);
+                                DataBufferUtils.release(joined);
+                                return bytes;
+                            })
+                            .defaultIfEmpty(new byte[0])
+                            .map(bytes -> fromCache(historyCache.put(key, stamp, etag, response.getHeaders(), bytes), clientEtags));
                 });
     }
-}
\ No newline at end of file
+
+    private Timer upstreamTimer(String route) {
+        Timer timer = upstreamTimers.get(route);
+        return timer != null ? timer : upstreamTimers.computeIfAbsent(route, this::registerUpstreamTimer);
+    }
+
+    private Timer registerUpstreamTimer(String route) {
+        return Timer.builder("gateway.upstream.requests")
+                .description("Time from sending a request to the backend until its response headers arrive")
+                .tag("route", route)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(responseTimeout)
+                .register(meterRegistry);
+    }
+
+    private static void upstreamFailures(MeterRegistry registry, String cause, LongAdder counter) {
+        FunctionCounter.builder("gateway.upstream.failures", counter, LongAdder::sum)
+                .tag("cause", cause)
+                .register(registry);
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> fromCache(HistoryResponseCache.Entry entry, List<String> clientEtags) {
+        if (matches(clientEtags, entry.etag())) {
+            historyCache.recordNotModifiedResponse();
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(entry.etag())
+                    .build();
+        }
+        return new ResponseEntity<>(
+                Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(entry.body())), entry.headers(), HttpStatus.OK);
+    }
+
+    private static boolean matches(List<String> clientEtags, String etag) {
+        String strong = stripWeak(etag);
+        for (String candidate : clientEtags) {
+            if ("*".equals(candidate) || stripWeak(candidate).equals(strong)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> upstreamFailureResponse(WebClientRequestException error) {
+        if (isTimeout(error)) {
+            timeouts.increment();
+            return errorResponse(HttpStatus.GATEWAY_TIMEOUT, "Backend timed out");
+        }
+        connectFailures.increment();
+        return errorResponse(HttpStatus.BAD_GATEWAY, "Backend unavailable: " + error.getMessage());
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> circuitOpenResponse() {
+        long retryAfterSeconds = Math.max(1, (circuitBreaker.retryAfter().toMillis() + 999) / 1000);
+        ResponseEntity<Flux<DataBuffer>> response = errorResponse(HttpStatus.SERVICE_UNAVAILABLE, "Backend unavailable, try again shortly");
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+    }
+
+    private static boolean isTimeout(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof ConnectTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ResponseEntity<Flux<DataBuffer>> withoutHopByHopHeaders(ResponseEntity<Flux<DataBuffer>> upstream) {
+        HttpHeaders headers = new HttpHeaders();
+        copyHeaders(upstream.getHeaders(), headers, EXCLUDED_RESPONSE_HEADERS);
+        return new ResponseEntity<>(upstream.getBody(), headers, upstream.getStatusCode());
+    }
+
+    private static void copyHeaders(HttpHeaders from, HttpHeaders to, Set<String> excluded) {
+        if (from == null) {
+            return;
+        }
+        from.forEach((name, values) -> {
+            if (!excluded.contains(name.toLowerCase())) {
+                to.addAll(name, values);
+            }
+        });
+    }
+
+    public static ResponseEntity<Flux<DataBuffer>> errorResponse(HttpStatus status, String message) {
+        DataBuffer buffer = DefaultDataBufferFactory.sharedInstance.wrap(message.getBytes(StandardCharsets.UTF_8));
+        return ResponseEntity.status(status)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(Flux.just(buffer));
+    }
+}
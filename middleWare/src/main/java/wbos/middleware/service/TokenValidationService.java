@@ -1,8 +1,10 @@
 package wbos.middleware.service;
 
+import io.jsonwebtoken.ExpiredJwtException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import wbos.middleware.dto.response.TokenValidationResponse;
+import wbos.middleware.dto.token.VerifiedToken;
 import wbos.middleware.util.JwtUtil;
 
 @Service
@@ -13,22 +15,19 @@ public class TokenValidationService {
 
     public TokenValidationResponse validateToken(String token) {
         try {
-            if (jwtUtil.validateToken(token)) {
-                String username = jwtUtil.extractUsername(token);
-                Long userId = jwtUtil.extractUserId(token);
+            VerifiedToken verified = jwtUtil.verify(token);
 
-                return TokenValidationResponse.builder()
-                        .valid(true)
-                        .username(username)
-                        .userId(userId)
-                        .message("Token is valid")
-                        .build();
-            } else {
-                return TokenValidationResponse.builder()
-                        .valid(false)
-                        .message("Token is expired")
-                        .build();
-            }
+            return TokenValidationResponse.builder()
+                    .valid(true)
+                    .username(verified.username())
+                    .userId(verified.userId())
+                    .message("Token is valid")
+                    .build();
+        } catch (ExpiredJwtException e) {
+            return TokenValidationResponse.builder()
+                    .valid(false)
+                    .message("Token is expired")
+                    .build();
         } catch (Exception e) {
             return TokenValidationResponse.builder()
                     .valid(false)
@@ -36,4 +35,4 @@ public class TokenValidationService {
                     .build();
         }
     }
-}
\ No newline at end of file
+}
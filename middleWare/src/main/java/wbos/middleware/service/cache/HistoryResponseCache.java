@@ -0,0 +1,171 @@
+package wbos.middleware.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import wbos.middleware.util.ConversationIds;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Message history responses per user and query, with the backend ETag they
+ * were served with.
+ *
+ * <p>An entry younger than {@code fresh-for} is answered locally; an older one
+ * is revalidated with If-None-Match so an unchanged page costs the backend no
+ * body. A message posted through this gateway drops every entry of its
+ * conversation at once: posts and fills are stamped from one clock, and an
+ * entry filled before its conversation's last post is ignored. The backend
+ * persists posts through a write-behind queue and marks pages no-store while
+ * the conversation still has unwritten messages, however long the database
+ * takes; such pages are served but not kept. Posts through other gateway nodes
+ * are picked up at the next revalidation, so {@code fresh-for} bounds how
+ * stale a page can be.
+ */
+@Service
+public class HistoryResponseCache implements MeterBinder {
+
+    public record Key(Long userId, Long recipientId, String before, Integer limit) {
+
+        String conversationId() {
+            return ConversationIds.of(userId, recipientId);
+        }
+    }
+
+    public record Entry(String etag, HttpHeaders headers, byte[] body, long stamp, long storedAtNanos) {
+    }
+
+    private final Cache<Key, Entry> entries;
+    // Kept at least as long as entries, so a forgotten post can only concern entries already gone
+    private final Cache<String, Long> invalidatedAt;
+    private final long freshForNanos;
+    private final int maxEntryBytes;
+
+    private final LongAdder freshHits = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder upstreamNotModified = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder notModifiedResponses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public HistoryResponseCache(@Value("${cache.history.maximum-size:10000}") long maximumSize,
+                                @Value("${cache.history.ttl:10m}") Duration ttl,
+                                @Value("${cache.history.fresh-for:2s}") Duration freshFor,
+                                @Value("${cache.history.max-entry-bytes:262144}") int maxEntryBytes) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+        this.invalidatedAt = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .build();
+        this.freshForNanos = freshFor.toNanos();
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    /**
+     * @return the entry if it was filled after the conversation last changed, else null
+     */
+    public Entry get(Key key) {
+        Entry entry = entries.getIfPresent(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (isInvalidated(key, entry.stamp())) {
+            entries.invalidate(key);
+            misses.increment();
+            return null;
+        }
+        if (isFresh(entry)) {
+            freshHits.increment();
+        } else {
+            revalidations.increment();
+        }
+        return entry;
+    }
+
+    public boolean isFresh(Entry entry) {
+        return System.nanoTime() - entry.storedAtNanos() < freshForNanos;
+    }
+
+    /**
+     * Taken just before asking the backend; pass it to {@link #put} or {@link #revalidated}.
+     */
+    public long stamp() {
+        return System.nanoTime();
+    }
+
+    public Entry put(Key key, long stamp, String etag, HttpHeaders headers, byte[] body) {
+        Entry entry = new Entry(etag, HttpHeaders.readOnlyHttpHeaders(headers), body, stamp, System.nanoTime());
+        if (body.length <= maxEntryBytes && isStorable(headers) && !isInvalidated(key, stamp)) {
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * The backend answered 304 for this entry's ETag; its headers say whether
+     * the page may be kept for another fresh-for period.
+     */
+    public Entry revalidated(Key key, Entry entry, long stamp, HttpHeaders notModifiedHeaders) {
+        upstreamNotModified.increment();
+        if (!isStorable(notModifiedHeaders)) {
+            entries.invalidate(key);
+            return entry;
+        }
+        return put(key, stamp, entry.etag(), entry.headers(), entry.body());
+    }
+
+    /**
+     * Entries stamped before now are not served.
+     */
+    public void invalidateConversation(String conversationId) {
+        invalidations.increment();
+        invalidatedAt.asMap().merge(conversationId, System.nanoTime(), Math::max);
+    }
+
+    private static boolean isStorable(HttpHeaders headers) {
+        String cacheControl = headers.getCacheControl();
+        return cacheControl == null || !cacheControl.contains("no-store");
+    }
+
+    private boolean isInvalidated(Key key, long stamp) {
+        Long invalidated = invalidatedAt.getIfPresent(key.conversationId());
+        return invalidated != null && stamp - invalidated < 0;
+    }
+
+    public void recordNotModifiedResponse() {
+        notModifiedResponses.increment();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        lookups(registry, "fresh", freshHits);
+        lookups(registry, "revalidate", revalidations);
+        lookups(registry, "miss", misses);
+        FunctionCounter.builder("gateway.history.cache.upstream.not.modified", upstreamNotModified, LongAdder::sum)
+                .description("Revalidations the backend answered 304 without a body")
+                .register(registry);
+        FunctionCounter.builder("gateway.history.cache.not.modified.responses", notModifiedResponses, LongAdder::sum)
+                .description("304s sent to clients that already held the current ETag")
+                .register(registry);
+        FunctionCounter.builder("gateway.history.cache.invalidations", invalidations, LongAdder::sum)
+                .register(registry);
+        Gauge.builder("gateway.history.cache.size", entries, Cache::estimatedSize)
+                .register(registry);
+    }
+
+    private static void lookups(MeterRegistry registry, String result, LongAdder counter) {
+        FunctionCounter.builder("gateway.history.cache.lookups", counter, LongAdder::sum)
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -1,29 +1,354 @@
 package wbos.middleware.service.cache;
 
-import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.Cacheable;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 import wbos.middleware.dto.user.CachedUser;
 import wbos.middleware.entities.UserEntity;
 import wbos.middleware.repositories.UserRepository;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two-tier user lookup: a bounded in-process near cache (L1) in front of the
+ * shared Redis "users" cache (L2), with MySQL as the source of truth.
+ *
+ * <p>Lookups never block the caller: L2 goes through the reactive Redis
+ * client and database loads run on the bounded JDBC scheduler. An unknown id
+ * completes empty. Concurrent L1 misses for one id share a single L2/DB load,
+ * and shared entries close to expiry are reloaded early in the background.
+ *
+ * <p>Unknown ids are cached negatively in both tiers so tokens for deleted or
+ * made-up users cannot push every request through to the database. Changes are
+ * announced on a Redis channel; every gateway node drops its L1 entry and the
+ * shared L2 entry when it sees one.
+ *
+ * <p>An invalidation also bumps the id's generation. A load records the
+ * generation when it starts and stores nothing if it has moved on by the time
+ * the result arrives, so a read that raced a change cannot put the old user
+ * back into either tier after the eviction.
+ */
 @Service
-@RequiredArgsConstructor
-public class UserCacheService {
+@Slf4j
+public class UserCacheService implements MessageListener, MeterBinder {
+
+    public static final String USERS_KEY_PREFIX = "users::";
+    public static final String MISSING_USERS_KEY_PREFIX = "users-missing::";
+    // Ids share generation slots; a collision only skips caching one load
+    private static final int GENERATION_SLOTS = 1024;
 
     private final UserRepository userRepository;
+    private final ReactiveRedisTemplate<String, Object> redisTemplate;
+    private final Scheduler jdbcScheduler;
+    private final Cache<Long, CachedUser> nearUsers;
+    private final Cache<Long, Boolean> nearMissingUsers;
+    private final Duration sharedTtl;
+    private final Duration sharedMissingTtl;
+    private final double earlyRefreshBeta;
+
+    private final Map<Long, Mono<CachedUser>> inFlight = new ConcurrentHashMap<>();
+    private final Set<Long> refreshing = ConcurrentHashMap.newKeySet();
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_SLOTS);
+    private volatile long averageLoadNanos;
+
+    private final LongAdder l1Hits = new LongAdder();
+    private final LongAdder l1Misses = new LongAdder();
+    private final LongAdder l2Hits = new LongAdder();
+    private final LongAdder l2Misses = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder dbLoads = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder earlyRefreshes = new LongAdder();
+
+    public UserCacheService(UserRepository userRepository,
+                            ReactiveRedisTemplate<String, Object> userCacheRedisTemplate,
+                            Scheduler jdbcScheduler,
+                            @Value("${cache.users.near.maximum-size:10000}") long nearMaximumSize,
+                            @Value("${cache.users.near.ttl:30s}") Duration nearTtl,
+                            @Value("${cache.users.near.missing-ttl:60s}") Duration nearMissingTtl,
+                            @Value("${cache.users.ttl:1h}") Duration sharedTtl,
+                            @Value("${cache.users.missing-ttl:5m}") Duration sharedMissingTtl,
+                            @Value("${cache.users.early-refresh-beta:1.0}") double earlyRefreshBeta,
+                            @Value("${cache.users.expected-load-time:20ms}") Duration expectedLoadTime) {
+        this.userRepository = userRepository;
+        this.redisTemplate = userCacheRedisTemplate;
+        this.jdbcScheduler = jdbcScheduler;
+        this.nearUsers = Caffeine.newBuilder()
+                .maximumSize(nearMaximumSize)
+                .expireAfterWrite(nearTtl)
+                .build();
+        this.nearMissingUsers = Caffeine.newBuilder()
+                .maximumSize(nearMaximumSize)
+                .expireAfterWrite(nearMissingTtl)
+                .build();
+        this.sharedTtl = sharedTtl;
+        this.sharedMissingTtl = sharedMissingTtl;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        // A node that only ever reads L2 never times a load of its own, so start from the expected cost
+        this.averageLoadNanos = expectedLoadTime.toNanos();
+    }
+
+    public Mono<CachedUser> getUserById(Long userId) {
+        CachedUser user = nearUsers.getIfPresent(userId);
+        if (user != null) {
+            l1Hits.increment();
+            return Mono.just(user);
+        }
+        if (nearMissingUsers.getIfPresent(userId) != null) {
+            l1Hits.increment();
+            negativeHits.increment();
+            return Mono.empty();
+        }
+        l1Misses.increment();
+
+        return coalesce(userId);
+    }
+
+    /**
+     * Concurrent misses for the same id share one load: the first caller starts
+     * it, later callers subscribe to the same cached Mono until it completes.
+     */
+    private Mono<CachedUser> coalesce(Long userId) {
+        AtomicReference<Mono<CachedUser>> created = new AtomicReference<>();
+        Mono<CachedUser> load = inFlight.computeIfAbsent(userId, id -> {
+            Mono<CachedUser> shared = Mono.defer(() -> loadShared(id))
+                    .doFinally(signal -> inFlight.remove(id, created.get()))
+                    .cache();
+            created.set(shared);
+            return shared;
+        });
+        if (load != created.get()) {
+            coalesced.increment();
+        }
+        return load;
+    }
+
+    private Mono<CachedUser> loadShared(Long userId) {
+        long generation = generation(userId);
+        String key = USERS_KEY_PREFIX + userId;
+        // Both commands go out on the same connection, so the TTL costs no extra round trip
+        return Mono.zip(
+                        redisTemplate.opsForValue().get(key).ofType(CachedUser.class),
+                        redisTemplate.getExpire(key).defaultIfEmpty(Duration.ZERO))
+                .map(found -> {
+                    l2Hits.increment();
+                    if (isCurrent(userId, generation)) {
+                        nearUsers.put(userId, found.getT1());
+                    }
+                    if (shouldRefreshEarly(found.getT2())) {
+                        refreshInBackground(userId);
+                    }
+                    return found.getT1();
+                })
+                .onErrorResume(e -> {
+                    log.warn("Shared user cache read failed for user {}: {}", userId, e.getMessage());
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.defer(() -> missingOrLoad(userId, generation)));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Long userId;
+        try {
+            userId = Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed user invalidation message");
+            return;
+        }
+
+        invalidations.increment();
+        // Bumped first so loads already running see it before they store anything
+        generations.incrementAndGet(slot(userId));
+        inFlight.remove(userId);
+        nearUsers.invalidate(userId);
+        nearMissingUsers.invalidate(userId);
+        // Every node evicts the shared tier too; DEL is idempotent and user changes are rare
+        redisTemplate.delete(USERS_KEY_PREFIX + userId, MISSING_USERS_KEY_PREFIX + userId)
+                .subscribe(null, e -> log.warn("Failed to evict user {} from shared cache: {}", userId, e.getMessage()));
+    }
+
+    /**
+     * Exposes the cache counters; they are read on scrape, so lookups only
+     * pay for the LongAdder increments they already do.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        lookups(registry, "l1", "hit", l1Hits);
+        lookups(registry, "l1", "miss", l1Misses);
+        lookups(registry, "l2", "hit", l2Hits);
+        lookups(registry, "l2", "miss", l2Misses);
+        FunctionCounter.builder("gateway.user.cache.negative.hits", negativeHits, LongAdder::sum)
+                .description("Lookups answered from the cached knowledge that a user does not exist")
+                .register(registry);
+        FunctionCounter.builder("gateway.user.cache.db.loads", dbLoads, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("gateway.user.cache.coalesced", coalesced, LongAdder::sum)
+                .description("Misses that joined a load already in flight for the same user")
+                .register(registry);
+        FunctionCounter.builder("gateway.user.cache.early.refreshes", earlyRefreshes, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("gateway.user.cache.invalidations", invalidations, LongAdder::sum)
+                .register(registry);
+        Gauge.builder("gateway.user.cache.near.size", nearUsers, Cache::estimatedSize)
+                .register(registry);
+        Gauge.builder("gateway.user.cache.near.missing.size", nearMissingUsers, Cache::estimatedSize)
+                .register(registry);
+    }
+
+    private static void lookups(MeterRegistry registry, String tier, String result, LongAdder counter) {
+        FunctionCounter.builder("gateway.user.cache.lookups", counter, LongAdder::sum)
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(registry);
+    }
 
-    @Cacheable(value = "users", key = "#userId")
-    public CachedUser getUserById(Long userId) {
-        UserEntity user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    /**
+     * Probabilistic early expiration ("XFetch"): the closer the shared entry is
+     * to expiring, relative to how long a reload takes, the more likely a read
+     * reloads it ahead of time. Hot users are refreshed by one reader before
+     * their TTL runs out instead of by every reader at once after it has.
+     */
+    private boolean shouldRefreshEarly(Duration remaining) {
+        // ZERO means the key has no TTL
+        if (earlyRefreshBeta <= 0 || remaining.isZero()) {
+            return false;
+        }
+        double draw = -Math.log(ThreadLocalRandom.current().nextDouble());
+        return averageLoadNanos * earlyRefreshBeta * draw >= remaining.toNanos();
+    }
+
+    private void refreshInBackground(Long userId) {
+        if (!refreshing.add(userId)) {
+            return;
+        }
+        earlyRefreshes.increment();
+        loadFromDatabase(userId, generation(userId))
+                .doFinally(signal -> refreshing.remove(userId))
+                .subscribe(null, e -> log.warn("Early refresh failed for user {}: {}", userId, e.getMessage()));
+    }
+
+    private Mono<CachedUser> missingOrLoad(Long userId, long generation) {
+        return redisTemplate.hasKey(MISSING_USERS_KEY_PREFIX + userId)
+                .onErrorReturn(false)
+                .flatMap(missing -> {
+                    if (missing) {
+                        l2Hits.increment();
+                        negativeHits.increment();
+                        if (isCurrent(userId, generation)) {
+                            nearMissingUsers.put(userId, Boolean.TRUE);
+                        }
+                        return Mono.empty();
+                    }
+                    l2Misses.increment();
+                    return loadFromDatabase(userId, generation);
+                });
+    }
+
+    private Mono<CachedUser> loadFromDatabase(Long userId, long generation) {
+        return Mono.fromCallable(() -> {
+                    dbLoads.increment();
+                    long start = System.nanoTime();
+                    Optional<UserEntity> entity = userRepository.findById(userId);
+                    recordLoadTime(System.nanoTime() - start);
+                    return entity;
+                })
+                .subscribeOn(jdbcScheduler)
+                .flatMap(entity -> entity.map(found -> storeUser(userId, toCachedUser(found), generation))
+                        .orElseGet(() -> storeMissing(userId, generation)));
+    }
+
+    private void recordLoadTime(long nanos) {
+        // Exponential moving average; a lost update under contention only nudges a heuristic
+        long average = averageLoadNanos;
+        averageLoadNanos = average + (nanos - average) / 8;
+    }
+
+    private Mono<CachedUser> storeUser(Long userId, CachedUser user, long generation) {
+        if (!isCurrent(userId, generation)) {
+            return Mono.just(user);
+        }
+        nearUsers.put(userId, user);
+        String key = USERS_KEY_PREFIX + userId;
+        return redisTemplate.opsForValue().set(key, user, sharedTtl)
+                .onErrorResume(e -> {
+                    log.warn("Shared user cache write failed for user {}: {}", userId, e.getMessage());
+                    return Mono.just(false);
+                })
+                .then(undoIfInvalidated(userId, generation, key))
+                .thenReturn(user);
+    }
+
+    private Mono<CachedUser> storeMissing(Long userId, long generation) {
+        if (!isCurrent(userId, generation)) {
+            return Mono.empty();
+        }
+        nearMissingUsers.put(userId, Boolean.TRUE);
+        String key = MISSING_USERS_KEY_PREFIX + userId;
+        // Negative entries expire sooner so a newly created user is not hidden for long
+        return redisTemplate.opsForValue().set(key, Boolean.TRUE, sharedMissingTtl)
+                .onErrorResume(e -> Mono.just(false))
+                .then(undoIfInvalidated(userId, generation, key))
+                .then(Mono.empty());
+    }
+
+    /**
+     * An invalidation that lands while the L2 write is in flight may have been
+     * applied before it; drop what was just written, the L1 entry included.
+     */
+    private Mono<Void> undoIfInvalidated(Long userId, long generation, String key) {
+        return Mono.defer(() -> {
+            if (isCurrent(userId, generation)) {
+                return Mono.empty();
+            }
+            nearUsers.invalidate(userId);
+            nearMissingUsers.invalidate(userId);
+            return redisTemplate.delete(key)
+                    .onErrorResume(e -> Mono.just(0L))
+                    .then();
+        });
+    }
+
+    private long generation(Long userId) {
+        return generations.get(slot(userId));
+    }
+
+    private boolean isCurrent(Long userId, long generation) {
+        return generations.get(slot(userId)) == generation;
+    }
+
+    private static int slot(Long userId) {
+        return Long.hashCode(userId) & (GENERATION_SLOTS - 1);
+    }
 
+    private static CachedUser toCachedUser(UserEntity entity) {
         return CachedUser.builder()
-                .id(user.getId())
-                .username(user.getUsername())
-                .email(user.getEmail())
-                .firstName(user.getFirstName())
-                .lastName(user.getLastName())
+                .id(entity.getId())
+                .username(entity.getUsername())
+                .email(entity.getEmail())
+                .firstName(entity.getFirstName())
+                .lastName(entity.getLastName())
                 .build();
     }
-}
\ No newline at end of file
+}
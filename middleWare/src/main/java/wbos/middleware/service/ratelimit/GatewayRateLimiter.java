@@ -0,0 +1,209 @@
+package wbos.middleware.service.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import wbos.middleware.config.RateLimitProperties;
+import wbos.middleware.service.GatewayService;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Per-caller token buckets for gateway routes, plus an optional budget per
+ * route shared by all callers.
+ *
+ * <p>Every decision is made on an in-process {@link TokenBucket}, so a request
+ * pays one map lookup and one CAS. Once per sync interval the tokens each
+ * active bucket spent are added to a Redis counter for the current minute;
+ * the total tells each replica what the others spent, and that is taken out of
+ * its own bucket. Replicas therefore share one budget per caller, enforced
+ * with up to one sync interval of lag. A bucket idle on this replica does not
+ * poll Redis, so a caller moving between replicas may get one extra burst.
+ */
+@Service
+@Slf4j
+public class GatewayRateLimiter implements MeterBinder {
+
+    public static final String AUTH = "auth";
+    public static final String AUTH_AVAILABILITY = "auth-availability";
+    public static final String MESSAGES_SEND = "messages-send";
+    public static final String MESSAGES_READ = "messages-read";
+    public static final String CHAT_APP = "chat-app";
+
+    private static final String GLOBAL_KEY = "*";
+    private static final String REDIS_KEY_PREFIX = "ratelimit:";
+    private static final long EPOCH_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int SYNC_CONCURRENCY = 64;
+
+    private final RateLimitProperties properties;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final Cache<String, TokenBucket> buckets;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder limited = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder syncFailures = new LongAdder();
+
+    private Disposable sync;
+
+    public GatewayRateLimiter(RateLimitProperties properties, ReactiveStringRedisTemplate redisTemplate) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumBuckets())
+                .expireAfterAccess(properties.getIdleTimeout())
+                .build();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        sync = Flux.interval(properties.getSyncInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> reconcile(), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sync != null) {
+            sync.dispose();
+        }
+    }
+
+    /**
+     * Runs {@code call} if {@code key} has a token left on {@code route}, otherwise
+     * answers 429 with Retry-After.
+     */
+    public Mono<ResponseEntity<Flux<DataBuffer>>> limit(
+            String route,
+            String key,
+            Supplier<Mono<ResponseEntity<Flux<DataBuffer>>>> call) {
+
+        long waitNanos = tryAcquire(route, key);
+        if (waitNanos == 0) {
+            allowed.increment();
+            return call.get();
+        }
+        limited.increment();
+        return Mono.just(tooManyRequests(waitNanos));
+    }
+
+    /**
+     * @return 0 if allowed, otherwise the nanoseconds until a token is available
+     */
+    public long tryAcquire(String route, String key) {
+        if (!properties.isEnabled()) {
+            return 0;
+        }
+        RateLimitProperties.Limit limit = properties.getRoutes().get(route);
+        if (limit == null) {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        TokenBucket own = bucket(route + ":" + key, limit.getCapacity(), limit.getRefillPerSecond(), now);
+        long wait = own.tryAcquire(now);
+        if (wait == 0 && limit.getGlobalCapacity() > 0) {
+            wait = bucket(route + ":" + GLOBAL_KEY, limit.getGlobalCapacity(), limit.getGlobalRefillPerSecond(), now)
+                    .tryAcquire(now);
+            // Refused by the shared budget: the caller's own token was not used
+            if (wait != 0) {
+                own.refund();
+            }
+        }
+        return wait;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("gateway.rate.limit.requests", allowed, LongAdder::sum)
+                .tag("result", "allowed")
+                .register(registry);
+        FunctionCounter.builder("gateway.rate.limit.requests", limited, LongAdder::sum)
+                .tag("result", "limited")
+                .register(registry);
+        FunctionCounter.builder("gateway.rate.limit.syncs", syncs, LongAdder::sum)
+                .tag("result", "ok")
+                .register(registry);
+        FunctionCounter.builder("gateway.rate.limit.syncs", syncFailures, LongAdder::sum)
+                .tag("result", "failed")
+                .description("Bucket syncs with Redis that failed and will be retried")
+                .register(registry);
+        Gauge.builder("gateway.rate.limit.buckets", buckets, Cache::estimatedSize)
+                .register(registry);
+    }
+
+    private TokenBucket bucket(String id, long capacity, double refillPerSecond, long now) {
+        TokenBucket bucket = buckets.getIfPresent(id);
+        return bucket != null ? bucket : buckets.get(id, ignored -> new TokenBucket(capacity, refillPerSecond, now));
+    }
+
+    Mono<Void> reconcile() {
+        long epoch = System.currentTimeMillis() / EPOCH_MILLIS;
+        return Flux.fromIterable(buckets.asMap().entrySet())
+                .flatMap(entry -> reconcile(entry, epoch), SYNC_CONCURRENCY)
+                .then();
+    }
+
+    private Mono<Void> reconcile(Map.Entry<String, TokenBucket> entry, long epoch) {
+        TokenBucket bucket = entry.getValue();
+        if (bucket.syncEpoch != epoch) {
+            bucket.syncEpoch = epoch;
+            bucket.syncedOwn = 0;
+            bucket.syncedOthers = 0;
+        }
+        long spent = bucket.drainUnsynced();
+        if (spent == 0) {
+            return Mono.empty();
+        }
+
+        String redisKey = REDIS_KEY_PREFIX + entry.getKey() + ":" + epoch;
+        return redisTemplate.opsForValue().increment(redisKey, spent)
+                .flatMap(total -> redisTemplate.expire(redisKey, Duration.ofMillis(2 * EPOCH_MILLIS)).thenReturn(total))
+                .doOnNext(total -> {
+                    syncs.increment();
+                    bucket.syncedOwn += spent;
+                    long others = total - bucket.syncedOwn;
+                    bucket.consume(others - bucket.syncedOthers, System.nanoTime());
+                    bucket.syncedOthers = others;
+                })
+                .onErrorResume(e -> {
+                    // Keep enforcing locally and report the tokens again next time
+                    syncFailures.increment();
+                    bucket.restoreUnsynced(spent);
+                    log.debug("Rate limit sync failed for {}: {}", entry.getKey(), e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private static ResponseEntity<Flux<DataBuffer>> tooManyRequests(long waitNanos) {
+        ResponseEntity<Flux<DataBuffer>> response = GatewayService.errorResponse(HttpStatus.TOO_MANY_REQUESTS, "Too many requests");
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+        return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+    }
+}
@@ -0,0 +1,76 @@
+package wbos.middleware.service.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in its GCRA form: the whole state is one "theoretical
+ * arrival time" (TAT), so taking a token is a single compare-and-set and
+ * allocates nothing. A bucket holding {@code capacity} tokens refills one
+ * token every {@code interval} nanoseconds.
+ */
+public class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong tat;
+    // Tokens taken here since the last reconciliation with the shared budget
+    private final AtomicLong unsynced = new AtomicLong();
+
+    // Reconciliation state, only touched by the sync task
+    long syncEpoch;
+    long syncedOwn;
+    long syncedOthers;
+
+    public TokenBucket(long capacity, double refillPerSecond, long nowNanos) {
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / refillPerSecond));
+        this.burstNanos = intervalNanos * capacity;
+        this.tat = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * @return 0 if a token was taken, otherwise the nanoseconds until one is available
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = tat.get();
+            long next = Math.max(current, nowNanos) + intervalNanos;
+            long wait = next - nowNanos - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (tat.compareAndSet(current, next)) {
+                unsynced.incrementAndGet();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Removes tokens spent elsewhere, e.g. on other gateway replicas. Debt is
+     * capped at one extra bucket so a burst elsewhere cannot lock a key out for long.
+     */
+    public void consume(long tokens, long nowNanos) {
+        if (tokens <= 0) {
+            return;
+        }
+        long ceiling = nowNanos + 2 * burstNanos;
+        tat.accumulateAndGet(tokens * intervalNanos,
+                (current, cost) -> Math.min(ceiling, Math.max(current, nowNanos) + cost));
+    }
+
+    /**
+     * Gives back a token taken by {@link #tryAcquire} for a request that was refused anyway.
+     */
+    public void refund() {
+        tat.addAndGet(-intervalNanos);
+        unsynced.decrementAndGet();
+    }
+
+    long drainUnsynced() {
+        return unsynced.getAndSet(0);
+    }
+
+    void restoreUnsynced(long tokens) {
+        unsynced.addAndGet(tokens);
+    }
+}
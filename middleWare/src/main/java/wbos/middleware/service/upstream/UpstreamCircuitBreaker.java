@@ -0,0 +1,199 @@
+package wbos.middleware.service.upstream;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count-based circuit breaker for gateway-to-backend calls.
+ *
+ * <p>While CLOSED the outcome of the last {@code windowSize} calls is kept;
+ * once at least {@code minimumCalls} are recorded and the failure rate reaches
+ * the threshold the breaker OPENs and calls fail fast. After the open duration
+ * a few trial calls are let through (HALF_OPEN): if all succeed the breaker
+ * closes again, any failure re-opens it.
+ *
+ * <p>Every {@link #tryAcquire()} that returns true must be followed by exactly
+ * one of {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+ */
+@Component
+@Slf4j
+public class UpstreamCircuitBreaker implements MeterBinder {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final boolean enabled;
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    private final LongAdder rejected = new LongAdder();
+
+    // Guarded by this; the calls being protected are network round trips, so a monitor is cheap here
+    private State state = State.CLOSED;
+    private int windowIndex;
+    private int recordedCalls;
+    private int recordedFailures;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    public UpstreamCircuitBreaker(
+            @Value("${backend.client.circuit-breaker.enabled:true}") boolean enabled,
+            @Value("${backend.client.circuit-breaker.window-size:50}") int windowSize,
+            @Value("${backend.client.circuit-breaker.minimum-calls:20}") int minimumCalls,
+            @Value("${backend.client.circuit-breaker.failure-rate-threshold:50}") double failureRateThresholdPercent,
+            @Value("${backend.client.circuit-breaker.open-duration:10s}") Duration openDuration,
+            @Value("${backend.client.circuit-breaker.half-open-calls:5}") int halfOpenCalls) {
+        this.enabled = enabled;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThresholdPercent / 100.0;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    /**
+     * @return false when the call must not be attempted
+     */
+    public synchronized boolean tryAcquire() {
+        if (!enabled) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                rejected.increment();
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                rejected.increment();
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (!enabled) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (++halfOpenSuccesses >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (!enabled) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+            return;
+        }
+        if (state == State.CLOSED) {
+            record(true);
+            if (recordedCalls >= minimumCalls && failureRate() >= failureRateThreshold) {
+                transitionTo(State.OPEN);
+            }
+        }
+    }
+
+    /**
+     * The call ended without telling us anything about the backend, e.g. the client went away.
+     */
+    public synchronized void onIgnored() {
+        if (enabled && state == State.HALF_OPEN) {
+            halfOpenPermits++;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public synchronized double failureRate() {
+        return recordedCalls == 0 ? 0 : (double) recordedFailures / recordedCalls;
+    }
+
+    /**
+     * Time until an open breaker lets trial calls through, zero otherwise.
+     */
+    public synchronized Duration retryAfter() {
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(Math.max(0, openNanos - (System.nanoTime() - openedAt)));
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (State candidate : State.values()) {
+            Gauge.builder("gateway.upstream.circuit.state", this, breaker -> breaker.state() == candidate ? 1 : 0)
+                    .tag("state", candidate.name().toLowerCase())
+                    .register(registry);
+        }
+        Gauge.builder("gateway.upstream.circuit.failure.rate", this, UpstreamCircuitBreaker::failureRate)
+                .description("Share of failed calls in the current window")
+                .register(registry);
+        FunctionCounter.builder("gateway.upstream.circuit.short.circuited", rejected, LongAdder::sum)
+                .description("Calls failed fast without reaching the backend")
+                .register(registry);
+    }
+
+    private void record(boolean failure) {
+        if (recordedCalls == window.length) {
+            if (window[windowIndex]) {
+                recordedFailures--;
+            }
+        } else {
+            recordedCalls++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            recordedFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void transitionTo(State next) {
+        log.info("Backend circuit breaker {} -> {} (failure rate {})", state, next, failureRate());
+        state = next;
+        switch (next) {
+            case OPEN -> openedAt = System.nanoTime();
+            case HALF_OPEN -> {
+                halfOpenPermits = halfOpenCalls;
+                halfOpenSuccesses = 0;
+            }
+            case CLOSED -> {
+                windowIndex = 0;
+                recordedCalls = 0;
+                recordedFailures = 0;
+            }
+        }
+    }
+}
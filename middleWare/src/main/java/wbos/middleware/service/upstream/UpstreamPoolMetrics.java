@@ -0,0 +1,61 @@
+package wbos.middleware.service.upstream;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Keeps a handle on the live metrics of every backend connection pool and
+ * publishes their totals as gauges. Reactor Netty creates one pool per remote
+ * address; summing them keeps the series count fixed however many there are.
+ */
+@Component
+public class UpstreamPoolMetrics implements ConnectionProvider.MeterRegistrar, MeterBinder {
+
+    private final Map<String, ConnectionPoolMetrics> pools = new ConcurrentHashMap<>();
+
+    @Override
+    public void registerMetrics(String poolName, String id, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+        pools.put(id, metrics);
+    }
+
+    @Override
+    public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+        pools.remove(id);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        connections(registry, "acquired", ConnectionPoolMetrics::acquiredSize);
+        connections(registry, "idle", ConnectionPoolMetrics::idleSize);
+        connections(registry, "allocated", ConnectionPoolMetrics::allocatedSize);
+        Gauge.builder("gateway.upstream.connections.max", this, metrics -> metrics.sum(ConnectionPoolMetrics::maxAllocatedSize))
+                .register(registry);
+        Gauge.builder("gateway.upstream.pending.acquires", this, metrics -> metrics.sum(ConnectionPoolMetrics::pendingAcquireSize))
+                .register(registry);
+        Gauge.builder("gateway.upstream.pending.acquires.max", this, metrics -> metrics.sum(ConnectionPoolMetrics::maxPendingAcquireSize))
+                .register(registry);
+    }
+
+    private void connections(MeterRegistry registry, String state, ToIntFunction<ConnectionPoolMetrics> size) {
+        Gauge.builder("gateway.upstream.connections", this, metrics -> metrics.sum(size))
+                .tag("state", state)
+                .register(registry);
+    }
+
+    private int sum(ToIntFunction<ConnectionPoolMetrics> size) {
+        int total = 0;
+        for (ConnectionPoolMetrics pool : pools.values()) {
+            total += size.applyAsInt(pool);
+        }
+        return total;
+    }
+}
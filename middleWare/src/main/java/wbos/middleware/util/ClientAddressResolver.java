@@ -0,0 +1,155 @@
+package wbos.middleware.util;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import wbos.middleware.config.RateLimitProperties;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the address of the client behind a request. The socket address is
+ * used unless it belongs to a trusted proxy; then the configured forwarded
+ * header is read from the right, skipping trusted hops, and the first address
+ * not added by a trusted proxy is the client. Entries further left were
+ * written by the client itself and are never believed.
+ */
+@Component
+public class ClientAddressResolver {
+
+    private static final String UNKNOWN = "unknown";
+    private static final String X_FORWARDED_FOR = "X-Forwarded-For";
+    private static final String FORWARDED = "Forwarded";
+    private static final Pattern IPV4 = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+
+    private record Subnet(byte[] address, int prefixBits) {
+
+        boolean contains(byte[] candidate) {
+            if (candidate.length != address.length) {
+                return false;
+            }
+            int fullBytes = prefixBits / 8;
+            for (int i = 0; i < fullBytes; i++) {
+                if (candidate[i] != address[i]) {
+                    return false;
+                }
+            }
+            int remainingBits = prefixBits % 8;
+            if (remainingBits == 0) {
+                return true;
+            }
+            int mask = 0xFF << (8 - remainingBits);
+            return (candidate[fullBytes] & mask) == (address[fullBytes] & mask);
+        }
+    }
+
+    private final RateLimitProperties.ClientAddress.Header header;
+    private final List<Subnet> trustedProxies = new ArrayList<>();
+
+    public ClientAddressResolver(RateLimitProperties properties) {
+        RateLimitProperties.ClientAddress config = properties.getClientAddress();
+        this.header = config.getHeader();
+        for (String proxy : config.getTrustedProxies()) {
+            String[] parts = proxy.trim().split("/", 2);
+            byte[] address = parseLiteral(parts[0]);
+            if (address == null) {
+                throw new IllegalArgumentException("Trusted proxy is not an IP address or CIDR range: " + proxy);
+            }
+            int prefixBits = parts.length == 2 ? Integer.parseInt(parts[1]) : address.length * 8;
+            trustedProxies.add(new Subnet(address, prefixBits));
+        }
+    }
+
+    public String resolve(ServerHttpRequest request) {
+        InetSocketAddress remote = request.getRemoteAddress();
+        if (remote == null || remote.getAddress() == null) {
+            return UNKNOWN;
+        }
+        String address = remote.getAddress().getHostAddress();
+        if (header == RateLimitProperties.ClientAddress.Header.NONE || !isTrusted(address)) {
+            return address;
+        }
+
+        List<String> hops = header == RateLimitProperties.ClientAddress.Header.FORWARDED
+                ? forwardedFor(request.getHeaders())
+                : xForwardedFor(request.getHeaders());
+        for (int i = hops.size() - 1; i >= 0; i--) {
+            address = hops.get(i);
+            if (!isTrusted(address)) {
+                return address;
+            }
+        }
+        return address;
+    }
+
+    private boolean isTrusted(String address) {
+        byte[] bytes = parseLiteral(address);
+        if (bytes == null) {
+            return false;
+        }
+        for (Subnet subnet : trustedProxies) {
+            if (subnet.contains(bytes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> xForwardedFor(HttpHeaders headers) {
+        List<String> hops = new ArrayList<>();
+        for (String value : headers.getOrEmpty(X_FORWARDED_FOR)) {
+            for (String hop : value.split(",")) {
+                if (!hop.isBlank()) {
+                    hops.add(hop.trim());
+                }
+            }
+        }
+        return hops;
+    }
+
+    // RFC 7239: Forwarded: for=192.0.2.60;proto=https, for="[2001:db8::1]:4711"
+    private static List<String> forwardedFor(HttpHeaders headers) {
+        List<String> hops = new ArrayList<>();
+        for (String value : headers.getOrEmpty(FORWARDED)) {
+            for (String element : value.split(",")) {
+                for (String pair : element.split(";")) {
+                    String trimmed = pair.trim();
+                    if (trimmed.regionMatches(true, 0, "for=", 0, 4)) {
+                        hops.add(stripPort(trimmed.substring(4).replace("\"", "")));
+                    }
+                }
+            }
+        }
+        return hops;
+    }
+
+    private static String stripPort(String node) {
+        if (node.startsWith("[")) {
+            int end = node.indexOf(']');
+            return end > 0 ? node.substring(1, end) : node;
+        }
+        int colon = node.indexOf(':');
+        // A single colon is IPv4 with a port; more than one is a bare IPv6 address
+        return colon > 0 && colon == node.lastIndexOf(':') ? node.substring(0, colon) : node;
+    }
+
+    /**
+     * Parses an IP literal without ever falling back to a DNS lookup.
+     */
+    private static byte[] parseLiteral(String value) {
+        // Dotted-quad IPv4, or anything with a colon, which InetAddress only ever parses as IPv6
+        if (!IPV4.matcher(value).matches() && value.indexOf(':') < 0) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(value).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
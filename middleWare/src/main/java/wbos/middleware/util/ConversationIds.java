@@ -0,0 +1,21 @@
+package wbos.middleware.util;
+
+/**
+ * Same conversation ids as the backend, which reports them on message posts.
+ */
+public final class ConversationIds {
+
+    public static final String PUBLIC = "public";
+
+    private ConversationIds() {
+    }
+
+    public static String of(Long userId, Long recipientId) {
+        if (recipientId == null) {
+            return PUBLIC;
+        }
+        long low = Math.min(userId, recipientId);
+        long high = Math.max(userId, recipientId);
+        return "dm:" + low + ":" + high;
+    }
+}
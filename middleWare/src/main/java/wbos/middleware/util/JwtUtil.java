@@ -1,43 +1,103 @@
 package wbos.middleware.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import wbos.middleware.dto.token.VerifiedToken;
 
-import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Verifies tokens with a key and parser built once at startup. Verified
+ * tokens are cached by SHA-256 digest until their own expiry, so a client
+ * reusing its token on every proxied request is only parsed once.
+ */
 @Component
 public class JwtUtil {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    private final JwtParser parser;
+    private final Timer cachedTimer;
+    private final Timer verifiedTimer;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    // ByteBuffer compares by content, which makes it a cheap key for the raw digest
+    private final Cache<ByteBuffer, VerifiedToken> verifiedTokens;
+
+    public JwtUtil(@Value("${jwt.secret}") String secret,
+                   @Value("${jwt.cache.maximum-size:10000}") long cacheMaximumSize,
+                   MeterRegistry meterRegistry) {
+        this.parser = Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)))
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfter(Expiry.<ByteBuffer, VerifiedToken>creating((digest, token) ->
+                        Duration.between(Instant.now(), token.expiresAt())))
+                .build();
+        this.cachedTimer = verifyTimer(meterRegistry, "hit");
+        this.verifiedTimer = verifyTimer(meterRegistry, "miss");
+    }
+
+    /**
+     * Returns the verified claims or throws a {@link JwtException} (including
+     * ExpiredJwtException) when the token is not acceptable. A token without
+     * an expiry is rejected rather than cached for good.
+     */
+    public VerifiedToken verify(String token) {
+        if (token == null || token.isBlank()) {
+            throw new JwtException("Token is empty");
+        }
+
+        long start = System.nanoTime();
+        ByteBuffer digest = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && cached.expiresAt().isAfter(Instant.now())) {
+            cachedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return cached;
+        }
+
+        try {
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            Date expiresAt = claims.getExpiration();
+            if (expiresAt == null) {
+                throw new JwtException("Token has no expiration");
+            }
+            VerifiedToken verified = new VerifiedToken(
+                    claims.getSubject(),
+                    claims.get("userId", Long.class),
+                    expiresAt.toInstant());
+            verifiedTokens.put(digest, verified);
+            return verified;
+        } finally {
+            verifiedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
     }
 
     public String extractUsername(String token) {
-        return extractClaims(token).getSubject();
+        return verify(token).username();
     }
 
     public Long extractUserId(String token) {
-        return extractClaims(token).get("userId", Long.class);
+        return verify(token).userId();
     }
 
     public Date extractExpiration(String token) {
-        return extractClaims(token).getExpiration();
-    }
-
-    private Claims extractClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return Date.from(verify(token).expiresAt());
     }
 
     public boolean isTokenExpired(String token) {
@@ -46,9 +106,27 @@ public class JwtUtil {
 
     public boolean validateToken(String token) {
         try {
-            return !isTokenExpired(token);
+            verify(token);
+            return true;
         } catch (Exception e) {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    private static Timer verifyTimer(MeterRegistry meterRegistry, String cache) {
+        return Timer.builder("gateway.jwt.verify")
+                .description("Time to accept or reject a bearer token, by whether it was already verified")
+                .tag("cache", cache)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static ByteBuffer digest(String token) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
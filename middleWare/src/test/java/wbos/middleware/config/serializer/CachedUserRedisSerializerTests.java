@@ -0,0 +1,59 @@
+package wbos.middleware.config.serializer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import wbos.middleware.dto.user.CachedUser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachedUserRedisSerializerTests {
+
+    private final CachedUserRedisSerializer serializer = new CachedUserRedisSerializer();
+    private final GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+
+    private final CachedUser user = CachedUser.builder()
+            .id(12345L)
+            .username("alice")
+            .email("alice@example.com")
+            .firstName("Alice")
+            .lastName("Ünicode")
+            .build();
+
+    @Test
+    void roundTripsAndIsSmallerThanJson() {
+        byte[] binary = serializer.serialize(user);
+
+        assertThat(serializer.deserialize(binary)).isEqualTo(user);
+        assertThat(binary.length).isLessThan(json.serialize(user).length / 3);
+    }
+
+    @Test
+    void keepsNullFieldsNull() {
+        CachedUser partial = CachedUser.builder().id(7L).username("bob").build();
+
+        assertThat(serializer.deserialize(serializer.serialize(partial))).isEqualTo(partial);
+    }
+
+    @Test
+    void readsEntriesWrittenAsJson() {
+        assertThat(serializer.deserialize(json.serialize(user))).isEqualTo(user);
+    }
+
+    @Test
+    void writesOtherTypesAsJson() {
+        byte[] marker = serializer.serialize(Boolean.TRUE);
+
+        assertThat(marker[0]).isNotEqualTo(VersionedBinaryRedisSerializer.MARKER);
+        assertThat(serializer.deserialize(marker)).isEqualTo(Boolean.TRUE);
+    }
+
+    @Test
+    void rejectsUnknownSchemaVersion() {
+        byte[] binary = serializer.serialize(user);
+        binary[2] = 99;
+
+        assertThatThrownBy(() -> serializer.deserialize(binary)).isInstanceOf(SerializationException.class);
+    }
+}
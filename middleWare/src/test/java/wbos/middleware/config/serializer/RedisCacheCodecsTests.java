@@ -0,0 +1,37 @@
+package wbos.middleware.config.serializer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RedisCacheCodecsTests {
+
+    private final MockEnvironment environment = new MockEnvironment();
+    private final RedisCacheCodecs codecs = new RedisCacheCodecs(environment)
+            .binary("users", CachedUserRedisSerializer::new);
+
+    @Test
+    void registeredCachesDefaultToTheirBinaryCodec() {
+        assertThat(codecs.serializer("users")).isInstanceOf(CachedUserRedisSerializer.class);
+        assertThat(codecs.serializer("history")).isInstanceOf(GenericJackson2JsonRedisSerializer.class);
+    }
+
+    @Test
+    void codecIsChosenPerCache() {
+        environment.setProperty("cache.users.codec", "json");
+
+        assertThat(codecs.serializer("users")).isInstanceOf(GenericJackson2JsonRedisSerializer.class);
+    }
+
+    @Test
+    void binaryIsRefusedForCachesWithoutABinaryCodec() {
+        environment.setProperty("cache.history.codec", "binary");
+        environment.setProperty("cache.users.codec", "protobuf");
+
+        assertThatThrownBy(() -> codecs.serializer("history")).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> codecs.serializer("users")).isInstanceOf(IllegalStateException.class);
+    }
+}
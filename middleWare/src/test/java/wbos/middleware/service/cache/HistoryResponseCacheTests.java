@@ -0,0 +1,95 @@
+package wbos.middleware.service.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HistoryResponseCacheTests {
+
+    private static final byte[] BODY = "{\"messages\":[]}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void postToConversationDropsEntriesOfBothParticipants() {
+        HistoryResponseCache cache = new HistoryResponseCache(100, Duration.ofMinutes(10), Duration.ofMinutes(1), 1024);
+        HistoryResponseCache.Key alice = new HistoryResponseCache.Key(1L, 2L, null, null);
+        HistoryResponseCache.Key bob = new HistoryResponseCache.Key(2L, 1L, null, 20);
+        HistoryResponseCache.Key other = new HistoryResponseCache.Key(1L, 3L, null, null);
+        for (HistoryResponseCache.Key key : new HistoryResponseCache.Key[]{alice, bob, other}) {
+            cache.put(key, cache.stamp(), "\"a\"", new HttpHeaders(), BODY);
+        }
+
+        cache.invalidateConversation("dm:1:2");
+
+        assertThat(cache.get(alice)).isNull();
+        assertThat(cache.get(bob)).isNull();
+        assertThat(cache.get(other)).isNotNull();
+    }
+
+    @Test
+    void fillStartedBeforeAPostIsNotServed() {
+        HistoryResponseCache cache = new HistoryResponseCache(100, Duration.ofMinutes(10), Duration.ofMinutes(1), 1024);
+        HistoryResponseCache.Key key = new HistoryResponseCache.Key(1L, null, null, null);
+
+        long stamp = cache.stamp();
+        cache.invalidateConversation("public");
+        cache.put(key, stamp, "\"a\"", new HttpHeaders(), BODY);
+        assertThat(cache.get(key)).isNull();
+
+        cache.put(key, cache.stamp(), "\"b\"", new HttpHeaders(), BODY);
+        assertThat(cache.get(key).etag()).isEqualTo("\"b\"");
+    }
+
+    @Test
+    void pageMarkedNoStoreIsServedButNotKept() {
+        HistoryResponseCache cache = new HistoryResponseCache(100, Duration.ofMinutes(10), Duration.ofMinutes(1), 1024);
+        HistoryResponseCache.Key key = new HistoryResponseCache.Key(1L, 2L, null, null);
+        HttpHeaders writesPending = new HttpHeaders();
+        writesPending.setCacheControl(CacheControl.noStore());
+
+        // The backend has not flushed every post of this conversation yet, so the page can be missing one
+        HistoryResponseCache.Entry served = cache.put(key, cache.stamp(), "\"a\"", writesPending, BODY);
+        assertThat(served.etag()).isEqualTo("\"a\"");
+        assertThat(cache.get(key)).isNull();
+
+        cache.put(key, cache.stamp(), "\"b\"", new HttpHeaders(), BODY);
+        assertThat(cache.get(key).etag()).isEqualTo("\"b\"");
+    }
+
+    @Test
+    void notModifiedMarkedNoStoreDropsTheEntry() {
+        HistoryResponseCache cache = new HistoryResponseCache(100, Duration.ofMinutes(10), Duration.ZERO, 1024);
+        HistoryResponseCache.Key key = new HistoryResponseCache.Key(1L, 2L, null, null);
+        cache.put(key, cache.stamp(), "\"a\"", new HttpHeaders(), BODY);
+        HttpHeaders writesPending = new HttpHeaders();
+        writesPending.setCacheControl(CacheControl.noStore());
+
+        HistoryResponseCache.Entry served = cache.revalidated(key, cache.get(key), cache.stamp(), writesPending);
+
+        assertThat(served.etag()).isEqualTo("\"a\"");
+        assertThat(cache.get(key)).isNull();
+    }
+
+    @Test
+    void staleEntriesAreKeptForRevalidation() {
+        HistoryResponseCache cache = new HistoryResponseCache(100, Duration.ofMinutes(10), Duration.ZERO, 1024);
+        HistoryResponseCache.Key key = new HistoryResponseCache.Key(1L, 2L, null, null);
+        cache.put(key, cache.stamp(), "\"a\"", new HttpHeaders(), BODY);
+
+        HistoryResponseCache.Entry stale = cache.get(key);
+        assertThat(stale).isNotNull();
+        assertThat(cache.isFresh(stale)).isFalse();
+
+        cache.revalidated(key, stale, cache.stamp(), new HttpHeaders());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        assertThat(registry.get("gateway.history.cache.lookups").tag("result", "revalidate").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("gateway.history.cache.upstream.not.modified").functionCounter().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,203 @@
+package wbos.middleware.service.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import wbos.middleware.dto.user.CachedUser;
+import wbos.middleware.entities.UserEntity;
+import wbos.middleware.repositories.UserRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class UserCacheServiceTests {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    // Stands in for Redis: the template mock reads and writes this map
+    private final Map<String, Object> shared = new ConcurrentHashMap<>();
+    private ReactiveRedisTemplate<String, Object> template;
+    private Duration sharedTtl = Duration.ofHours(1);
+    private UserCacheService userCacheService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        template = mock(ReactiveRedisTemplate.class);
+        ReactiveValueOperations<String, Object> values = mock(ReactiveValueOperations.class);
+        when(template.opsForValue()).thenReturn(values);
+        when(values.get(anyString())).thenAnswer(inv -> Mono.justOrEmpty(shared.get(inv.<String>getArgument(0))));
+        when(values.set(anyString(), any(), any(Duration.class))).thenAnswer(inv -> {
+            shared.put(inv.getArgument(0), inv.getArgument(1));
+            return Mono.just(true);
+        });
+        when(template.getExpire(anyString())).thenAnswer(inv -> shared.containsKey(inv.<String>getArgument(0))
+                ? Mono.just(sharedTtl)
+                : Mono.empty());
+        when(template.hasKey(anyString())).thenAnswer(inv -> Mono.just(shared.containsKey(inv.<String>getArgument(0))));
+        when(template.delete(any(String[].class))).thenAnswer(inv -> {
+            long removed = 0;
+            for (Object key : inv.getArguments()) {
+                removed += shared.remove(key) != null ? 1 : 0;
+            }
+            return Mono.just(removed);
+        });
+
+        userCacheService = newService(Schedulers.immediate(), 0);
+    }
+
+    private UserCacheService newService(Scheduler jdbcScheduler, double earlyRefreshBeta) {
+        return new UserCacheService(userRepository, template, jdbcScheduler,
+                100, Duration.ofMinutes(1), Duration.ofMinutes(1), Duration.ofHours(1), Duration.ofMinutes(5),
+                earlyRefreshBeta, Duration.ofMillis(20));
+    }
+
+    @Test
+    void repeatedLookupsAreServedFromNearCache() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user(1L)));
+
+        CachedUser first = userCacheService.getUserById(1L).block();
+        CachedUser second = userCacheService.getUserById(1L).block();
+
+        assertThat(second).isSameAs(first);
+        assertThat(shared).containsKey(UserCacheService.USERS_KEY_PREFIX + 1);
+        verify(userRepository, times(1)).findById(1L);
+        assertThat(counter(userCacheService, "gateway.user.cache.lookups", "tier", "l1", "result", "hit")).isEqualTo(1);
+        assertThat(counter(userCacheService, "gateway.user.cache.lookups", "tier", "l2", "result", "miss")).isEqualTo(1);
+    }
+
+    @Test
+    void unknownIdsAreCachedNegatively() {
+        when(userRepository.findById(99L)).thenReturn(Optional.empty());
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(userCacheService.getUserById(99L).blockOptional()).isEmpty();
+        }
+
+        verify(userRepository, times(1)).findById(99L);
+        assertThat(shared).containsKey(UserCacheService.MISSING_USERS_KEY_PREFIX + 99);
+        assertThat(counter(userCacheService, "gateway.user.cache.negative.hits")).isEqualTo(4);
+    }
+
+    @Test
+    void invalidationDropsBothTiers() {
+        when(userRepository.findById(99L)).thenReturn(Optional.empty(), Optional.of(user(99L)));
+        assertThat(userCacheService.getUserById(99L).blockOptional()).isEmpty();
+
+        userCacheService.onMessage(new DefaultMessage(
+                "users:invalidate".getBytes(StandardCharsets.UTF_8), "99".getBytes(StandardCharsets.UTF_8)), null);
+
+        assertThat(userCacheService.getUserById(99L).block().getId()).isEqualTo(99L);
+        verify(userRepository, times(2)).findById(99L);
+    }
+
+    @Test
+    void loadThatRacesAnInvalidationIsNotCached() throws InterruptedException {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        UserEntity renamed = user(3L);
+        renamed.setUsername("renamed");
+        when(userRepository.findById(3L)).thenAnswer(inv -> {
+            loading.countDown();
+            invalidated.await(10, TimeUnit.SECONDS);
+            return Optional.of(user(3L));
+        }).thenReturn(Optional.of(renamed));
+        Scheduler jdbc = Schedulers.newBoundedElastic(1, 10, "test-jdbc");
+        UserCacheService service = newService(jdbc, 0);
+
+        try {
+            Mono<CachedUser> stale = service.getUserById(3L).cache();
+            stale.subscribe();
+            assertThat(loading.await(10, TimeUnit.SECONDS)).isTrue();
+
+            // The user changes after the database read but before its result is stored
+            service.onMessage(new DefaultMessage(
+                    "users:invalidate".getBytes(StandardCharsets.UTF_8), "3".getBytes(StandardCharsets.UTF_8)), null);
+            invalidated.countDown();
+
+            assertThat(stale.block(Duration.ofSeconds(10)).getUsername()).isEqualTo("user3");
+            assertThat(shared).doesNotContainKey(UserCacheService.USERS_KEY_PREFIX + 3);
+            assertThat(service.getUserById(3L).block(Duration.ofSeconds(10)).getUsername()).isEqualTo("renamed");
+            verify(userRepository, times(2)).findById(3L);
+        } finally {
+            jdbc.dispose();
+        }
+    }
+
+    @Test
+    void concurrentMissesShareOneDatabaseLoad() throws InterruptedException {
+        int lookups = 5000;
+        CountDownLatch allWaiting = new CountDownLatch(1);
+        when(userRepository.findById(7L)).thenAnswer(inv -> {
+            // Hold the load open until every lookup has been issued
+            allWaiting.await(10, TimeUnit.SECONDS);
+            return Optional.of(user(7L));
+        });
+        Scheduler jdbc = Schedulers.newBoundedElastic(4, lookups, "test-jdbc");
+        UserCacheService service = newService(jdbc, 0);
+
+        try {
+            Mono<List<CachedUser>> all = Flux.range(0, lookups)
+                    .flatMap(i -> service.getUserById(7L).subscribeOn(Schedulers.parallel()), lookups)
+                    .collectList()
+                    .cache();
+            all.subscribe();
+            Thread.sleep(200);
+            allWaiting.countDown();
+
+            List<CachedUser> users = all.block(Duration.ofSeconds(10));
+            assertThat(users).hasSize(lookups).allSatisfy(u -> assertThat(u.getId()).isEqualTo(7L));
+            verify(userRepository, times(1)).findById(7L);
+            assertThat(counter(service, "gateway.user.cache.db.loads")).isEqualTo(1);
+        } finally {
+            jdbc.dispose();
+        }
+    }
+
+    @Test
+    void entriesCloseToExpiryAreRefreshedEarly() {
+        when(userRepository.findById(5L)).thenReturn(Optional.of(user(5L)));
+        shared.put(UserCacheService.USERS_KEY_PREFIX + 5, CachedUser.builder().id(5L).username("old").build());
+        sharedTtl = Duration.ofNanos(1);
+        // No load has run on this node yet; the configured estimate stands in for one
+        UserCacheService service = newService(Schedulers.immediate(), 1.0);
+
+        CachedUser served = service.getUserById(5L).block();
+
+        assertThat(served.getUsername()).isEqualTo("old");
+        verify(userRepository, times(1)).findById(5L);
+        assertThat(((CachedUser) shared.get(UserCacheService.USERS_KEY_PREFIX + 5)).getUsername()).isEqualTo("user5");
+        assertThat(counter(service, "gateway.user.cache.early.refreshes")).isEqualTo(1);
+    }
+
+    private static double counter(UserCacheService service, String name, String... tags) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        service.bindTo(registry);
+        return registry.get(name).tags(tags).functionCounter().count();
+    }
+
+    private static UserEntity user(Long id) {
+        UserEntity entity = new UserEntity();
+        entity.setId(id);
+        entity.setUsername("user" + id);
+        entity.setEmail("user" + id + "@example.com");
+        return entity;
+    }
+}
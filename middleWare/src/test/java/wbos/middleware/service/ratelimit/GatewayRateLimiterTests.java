@@ -0,0 +1,89 @@
+package wbos.middleware.service.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import reactor.core.publisher.Mono;
+import wbos.middleware.config.RateLimitProperties;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GatewayRateLimiterTests {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void replicasShareOneBudgetThroughRedis() {
+        // Stands in for Redis INCRBY shared by both replicas
+        Map<String, Long> counters = new ConcurrentHashMap<>();
+        ReactiveStringRedisTemplate redis = mock(ReactiveStringRedisTemplate.class);
+        ReactiveValueOperations<String, String> values = mock(ReactiveValueOperations.class);
+        when(redis.opsForValue()).thenReturn(values);
+        when(values.increment(anyString(), anyLong())).thenAnswer(inv ->
+                Mono.just(counters.merge(inv.getArgument(0), inv.<Long>getArgument(1), Long::sum)));
+        when(redis.expire(anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+
+        GatewayRateLimiter first = new GatewayRateLimiter(properties(), redis);
+        GatewayRateLimiter second = new GatewayRateLimiter(properties(), redis);
+
+        for (int i = 0; i < 6; i++) {
+            assertThat(first.tryAcquire(GatewayRateLimiter.MESSAGES_SEND, "1")).isZero();
+        }
+        assertThat(second.tryAcquire(GatewayRateLimiter.MESSAGES_SEND, "1")).isZero();
+
+        first.reconcile().block();
+        second.reconcile().block();
+
+        // 7 of 10 tokens were spent across both replicas; the second replica learns about the first one's 6
+        int allowed = 0;
+        for (int i = 0; i < 10; i++) {
+            if (second.tryAcquire(GatewayRateLimiter.MESSAGES_SEND, "1") == 0) {
+                allowed++;
+            }
+        }
+        assertThat(allowed).isEqualTo(3);
+        assertThat(second.tryAcquire(GatewayRateLimiter.MESSAGES_READ, "1")).isZero();
+    }
+
+    @Test
+    void refusalByTheSharedBudgetDoesNotCostTheCallersOwnToken() {
+        RateLimitProperties properties = properties();
+        RateLimitProperties.Limit limit = properties.getRoutes().get(GatewayRateLimiter.MESSAGES_SEND);
+        limit.setGlobalCapacity(2);
+        limit.setGlobalRefillPerSecond(0.001);
+        GatewayRateLimiter limiter = new GatewayRateLimiter(properties, mock(ReactiveStringRedisTemplate.class));
+
+        assertThat(limiter.tryAcquire(GatewayRateLimiter.MESSAGES_SEND, "1")).isZero();
+        assertThat(limiter.tryAcquire(GatewayRateLimiter.MESSAGES_SEND, "1")).isZero();
+        // The shared budget is spent; user 2 is refused without losing its own tokens
+        for (int i = 0; i < 20; i++) {
+            assertThat(limiter.tryAcquire(GatewayRateLimiter.MESSAGES_SEND, "2")).isPositive();
+        }
+
+        limit.setGlobalCapacity(0);
+        int allowed = 0;
+        for (int i = 0; i < 20; i++) {
+            if (limiter.tryAcquire(GatewayRateLimiter.MESSAGES_SEND, "2") == 0) {
+                allowed++;
+            }
+        }
+        assertThat(allowed).isEqualTo(10);
+    }
+
+    private static RateLimitProperties properties() {
+        RateLimitProperties.Limit limit = new RateLimitProperties.Limit();
+        limit.setCapacity(10);
+        limit.setRefillPerSecond(0.001);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.getRoutes().put(GatewayRateLimiter.MESSAGES_SEND, limit);
+        return properties;
+    }
+}
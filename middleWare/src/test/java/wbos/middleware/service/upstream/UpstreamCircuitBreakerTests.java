@@ -0,0 +1,66 @@
+package wbos.middleware.service.upstream;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpstreamCircuitBreakerTests {
+
+    @Test
+    void opensOnceFailureRateReachesThreshold() {
+        UpstreamCircuitBreaker breaker = new UpstreamCircuitBreaker(true, 10, 4, 50, Duration.ofMinutes(1), 2);
+
+        call(breaker, true);
+        call(breaker, false);
+        call(breaker, false);
+        assertThat(breaker.state()).isEqualTo(UpstreamCircuitBreaker.State.CLOSED);
+
+        call(breaker, false);
+        assertThat(breaker.state()).isEqualTo(UpstreamCircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(breaker.rejected()).isEqualTo(1);
+        assertThat(breaker.retryAfter()).isPositive();
+    }
+
+    @Test
+    void halfOpenClosesAfterSuccessfulTrialCalls() {
+        UpstreamCircuitBreaker breaker = new UpstreamCircuitBreaker(true, 10, 2, 50, Duration.ZERO, 2);
+        call(breaker, false);
+        call(breaker, false);
+
+        // Open duration has elapsed, so the next calls are trial calls
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.state()).isEqualTo(UpstreamCircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        breaker.onSuccess();
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(UpstreamCircuitBreaker.State.CLOSED);
+        assertThat(breaker.failureRate()).isZero();
+    }
+
+    @Test
+    void failedTrialCallReopens() {
+        UpstreamCircuitBreaker breaker = new UpstreamCircuitBreaker(true, 10, 1, 50, Duration.ZERO, 3);
+        call(breaker, false);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onIgnored();
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onFailure();
+
+        assertThat(breaker.state()).isEqualTo(UpstreamCircuitBreaker.State.OPEN);
+    }
+
+    private static void call(UpstreamCircuitBreaker breaker, boolean success) {
+        assertThat(breaker.tryAcquire()).isTrue();
+        if (success) {
+            breaker.onSuccess();
+        } else {
+            breaker.onFailure();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package wbos.middleware.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import wbos.middleware.config.RateLimitProperties;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClientAddressResolverTests {
+
+    @Test
+    void socketAddressIsUsedWithoutAConfiguredHeader() {
+        ClientAddressResolver resolver = resolver(RateLimitProperties.ClientAddress.Header.NONE, "10.0.0.0/8");
+
+        assertThat(resolver.resolve(request("10.0.0.5").header("X-Forwarded-For", "203.0.113.7").build()))
+                .isEqualTo("10.0.0.5");
+    }
+
+    @Test
+    void forwardedHeaderIsIgnoredFromUntrustedSenders() {
+        ClientAddressResolver resolver = resolver(RateLimitProperties.ClientAddress.Header.X_FORWARDED_FOR, "10.0.0.0/8");
+
+        assertThat(resolver.resolve(request("198.51.100.9").header("X-Forwarded-For", "203.0.113.7").build()))
+                .isEqualTo("198.51.100.9");
+    }
+
+    @Test
+    void rightmostUntrustedHopIsTheClient() {
+        ClientAddressResolver resolver = resolver(RateLimitProperties.ClientAddress.Header.X_FORWARDED_FOR, "10.0.0.0/8");
+
+        // The client prepended a fake entry; the load balancer appended the real one
+        MockServerHttpRequest request = request("10.0.0.5")
+                .header("X-Forwarded-For", "1.1.1.1, 203.0.113.7", "10.0.0.6")
+                .build();
+
+        assertThat(resolver.resolve(request)).isEqualTo("203.0.113.7");
+    }
+
+    @Test
+    void forwardedHeaderIsParsed() {
+        ClientAddressResolver resolver = resolver(RateLimitProperties.ClientAddress.Header.FORWARDED, "10.0.0.5");
+
+        assertThat(resolver.resolve(request("10.0.0.5")
+                .header("Forwarded", "for=\"[2001:db8::1]:4711\";proto=https")
+                .build())).isEqualTo("2001:db8::1");
+        assertThat(resolver.resolve(request("10.0.0.5")
+                .header("Forwarded", "for=192.0.2.60:8080;by=10.0.0.5")
+                .build())).isEqualTo("192.0.2.60");
+    }
+
+    private static ClientAddressResolver resolver(RateLimitProperties.ClientAddress.Header header, String trusted) {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.getClientAddress().setHeader(header);
+        properties.getClientAddress().setTrustedProxies(List.of(trusted));
+        return new ClientAddressResolver(properties);
+    }
+
+    private static MockServerHttpRequest.BaseBuilder<?> request(String remoteAddress) {
+        return MockServerHttpRequest.post("/auth/signin")
+                .remoteAddress(new InetSocketAddress(remoteAddress, 40000));
+    }
+}
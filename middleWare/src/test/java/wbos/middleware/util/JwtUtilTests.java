@@ -0,0 +1,75 @@
+package wbos.middleware.util;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import wbos.middleware.dto.token.VerifiedToken;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtUtilTests {
+
+    private static final String SECRET = "a388fa4107c45ade94f89acb81515a1ff6733ca840858e0cea2a884f3ff664e690fff922";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final JwtUtil jwtUtil = new JwtUtil(SECRET, 100L, registry);
+
+    @Test
+    void verifiesOnceAndServesRepeatsFromCache() {
+        String token = token(SECRET, 60_000);
+
+        VerifiedToken first = jwtUtil.verify(token);
+        VerifiedToken second = jwtUtil.verify(token);
+
+        assertThat(first.username()).isEqualTo("alice");
+        assertThat(first.userId()).isEqualTo(42L);
+        assertThat(second).isSameAs(first);
+        assertThat(registry.get("gateway.jwt.verify").tag("cache", "miss").timer().count()).isEqualTo(1);
+        assertThat(registry.get("gateway.jwt.verify").tag("cache", "hit").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsTokenSignedWithAnotherKey() {
+        String token = token(SECRET.replace('a', 'b'), 60_000);
+
+        assertThatThrownBy(() -> jwtUtil.verify(token)).isInstanceOf(JwtException.class);
+        assertThat(jwtUtil.validateToken(token)).isFalse();
+    }
+
+    @Test
+    void rejectsExpiredToken() {
+        String token = token(SECRET, -1_000);
+
+        assertThatThrownBy(() -> jwtUtil.verify(token)).isInstanceOf(ExpiredJwtException.class);
+    }
+
+    @Test
+    void rejectsTokenWithoutExpiration() {
+        String token = Jwts.builder()
+                .claim("userId", 42L)
+                .subject("alice")
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+
+        assertThatThrownBy(() -> jwtUtil.verify(token)).isInstanceOf(JwtException.class);
+        assertThat(jwtUtil.validateToken(token)).isFalse();
+    }
+
+    private static String token(String secret, long validForMillis) {
+        Date now = new Date();
+        return Jwts.builder()
+                .claim("userId", 42L)
+                .subject("alice")
+                .issuedAt(now)
+                .expiration(new Date(now.getTime() + validForMillis))
+                .signWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+    }
+}